@@ -2,9 +2,29 @@ package nl.wdudokvanheel.neural.neat;
 
 import nl.wdudokvanheel.neural.neat.genome.Genome;
 
+import java.util.List;
+
 public interface CreatureFactory<Creature extends CreatureInterface<Creature>> {
     /**
      * Create a new creature with the specified genome
      */
     Creature createNewCreature(Genome genome);
+
+    /**
+     * Called once per generation when {@link NeatConfiguration#recycleCreatures} is enabled, with all creatures that
+     * are no longer part of the population or a species. Free any resources held by these creatures here. The
+     * creatures are kept for {@link #reuseCreature(CreatureInterface, Genome)} and must not be used elsewhere anymore.
+     */
+    default void releaseCreatures(List<Creature> creatures) {
+    }
+
+    /**
+     * Turn a released creature into a new creature with the specified genome, with no fitness and no species. Return
+     * null to create a new creature with {@link #createNewCreature(Genome)} instead, which is the default.
+     *
+     * @see nl.wdudokvanheel.neural.util.AbstractCreatureInterface#reset(Genome)
+     */
+    default Creature reuseCreature(Creature creature, Genome genome) {
+        return null;
+    }
 }
@@ -30,4 +30,16 @@ public class NeatConfiguration {
     public double mutateRandomizeWeightsProbability = 0.1;
     public double mutateWeightPerturbationPower = 0.5;
     public boolean eliminateStagnantSpecies = true;
+
+    //Performance
+    // Reuse the creatures and genomes of eliminated creatures for the next generation, see CreaturePool
+    public boolean recycleCreatures = false;
+    // Compare creatures first with the species representatives that share a MinHash bucket, see MinHashIndex
+    public boolean speciationHashing = false;
+    public int speciationHashBands = 16;
+    public int speciationHashRows = 4;
+    // Compare offspring first with the species they were bred for, see Genome.getParentSpeciesId()
+    public boolean speciationWarmStart = false;
+    // Compare genomes and align crossover parents with bitsets of their innovation ids, see InnovationBits
+    public boolean innovationBitsets = false;
 }
@@ -1,6 +1,12 @@
 package nl.wdudokvanheel.neural.neat;
 
+import nl.wdudokvanheel.neural.neat.evaluation.Evaluator;
+import nl.wdudokvanheel.neural.neat.evaluation.SurrogateModel;
+import nl.wdudokvanheel.neural.neat.selection.FitnessProportionateSelection;
+import nl.wdudokvanheel.neural.neat.selection.SelectionStrategy;
+import nl.wdudokvanheel.neural.neat.service.CreaturePool;
 import nl.wdudokvanheel.neural.neat.service.CrossoverService;
+import nl.wdudokvanheel.neural.neat.service.DeltaCheckpointWriter;
 import nl.wdudokvanheel.neural.neat.service.InnovationService;
 import nl.wdudokvanheel.neural.neat.service.MutationService;
 import nl.wdudokvanheel.neural.neat.service.SpeciationService;
@@ -20,6 +26,16 @@ public class NeatContext<Creature extends CreatureInterface<Creature>> {
     public CrossoverService<Creature> crossoverService;
     public MutationService mutationService;
     public SpeciationService<Creature> speciationService;
+    // Creates the genomes and creatures of new generations, reusing released ones when recycling is enabled
+    public CreaturePool<Creature> creaturePool;
+    // Picks the parents of offspring and the species of interspecies parents, fitness proportionate unless replaced
+    public SelectionStrategy selection = new FitnessProportionateSelection();
+    // Optional, used by NeatEvolution.evaluate to determine the fitness of the current generation
+    public Evaluator<Creature> evaluator;
+    // Optional, used by the CrossoverService to pre-screen offspring
+    public SurrogateModel surrogate;
+    // Optional, takes a snapshot of every evaluated generation in NeatEvolution.nextGeneration
+    public DeltaCheckpointWriter<Creature> checkpointWriter;
 
     public int generation = 0;
 
@@ -37,6 +53,7 @@ public class NeatContext<Creature extends CreatureInterface<Creature>> {
         crossoverService = new CrossoverService<>();
         mutationService = new MutationService(configuration, innovationService);
         speciationService = new SpeciationService<>(configuration);
+        creaturePool = new CreaturePool<>();
     }
 
     public Creature getFittestCreature() {
@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Consumer;
 
 public class NeatEvolution {
     private static final Logger logger = LoggerFactory.getLogger(NeatEvolution.class);
@@ -75,13 +76,53 @@ public class NeatEvolution {
         }
     }
 
+    /**
+     * Determine the fitness of all creatures in the current generation with the evaluator of the context
+     */
+    public static <Creature extends CreatureInterface<Creature>> void evaluate(NeatContext<Creature> context) {
+        if (context.evaluator == null) {
+            throw new IllegalStateException("No evaluator set on the context");
+        }
+
+        logger.trace("Evaluating {} creatures", context.creatures.size());
+        context.evaluator.evaluate(context.creatures);
+        //Creatures don't have to report their new fitness to their species
+        context.species.forEach(Species::fitnessChanged);
+    }
+
     public static <Creature extends CreatureInterface<Creature>> void nextGeneration
             (NeatContext<Creature> context) {
+        nextGeneration(context, creature -> {
+        });
+    }
+
+    /**
+     * Create the next generation, passing every new creature to the consumer as soon as it is created. This allows the
+     * evaluation of the new generation to start while the rest of it is still being bred and speciated. The species of
+     * a creature is only assigned after all creatures have been created. The fittest creature that is carried over from
+     * the current generation is passed last, after breeding has finished reading its fitness.
+     *
+     * @param created Called with each new creature of the next generation, on the calling thread
+     */
+    public static <Creature extends CreatureInterface<Creature>> void nextGeneration
+            (NeatContext<Creature> context, Consumer<Creature> created) {
+        List<Creature> previous = context.creatures;
+
+        //Checkpoint the evaluated generation, the snapshot is written in the background
+        if (context.checkpointWriter != null) {
+            context.checkpointWriter.snapshot(context);
+        }
+
         context.generation++;
         logger.trace("");
         logger.trace("===== Starting generation {} =====", context.generation);
         logger.trace("This generation has {} creatures & {} species", context.creatures.size(), context.species.size());
 
+        //Learn from the evaluated generation before breeding the next one
+        if (context.surrogate != null) {
+            context.surrogate.update(context.creatures);
+        }
+
         if (context.configuration.adjustSpeciesThreshold) {
             context.speciationService.adjustThreshold(context.species);
         }
@@ -104,27 +145,43 @@ public class NeatEvolution {
         int newEmptyCreatures = (int) (context.configuration.populationSize * context.configuration.newCreaturesPerGeneration);
         logger.trace("Creating {} new empty creatures", newEmptyCreatures);
         List<Creature> newCreatures = createNewCreatures(context, newEmptyCreatures);
+        newCreatures.forEach(created);
 
+        //The fittest creature of the current generation that is carried over as is
+        Creature carriedOver = null;
         if (context.configuration.copyChampionsAllSpecies) {
             //Create a new list of creatures, starting with clones of the (non-mutated) champions of the current generation
             List<Creature> champions = context.speciationService.getChampions(context);
             logger.trace("Adding {} champions from the previous generation", champions.size());
             newCreatures.addAll(champions);
-            if (!newCreatures.contains(context.getFittestCreature())) {
-                newCreatures.add(context.getFittestCreature());
+            champions.forEach(created);
+            Creature fittest = context.getFittestCreature();
+            if (!newCreatures.contains(fittest)) {
+                newCreatures.add(fittest);
+                carriedOver = fittest;
             }
         }
 
         //Crossover creatures
         logger.trace("Creating {} offspring", context.configuration.populationSize - newCreatures.size());
-        List<Creature> offspring = context.crossoverService.createOffspring(context, context.configuration.populationSize - newCreatures.size());
+        List<Creature> offspring = context.crossoverService.createOffspring(context, context.configuration.populationSize - newCreatures.size(), created);
         newCreatures.addAll(offspring);
 
+        //Breeding reads the fitness of the carried over creature, so it's only handed out for evaluation afterwards
+        if (carriedOver != null) {
+            created.accept(carriedOver);
+        }
+
         //Clear last generation creatures and add new ones
         context.creatures = newCreatures;
 
         //Speciate newly created creatures
         context.species = context.speciationService.speciate(newCreatures, newSpecies);
+
+        //Hand the creatures that didn't make it to the next generation back to the pool
+        if (context.configuration.recycleCreatures) {
+            context.creaturePool.release(context, previous);
+        }
     }
 
     private static <Creature extends CreatureInterface<Creature>> ArrayList<Creature> createNewCreatures
@@ -133,7 +190,7 @@ public class NeatEvolution {
         int count = 0;
         while (count < creatures) {
             count++;
-            Genome clone = context.blueprint.getGenome().clone();
+            Genome clone = context.creaturePool.cloneGenome(context.blueprint.getGenome());
 
             // Randomize all connection weights
             new RandomWeightMutation(1.0).mutate(clone);
@@ -142,7 +199,7 @@ public class NeatEvolution {
                 initialConnectionState(clone, context.configuration.initialLinkActiveProbability, context.configuration.initialLinkWeight);
             }
 
-            Creature creature = context.creatureFactory.createNewCreature(clone);
+            Creature creature = context.creaturePool.createCreature(context.creatureFactory, clone);
             result.add(creature);
         }
         return result;
@@ -0,0 +1,121 @@
+package nl.wdudokvanheel.neural.neat;
+
+import nl.wdudokvanheel.neural.neat.evaluation.FitnessFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generational evolution where breeding and evaluation overlap. Every creature of the next generation is published
+ * into a {@link Flow} pipeline as soon as it is created, and evaluated while the rest of the generation is still being
+ * bred and speciated. The outcome is the same as calling {@link NeatEvolution#nextGeneration(NeatContext)} followed by
+ * an evaluation of all creatures, but the evaluation no longer waits for reproduction to finish.
+ * <p>
+ * Backpressure is bounded: at most {@code threads} creatures are evaluated at once and at most {@code bufferSize}
+ * creatures wait for a free thread, after that reproduction blocks until the evaluation catches up.
+ */
+public class PipelinedEvolution<Creature extends CreatureInterface<Creature>> implements AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(PipelinedEvolution.class);
+
+    private final FitnessFunction<Creature> fitnessFunction;
+    private final int threads;
+    private final int bufferSize;
+    private final ExecutorService executor;
+
+    public PipelinedEvolution(FitnessFunction<Creature> fitnessFunction, int threads) {
+        this(fitnessFunction, threads, Flow.defaultBufferSize());
+    }
+
+    public PipelinedEvolution(FitnessFunction<Creature> fitnessFunction, int threads, int bufferSize) {
+        this.fitnessFunction = fitnessFunction;
+        this.threads = Math.max(1, threads);
+        this.bufferSize = Math.max(1, bufferSize);
+        this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "neat-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create the next generation and evaluate it. When this method returns every creature of the new generation has
+     * its fitness assigned. The current generation must be evaluated already.
+     */
+    public void nextGeneration(NeatContext<Creature> context) {
+        EvaluationSubscriber subscriber = new EvaluationSubscriber();
+
+        // The publisher only hands creatures to the subscriber, so delivery can run on the calling thread
+        try (SubmissionPublisher<Creature> publisher = new SubmissionPublisher<>(Runnable::run, bufferSize)) {
+            publisher.subscribe(subscriber);
+            NeatEvolution.nextGeneration(context, publisher::submit);
+        }
+
+        subscriber.await();
+        context.species.forEach(Species::fitnessChanged);
+        logger.trace("Pipelined generation {} evaluated {} creatures", context.generation, subscriber.completed.get());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private class EvaluationSubscriber implements Flow.Subscriber<Creature> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Phaser running = new Phaser(1);
+        private Flow.Subscription subscription;
+        private final AtomicInteger completed = new AtomicInteger();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(threads);
+        }
+
+        @Override
+        public void onNext(Creature creature) {
+            running.register();
+            executor.execute(() -> {
+                try {
+                    creature.setFitness(fitnessFunction.evaluate(creature));
+                    completed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    running.arriveAndDeregister();
+                    subscription.request(1);
+                }
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure.compareAndSet(null, throwable);
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        void await() {
+            try {
+                done.await();
+                // All creatures are handed out, wait for the last evaluations to finish
+                running.arriveAndAwaitAdvance();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while evaluating the next generation", e);
+            }
+
+            if (failure.get() != null) {
+                throw new IllegalStateException("Fitness function failed", failure.get());
+            }
+        }
+    }
+}
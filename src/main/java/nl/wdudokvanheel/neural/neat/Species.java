@@ -1,15 +1,23 @@
 package nl.wdudokvanheel.neural.neat;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Species<Creature extends CreatureInterface<Creature>> {
     private static AtomicInteger id_counter = new AtomicInteger(0);
     public int id;
-    private List<Creature> creatures = new ArrayList<>();
+    private final CreatureList creatures = new CreatureList();
     private Creature representative;
 
+    // Fitness aggregates of the creatures, only valid while they were computed for the current version. Creatures that
+    // are appended update them, any other change to the creatures or their fitness bumps the version.
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile Aggregates<Creature> aggregates;
+
     public double lastFitness = 0;
     public int lastImprovement = 0;
 
@@ -24,6 +32,21 @@ public class Species<Creature extends CreatureInterface<Creature>> {
         representative.setSpecies(this);
     }
 
+    /**
+     * Id the next new species will get
+     */
+    public static int getNextId() {
+        return id_counter.get();
+    }
+
+    /**
+     * Make sure new species get an id of at least the specified value, used when restoring species from a checkpoint
+     * so new species don't reuse their ids
+     */
+    public static void reserveIds(int nextId) {
+        id_counter.accumulateAndGet(nextId, Math::max);
+    }
+
     public void addCreature(Creature creature) {
         creatures.add(creature);
     }
@@ -40,35 +63,35 @@ public class Species<Creature extends CreatureInterface<Creature>> {
      * Get the fittest creature of this species
      */
     public Creature getChampion() {
-        Creature fittest = null;
-        for (Creature creature : creatures) {
-            if (fittest == null || creature.getFitness() > fittest.getFitness()) {
-                fittest = creature;
-            }
-        }
-
-        return fittest;
+        return getAggregates().champion;
     }
 
     /**
      * Get the average fitness of this species
-     *
-     * @return
      */
     public double getFitness() {
-        if (creatures.isEmpty())
+        Aggregates<Creature> aggregates = getAggregates();
+        if (aggregates.size == 0 || aggregates.total == 0) {
             return 0;
-
-        double total = 0;
-        for (Creature creature : creatures) {
-            total += creature.getFitness();
         }
+        return aggregates.total / aggregates.size;
+    }
 
-        if (total == 0) {
-            return 0;
-        }
+    /**
+     * Fitness of the fittest creature of this species, 0 without creatures
+     */
+    public double getMaxFitness() {
+        Creature champion = getChampion();
+        return champion == null ? 0 : champion.getFitness();
+    }
 
-        return total / creatures.size();
+    /**
+     * Drop the fitness aggregates, called when the fitness of one of the creatures changed. Creatures that extend
+     * {@link nl.wdudokvanheel.neural.util.AbstractCreatureInterface} report this themselves, the evolutions call it after
+     * evaluating creatures.
+     */
+    public void fitnessChanged() {
+        version.incrementAndGet();
     }
 
     public int size() {
@@ -79,4 +102,106 @@ public class Species<Creature extends CreatureInterface<Creature>> {
     public String toString() {
         return "Species #" + id + " fittest: " + (getChampion() != null ? "" + getChampion().getFitness() : "none");
     }
+
+    private Aggregates<Creature> getAggregates() {
+        Aggregates<Creature> current = aggregates;
+        int currentVersion = version.get();
+        if (current == null || current.version != currentVersion) {
+            current = Aggregates.of(creatures.list, currentVersion);
+            aggregates = current;
+        }
+        return current;
+    }
+
+    /**
+     * Total and fittest creature in list order, so the first of equally fit creatures is the champion
+     */
+    private record Aggregates<Creature extends CreatureInterface<Creature>>(int version, int size, double total, Creature champion) {
+        static <Creature extends CreatureInterface<Creature>> Aggregates<Creature> of(List<Creature> creatures, int version) {
+            Aggregates<Creature> aggregates = new Aggregates<>(version, 0, 0, null);
+            for (Creature creature : creatures) {
+                aggregates = aggregates.plus(creature);
+            }
+            return aggregates;
+        }
+
+        Aggregates<Creature> plus(Creature creature) {
+            boolean fittest = champion == null || creature.getFitness() > champion.getFitness();
+            return new Aggregates<>(version, size + 1, total + creature.getFitness(), fittest ? creature : champion);
+        }
+    }
+
+    /**
+     * Creatures of the species, keeps the fitness aggregates up to date on every change made through
+     * {@link #getCreatures()}
+     */
+    private class CreatureList extends AbstractList<Creature> implements RandomAccess {
+        private final ArrayList<Creature> list = new ArrayList<>();
+
+        @Override
+        public Creature get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public boolean add(Creature creature) {
+            list.add(creature);
+            modCount++;
+            // Appending extends the aggregates exactly like a new pass over the creatures would
+            Aggregates<Creature> current = aggregates;
+            if (current != null && current.version == version.get()) {
+                aggregates = current.plus(creature);
+            }
+            return true;
+        }
+
+        @Override
+        public void add(int index, Creature creature) {
+            list.add(index, creature);
+            modCount++;
+            fitnessChanged();
+        }
+
+        @Override
+        public Creature set(int index, Creature creature) {
+            Creature previous = list.set(index, creature);
+            fitnessChanged();
+            return previous;
+        }
+
+        @Override
+        public Creature remove(int index) {
+            Creature removed = list.remove(index);
+            modCount++;
+            fitnessChanged();
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            list.clear();
+            modCount++;
+            fitnessChanged();
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            list.subList(fromIndex, toIndex).clear();
+            modCount++;
+            fitnessChanged();
+        }
+
+        @Override
+        public void sort(Comparator<? super Creature> comparator) {
+            list.sort(comparator);
+            modCount++;
+            // The order decides which of equally fit creatures is the champion
+            fitnessChanged();
+        }
+    }
 }
@@ -0,0 +1,205 @@
+package nl.wdudokvanheel.neural.neat;
+
+import nl.wdudokvanheel.neural.neat.evaluation.FitnessFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Steady-state (rtNEAT style) evolution. Instead of evaluating and replacing a whole generation at once, every time a
+ * creature finishes its evaluation and a worker becomes idle, the worst eligible creature of the population is replaced
+ * by a single new offspring that starts evaluating right away. Slow evaluations no longer hold up reproduction and
+ * all workers stay busy.
+ * <p>
+ * The population is only ever modified on the thread that calls {@link #run(long)}; the workers only call the fitness
+ * function. Every {@code populationSize} evaluations count as one generation: the generation counter is increased, the
+ * species threshold is adjusted and stagnation is tracked. Stagnant species are not removed, but are no longer chosen
+ * as parent species so their members are gradually replaced.
+ */
+public class SteadyStateEvolution<Creature extends CreatureInterface<Creature>> {
+    private final Logger logger = LoggerFactory.getLogger(SteadyStateEvolution.class);
+
+    private final NeatContext<Creature> context;
+    private final FitnessFunction<Creature> fitnessFunction;
+    private final int threads;
+
+    private final Set<Creature> evaluating = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Creature> evaluated = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long evaluations = 0;
+    private long replacements = 0;
+
+    /**
+     * @param context A context with an initial population, see {@link NeatEvolution#generateInitialPopulation}
+     * @param threads Number of creatures that are evaluated at the same time
+     */
+    public SteadyStateEvolution(NeatContext<Creature> context, FitnessFunction<Creature> fitnessFunction, int threads) {
+        this.context = context;
+        this.fitnessFunction = fitnessFunction;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Run the evolution until the specified number of evaluations have completed. When this method returns, every
+     * creature in the population has been evaluated, so it can be called repeatedly to continue the evolution.
+     */
+    public void run(long evaluations) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<Creature> completion = new ExecutorCompletionService<>(executor);
+
+        Deque<Creature> waiting = new ArrayDeque<>();
+        for (Creature creature : context.creatures) {
+            if (!evaluated.contains(creature)) {
+                waiting.add(creature);
+            }
+        }
+
+        long submitted = 0;
+        try {
+            while (submitted < evaluations || !evaluating.isEmpty()) {
+                // Keep every worker busy: first with creatures that still need an evaluation, then with new offspring
+                while (evaluating.size() < threads && submitted < evaluations) {
+                    Creature next = waiting.isEmpty() ? replaceWorstCreature() : waiting.poll();
+                    if (next == null) {
+                        break;
+                    }
+
+                    evaluating.add(next);
+                    completion.submit(() -> {
+                        next.setFitness(fitnessFunction.evaluate(next));
+                        return next;
+                    });
+                    submitted++;
+                }
+
+                if (evaluating.isEmpty()) {
+                    break;
+                }
+
+                Creature creature = completion.take().get();
+                evaluating.remove(creature);
+                evaluated.add(creature);
+                completeEvaluation(creature);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during steady-state evolution", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fitness function failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Total number of evaluations completed
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Total number of creatures that were replaced by new offspring
+     */
+    public long getReplacements() {
+        return replacements;
+    }
+
+    private void completeEvaluation(Creature creature) {
+        evaluations++;
+
+        Species<Creature> species = creature.getSpecies();
+        if (species != null) {
+            species.fitnessChanged();
+            if (species.getFitness() > species.lastFitness) {
+                species.lastFitness = species.getFitness();
+                species.lastImprovement = 0;
+            }
+        }
+
+        if (evaluations % context.configuration.populationSize == 0) {
+            completeGeneration();
+        }
+    }
+
+    private void completeGeneration() {
+        context.generation++;
+        logger.trace("Steady-state generation {} with {} creatures & {} species", context.generation, context.creatures.size(), context.species.size());
+
+        if (context.configuration.adjustSpeciesThreshold) {
+            context.speciationService.adjustThreshold(context.species);
+        }
+
+        // Improvements are recorded as they happen, so only the generations without improvement are left to count
+        for (Species<Creature> species : context.species) {
+            species.lastImprovement++;
+        }
+    }
+
+    /**
+     * Remove the worst evaluated creature from the population and replace it with a new offspring
+     *
+     * @return The new offspring, or null if none of the creatures is eligible for replacement
+     */
+    private Creature replaceWorstCreature() {
+        Creature worst = null;
+        double worstFitness = Double.MAX_VALUE;
+        for (Creature creature : context.creatures) {
+            if (!evaluated.contains(creature)) {
+                continue;
+            }
+
+            // Adjusted fitness, so large species are trimmed before small ones
+            double adjusted = creature.getFitness() / Math.max(1, creature.getSpecies().size());
+            if (adjusted < worstFitness) {
+                worst = creature;
+                worstFitness = adjusted;
+            }
+        }
+
+        if (worst == null) {
+            return null;
+        }
+
+        Species<Creature> parentSpecies = context.crossoverService.selectRandomWeightedSpecies(getParentSpecies());
+        if (parentSpecies == null) {
+            parentSpecies = context.species.getFirst();
+        }
+
+        // Breed before removing, so the population never runs out of parents
+        Creature child = context.crossoverService.createOffspring(context, parentSpecies);
+        removeCreature(worst);
+        context.creatures.add(child);
+        context.speciationService.addCreatureToSpecies(context.species, child);
+        replacements++;
+        return child;
+    }
+
+    private void removeCreature(Creature creature) {
+        context.creatures.remove(creature);
+        evaluated.remove(creature);
+
+        Species<Creature> species = creature.getSpecies();
+        species.getCreatures().remove(creature);
+        if (species.size() == 0) {
+            context.species.remove(species);
+            logger.trace("Removed empty species {}", species);
+        }
+    }
+
+    private List<Species<Creature>> getParentSpecies() {
+        if (!context.configuration.eliminateStagnantSpecies) {
+            return context.species;
+        }
+
+        List<Species<Creature>> active = new ArrayList<>();
+        for (Species<Creature> species : context.species) {
+            // Same limit as SpeciationService.eliminateStagnantSpecies
+            if (species.lastImprovement < 15) {
+                active.add(species);
+            }
+        }
+        return active.isEmpty() ? context.species : active;
+    }
+}
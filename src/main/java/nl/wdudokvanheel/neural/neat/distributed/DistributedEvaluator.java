@@ -0,0 +1,523 @@
+package nl.wdudokvanheel.neural.neat.distributed;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.evaluation.Evaluator;
+import nl.wdudokvanheel.neural.neat.service.GenomeCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static nl.wdudokvanheel.neural.neat.distributed.EvaluationProtocol.*;
+
+/**
+ * Coordinator side of distributed evaluation. Workers connect to the port this evaluator listens on, every call to
+ * {@link #evaluate(List)} ships the genomes of the creatures to the connected workers and blocks until all fitness
+ * values have been streamed back.
+ * <p>
+ * Each worker is kept busy with up to {@code pipelineDepth} tasks per evaluation slot, so it never waits for a network
+ * round trip. Once the queue runs dry, idle workers steal the most recently assigned (and therefore most likely still
+ * queued) task of the busiest worker; the first result wins and the other copy is cancelled. Tasks of a worker that
+ * disconnects are put back in front of the queue. If the fitness function fails on a worker the evaluation fails, like
+ * it does with a local evaluator.
+ * <p>
+ * Messages to a worker are queued and written by a thread of that worker, so a worker that stops reading can't hold up
+ * the others. A worker that doesn't answer a task within the {@link #setTaskTimeout(Duration) task timeout} is
+ * disconnected and its tasks are reassigned.
+ */
+public class DistributedEvaluator<Creature extends CreatureInterface<Creature>> implements Evaluator<Creature>, AutoCloseable {
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_TASK_TIMEOUT = Duration.ofMinutes(10);
+    private final Logger logger = LoggerFactory.getLogger(DistributedEvaluator.class);
+
+    private final GenomeCodec codec = new GenomeCodec(true);
+    private final String functionName;
+    private final int pipelineDepth;
+    private final ServerSocket serverSocket;
+
+    private final Object lock = new Object();
+    private final List<WorkerConnection> workers = new ArrayList<>();
+    private final Deque<Task> queue = new ArrayDeque<>();
+    private final Map<Long, Task> tasks = new HashMap<>();
+    private long taskCounter = 0;
+    private volatile boolean running = true;
+    private Duration taskTimeout = DEFAULT_TASK_TIMEOUT;
+    // Set when a worker reports that the fitness function failed, fails the current evaluation
+    private RuntimeException failure;
+
+    private long stolenTasks = 0;
+    private long reassignedTasks = 0;
+
+    /**
+     * Listen for workers on all interfaces
+     *
+     * @param port         Port to listen on, 0 picks a free port
+     * @param functionName Name of the fitness function the workers should run
+     */
+    public DistributedEvaluator(int port, String functionName) throws IOException {
+        this(new InetSocketAddress(port), functionName, 2);
+    }
+
+    public DistributedEvaluator(InetSocketAddress address, String functionName, int pipelineDepth) throws IOException {
+        this.functionName = functionName;
+        this.pipelineDepth = Math.max(1, pipelineDepth);
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+
+        Thread acceptor = new Thread(this::acceptWorkers, "neat-coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.debug("Waiting for evaluation workers on port {}", serverSocket.getLocalPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getWorkerCount() {
+        synchronized (lock) {
+            return workers.size();
+        }
+    }
+
+    /**
+     * Longest time a worker may take to answer a task, after that it is considered hung and disconnected. Defaults to
+     * 10 minutes, null waits forever.
+     */
+    public void setTaskTimeout(Duration taskTimeout) {
+        synchronized (lock) {
+            this.taskTimeout = taskTimeout;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Number of tasks that were duplicated to an idle worker since this evaluator was created
+     */
+    public long getStolenTasks() {
+        synchronized (lock) {
+            return stolenTasks;
+        }
+    }
+
+    /**
+     * Number of tasks that were put back in the queue because their worker disconnected
+     */
+    public long getReassignedTasks() {
+        synchronized (lock) {
+            return reassignedTasks;
+        }
+    }
+
+    /**
+     * Block until at least the specified number of workers are connected
+     *
+     * @return True if the workers connected before the timeout expired
+     */
+    public boolean awaitWorkers(int count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (lock) {
+            while (workers.size() < count) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(Math.max(1, remaining / 1_000_000));
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void evaluate(List<Creature> creatures) {
+        synchronized (lock) {
+            failure = null;
+            for (Creature creature : creatures) {
+                Task task = new Task(taskCounter++, codec.encode(creature.getGenome()), creature);
+                tasks.put(task.id, task);
+                queue.add(task);
+            }
+            logger.trace("Evaluating {} creatures on {} workers", creatures.size(), workers.size());
+            dispatch();
+
+            boolean warned = false;
+            while (!tasks.isEmpty()) {
+                if (failure != null) {
+                    cancelAll();
+                    throw new IllegalStateException("Fitness function failed", failure);
+                }
+                if (!running) {
+                    throw new IllegalStateException("Evaluator was closed during evaluation");
+                }
+                if (workers.isEmpty() && !warned) {
+                    logger.warn("No evaluation workers connected, waiting for workers to evaluate {} creatures", tasks.size());
+                    warned = true;
+                }
+                try {
+                    if (taskTimeout == null) {
+                        lock.wait();
+                    } else {
+                        lock.wait(Math.max(1, taskTimeout.toMillis() / 4));
+                        disconnectHungWorkers();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for evaluation results", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close server socket: {}", e.getMessage());
+        }
+
+        List<WorkerConnection> closing;
+        synchronized (lock) {
+            closing = new ArrayList<>(workers);
+            for (WorkerConnection worker : closing) {
+                worker.shutdown();
+            }
+            workers.clear();
+            lock.notifyAll();
+        }
+
+        // Give the workers a moment to receive the shutdown, a worker that doesn't read anymore is disconnected
+        long deadline = System.nanoTime() + SHUTDOWN_TIMEOUT.toNanos();
+        for (WorkerConnection worker : closing) {
+            try {
+                worker.writer.join(Math.max(1, (deadline - System.nanoTime()) / 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker.close();
+        }
+    }
+
+    private void acceptWorkers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> handleWorker(socket), "neat-coordinator-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Failed to accept worker: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleWorker(Socket socket) {
+        WorkerConnection worker = null;
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if (input.readByte() != HELLO) {
+                throw new IOException("Expected handshake from worker");
+            }
+            int slots = Math.max(1, input.readInt());
+
+            // Nothing else writes to the worker before it is added
+            output.writeByte(INIT);
+            output.writeUTF(functionName);
+            output.flush();
+
+            worker = new WorkerConnection(socket, output, slots * pipelineDepth);
+            synchronized (lock) {
+                workers.add(worker);
+                logger.debug("Worker {} connected with {} slots", socket.getRemoteSocketAddress(), slots);
+                dispatch();
+                lock.notifyAll();
+            }
+
+            while (running) {
+                byte type = input.readByte();
+                long id = input.readLong();
+                if (type == RESULT) {
+                    complete(worker, id, input.readDouble());
+                } else if (type == ERROR) {
+                    fail(worker, id, input.readUTF());
+                } else {
+                    throw new IOException("Unexpected message type " + type);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            if (running) {
+                logger.warn("Worker {} disconnected", socket.getRemoteSocketAddress());
+            }
+        } catch (IOException e) {
+            logger.warn("Lost connection to worker {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+        } finally {
+            if (worker != null) {
+                removeWorker(worker);
+            } else {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void complete(WorkerConnection sender, long id, double fitness) {
+        synchronized (lock) {
+            Task task = tasks.remove(id);
+            // Stolen tasks can be completed twice, only the first result counts
+            if (task == null) {
+                return;
+            }
+
+            task.creature.setFitness(fitness);
+            for (WorkerConnection assigned : task.assigned) {
+                assigned.inFlight.remove(task);
+            }
+            for (WorkerConnection assigned : task.assigned) {
+                if (assigned != sender) {
+                    send(assigned, CANCEL, task);
+                }
+            }
+            task.assigned.clear();
+
+            dispatch();
+            lock.notifyAll();
+        }
+    }
+
+    private void fail(WorkerConnection sender, long id, String message) {
+        synchronized (lock) {
+            // Ignore errors of tasks that are already completed or cancelled, like late results
+            if (!tasks.containsKey(id)) {
+                return;
+            }
+            logger.error("Worker {} failed to evaluate a creature: {}", sender.socket.getRemoteSocketAddress(), message);
+            if (failure == null) {
+                failure = new RuntimeException("Worker " + sender.socket.getRemoteSocketAddress() + ": " + message);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Disconnect the workers that didn't answer their oldest task within the timeout, the reader thread of the worker
+     * then reassigns its tasks. Must be called while holding the lock.
+     */
+    private void disconnectHungWorkers() {
+        long now = System.nanoTime();
+        for (WorkerConnection worker : workers) {
+            if (worker.inFlight.isEmpty()) {
+                continue;
+            }
+            long assignedAt = worker.inFlight.values().iterator().next();
+            if (now - assignedAt > taskTimeout.toNanos()) {
+                logger.warn("Worker {} didn't answer a task within {}, disconnecting", worker.socket.getRemoteSocketAddress(), taskTimeout);
+                worker.close();
+            }
+        }
+    }
+
+    /**
+     * Drop all tasks of the current evaluation and cancel them on the workers. Must be called while holding the lock.
+     */
+    private void cancelAll() {
+        queue.clear();
+        for (Task task : tasks.values()) {
+            for (WorkerConnection assigned : task.assigned) {
+                assigned.inFlight.remove(task);
+                send(assigned, CANCEL, task);
+            }
+            task.assigned.clear();
+        }
+        tasks.clear();
+    }
+
+    private void removeWorker(WorkerConnection worker) {
+        synchronized (lock) {
+            if (!workers.remove(worker)) {
+                return;
+            }
+            worker.close();
+
+            for (Task task : worker.inFlight.keySet()) {
+                task.assigned.remove(worker);
+                if (task.assigned.isEmpty() && tasks.containsKey(task.id)) {
+                    queue.addFirst(task);
+                    reassignedTasks++;
+                }
+            }
+            worker.inFlight.clear();
+
+            dispatch();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Fill the pipeline of every worker, first from the queue and then by stealing tasks from busy workers.
+     * Must be called while holding the lock.
+     */
+    private void dispatch() {
+        for (WorkerConnection worker : new ArrayList<>(workers)) {
+            while (worker.inFlight.size() < worker.capacity) {
+                Task task = queue.pollFirst();
+                if (task == null) {
+                    task = findTaskToSteal(worker);
+                    if (task == null) {
+                        break;
+                    }
+                    stolenTasks++;
+                }
+
+                assign(worker, task);
+            }
+        }
+    }
+
+    private Task findTaskToSteal(WorkerConnection thief) {
+        WorkerConnection victim = null;
+        for (WorkerConnection worker : workers) {
+            if (worker != thief && worker.inFlight.size() > 1 && (victim == null || worker.inFlight.size() > victim.inFlight.size())) {
+                victim = worker;
+            }
+        }
+
+        if (victim == null) {
+            return null;
+        }
+
+        // Walk back from the most recently assigned task, those are the least likely to be running already
+        List<Task> candidates = new ArrayList<>(victim.inFlight.keySet());
+        for (int i = candidates.size() - 1; i > 0; i--) {
+            Task task = candidates.get(i);
+            if (task.assigned.size() == 1) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void assign(WorkerConnection worker, Task task) {
+        task.assigned.add(worker);
+        worker.inFlight.put(task, System.nanoTime());
+        send(worker, TASK, task);
+    }
+
+    private void send(WorkerConnection worker, byte type, Task task) {
+        worker.outbox.add(new Message(type, task));
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Nothing left to clean up
+        }
+    }
+
+    private class Task {
+        final long id;
+        final byte[] genome;
+        final Creature creature;
+        // Workers this task is sent to, more than one when it was stolen
+        final List<WorkerConnection> assigned = new ArrayList<>(1);
+
+        Task(long id, byte[] genome, Creature creature) {
+            this.id = id;
+            this.genome = genome;
+            this.creature = creature;
+        }
+    }
+
+    private class Message {
+        final byte type;
+        final Task task;
+
+        Message(byte type, Task task) {
+            this.type = type;
+            this.task = task;
+        }
+    }
+
+    private class WorkerConnection {
+        // Stops the writer without anything left to send
+        final Message close = new Message((byte) 0, null);
+
+        final Socket socket;
+        final DataOutputStream output;
+        final int capacity;
+        // Tasks sent to the worker and when, oldest first
+        final LinkedHashMap<Task, Long> inFlight = new LinkedHashMap<>();
+        final BlockingQueue<Message> outbox = new LinkedBlockingQueue<>();
+        final Thread writer;
+
+        WorkerConnection(Socket socket, DataOutputStream output, int capacity) {
+            this.socket = socket;
+            this.output = output;
+            this.capacity = capacity;
+            writer = new Thread(this::write, "neat-coordinator-writer-" + socket.getRemoteSocketAddress());
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        /**
+         * Write queued messages until the worker is closed, flushing whenever the queue runs dry
+         */
+        private void write() {
+            try {
+                while (true) {
+                    Message message = outbox.take();
+                    if (message == close) {
+                        return;
+                    }
+                    output.writeByte(message.type);
+                    if (message.type == SHUTDOWN) {
+                        output.flush();
+                        return;
+                    }
+                    output.writeLong(message.task.id);
+                    if (message.type == TASK) {
+                        output.writeInt(message.task.genome.length);
+                        output.write(message.task.genome);
+                    }
+                    if (outbox.isEmpty()) {
+                        output.flush();
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Failed to send to worker {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                }
+                // Closing the socket makes the reader thread clean up and reassign the worker's tasks
+                closeQuietly(socket);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Send the shutdown after the queued messages
+         */
+        void shutdown() {
+            outbox.add(new Message(SHUTDOWN, null));
+        }
+
+        void close() {
+            outbox.add(close);
+            closeQuietly(socket);
+        }
+    }
+}
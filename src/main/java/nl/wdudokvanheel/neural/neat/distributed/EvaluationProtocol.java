@@ -0,0 +1,25 @@
+package nl.wdudokvanheel.neural.neat.distributed;
+
+/**
+ * Message types exchanged between the {@link DistributedEvaluator} and its {@link EvaluationWorker}s. Every message
+ * starts with its type byte, followed by the fields listed for that type.
+ */
+final class EvaluationProtocol {
+    // Worker -> coordinator: int slots
+    static final byte HELLO = 1;
+    // Coordinator -> worker: UTF function name
+    static final byte INIT = 2;
+    // Coordinator -> worker: long task id, int length, encoded genome
+    static final byte TASK = 3;
+    // Coordinator -> worker: long task id
+    static final byte CANCEL = 4;
+    // Worker -> coordinator: long task id, double fitness
+    static final byte RESULT = 5;
+    // Worker -> coordinator: long task id, UTF message
+    static final byte ERROR = 6;
+    // Coordinator -> worker
+    static final byte SHUTDOWN = 7;
+
+    private EvaluationProtocol() {
+    }
+}
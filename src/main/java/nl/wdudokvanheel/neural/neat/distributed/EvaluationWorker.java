@@ -0,0 +1,185 @@
+package nl.wdudokvanheel.neural.neat.distributed;
+
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.service.GenomeCodec;
+import nl.wdudokvanheel.neural.network.Network;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static nl.wdudokvanheel.neural.neat.distributed.EvaluationProtocol.*;
+
+/**
+ * Worker side of distributed evaluation. A worker connects to a {@link DistributedEvaluator}, rebuilds a network for
+ * every genome it receives, runs the fitness function the coordinator asks for and streams the results back.
+ * <p>
+ * Fitness functions are registered by name, so the same worker process can serve different experiments:
+ * <pre>
+ * new EvaluationWorker("coordinator-host", 5000, 8)
+ *     .register("xor", network -> scoreXor(network))
+ *     .run();
+ * </pre>
+ */
+public class EvaluationWorker implements Runnable, AutoCloseable {
+    // Error messages are sent with writeUTF, which is limited to 64 KB
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private final Logger logger = LoggerFactory.getLogger(EvaluationWorker.class);
+
+    private final GenomeCodec codec = new GenomeCodec(true);
+    private final Map<String, NetworkFitnessFunction> functions = new HashMap<>();
+    private final Map<Long, Future<?>> pending = new ConcurrentHashMap<>();
+    private final String host;
+    private final int port;
+    private final int slots;
+
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    private DataOutputStream output;
+    private ExecutorService executor;
+
+    public EvaluationWorker(String host, int port) {
+        this(host, port, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param slots Number of creatures this worker evaluates in parallel
+     */
+    public EvaluationWorker(String host, int port, int slots) {
+        this.host = host;
+        this.port = port;
+        this.slots = Math.max(1, slots);
+    }
+
+    public EvaluationWorker register(String name, NetworkFitnessFunction function) {
+        functions.put(name, function);
+        return this;
+    }
+
+    /**
+     * Connect to the coordinator and evaluate tasks until the coordinator shuts down or the worker is closed
+     */
+    @Override
+    public void run() {
+        executor = Executors.newFixedThreadPool(slots, runnable -> {
+            Thread thread = new Thread(runnable, "neat-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (Socket socket = new Socket(host, port)) {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            synchronized (output) {
+                output.writeByte(HELLO);
+                output.writeInt(slots);
+                output.flush();
+            }
+
+            if (input.readByte() != INIT) {
+                throw new IOException("Expected handshake from coordinator");
+            }
+            String name = input.readUTF();
+            NetworkFitnessFunction function = functions.get(name);
+            if (function == null) {
+                throw new IllegalStateException("No fitness function registered as '" + name + "'");
+            }
+            logger.debug("Connected to coordinator {}:{}, evaluating '{}'", host, port, name);
+
+            while (running) {
+                byte type = input.readByte();
+                if (type == SHUTDOWN) {
+                    break;
+                }
+
+                long id = input.readLong();
+                if (type == TASK) {
+                    byte[] data = new byte[input.readInt()];
+                    input.readFully(data);
+                    FutureTask<Void> task = new FutureTask<>(() -> evaluate(function, id, data), null);
+                    pending.put(id, task);
+                    executor.execute(task);
+                } else if (type == CANCEL) {
+                    Future<?> future = pending.remove(id);
+                    if (future != null) {
+                        future.cancel(false);
+                    }
+                } else {
+                    throw new IOException("Unexpected message type " + type);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            if (running) {
+                logger.warn("Lost connection to coordinator {}:{}", host, port);
+            }
+        } catch (IOException e) {
+            logger.error("Connection to coordinator {}:{} failed: {}", host, port, e.getMessage());
+        } finally {
+            running = false;
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Disconnect from the coordinator, any task that has not been reported yet will be reassigned by the coordinator
+     */
+    @Override
+    public void close() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+
+    private void evaluate(NetworkFitnessFunction function, long id, byte[] data) {
+        if (pending.remove(id) == null) {
+            return;
+        }
+
+        try {
+            Genome genome = codec.decode(data);
+            double fitness = function.evaluate(new Network(genome));
+            send(RESULT, id, fitness, null);
+        } catch (Throwable e) {
+            // Errors are reported too, a task that is never answered would stall the coordinator
+            logger.error("Failed to evaluate task {}", id, e);
+            String message = e.toString();
+            send(ERROR, id, 0, message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+        }
+    }
+
+    private void send(byte type, long id, double fitness, String message) {
+        try {
+            synchronized (output) {
+                output.writeByte(type);
+                output.writeLong(id);
+                if (type == RESULT) {
+                    output.writeDouble(fitness);
+                } else {
+                    output.writeUTF(message);
+                }
+                output.flush();
+            }
+        } catch (IOException e) {
+            if (running) {
+                logger.warn("Failed to send result of task {}: {}", id, e.getMessage());
+            }
+            // The coordinator reassigns the tasks of a worker that disconnects
+            close();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package nl.wdudokvanheel.neural.neat.distributed;
+
+import nl.wdudokvanheel.neural.network.Network;
+
+/**
+ * Fitness function that runs on an {@link EvaluationWorker}. Workers only receive genomes, so the function is handed the
+ * network that was built from the genome instead of a creature.
+ */
+public interface NetworkFitnessFunction {
+    double evaluate(Network network);
+}
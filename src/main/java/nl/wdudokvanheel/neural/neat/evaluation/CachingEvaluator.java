@@ -0,0 +1,126 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Evaluator that remembers the fitness of genomes it has seen before. Unmodified champion clones, the fittest creature
+ * that is carried over and offspring that happened to receive no mutation are not evaluated again, and identical
+ * genomes within one generation are only evaluated once.
+ * <p>
+ * Genomes are matched on their exact fingerprint, so this only gives correct results for deterministic fitness
+ * functions. The cache holds at most {@code maxEntries} fitness values and evicts the least recently used ones first.
+ */
+public class CachingEvaluator<Creature extends CreatureInterface<Creature>> implements Evaluator<Creature> {
+    private final Logger logger = LoggerFactory.getLogger(CachingEvaluator.class);
+
+    private final Evaluator<Creature> evaluator;
+    private final int maxEntries;
+    private final LinkedHashMap<Long, Double> cache;
+    private long evictions = 0;
+
+    private CacheStatistics lastStatistics = new CacheStatistics(0, 0, 0, 0, 0, 0);
+
+    /**
+     * @param evaluator  Evaluator for the creatures that are not in the cache
+     * @param maxEntries Maximum number of fitness values to keep
+     */
+    public CachingEvaluator(Evaluator<Creature> evaluator, int maxEntries) {
+        this.evaluator = evaluator;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest) {
+                if (size() > CachingEvaluator.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void evaluate(List<Creature> creatures) {
+        long evictionsBefore = evictions;
+        int hits = 0;
+        int duplicates = 0;
+
+        List<Creature> unique = new ArrayList<>();
+        Map<Long, List<Creature>> pending = new HashMap<>();
+
+        for (Creature creature : creatures) {
+            long fingerprint = creature.getGenome().getFingerprint();
+
+            Double fitness = cache.get(fingerprint);
+            if (fitness != null) {
+                creature.setFitness(fitness);
+                hits++;
+                continue;
+            }
+
+            List<Creature> same = pending.get(fingerprint);
+            if (same == null) {
+                same = new ArrayList<>(1);
+                pending.put(fingerprint, same);
+                unique.add(creature);
+            } else {
+                duplicates++;
+            }
+            same.add(creature);
+        }
+
+        if (!unique.isEmpty()) {
+            evaluator.evaluate(unique);
+        }
+
+        for (Map.Entry<Long, List<Creature>> entry : pending.entrySet()) {
+            List<Creature> same = entry.getValue();
+            double fitness = same.getFirst().getFitness();
+            for (int i = 1; i < same.size(); i++) {
+                same.get(i).setFitness(fitness);
+            }
+            cache.put(entry.getKey(), fitness);
+        }
+
+        lastStatistics = new CacheStatistics(creatures.size(), hits, duplicates, unique.size(), evictions - evictionsBefore, cache.size());
+        logger.debug("{}", lastStatistics);
+    }
+
+    /**
+     * Statistics of the last call to {@link #evaluate(List)}, usually one generation
+     */
+    public synchronized CacheStatistics getLastStatistics() {
+        return lastStatistics;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * @param lookups    Number of creatures passed to the evaluator
+     * @param hits       Creatures that got their fitness from an earlier evaluation
+     * @param duplicates Creatures that shared a genome with another creature of the same call
+     * @param evaluated  Creatures that were actually evaluated
+     * @param evictions  Fitness values removed from the cache to stay within the size limit
+     * @param entries    Number of fitness values in the cache afterwards
+     */
+    public record CacheStatistics(int lookups, int hits, int duplicates, int evaluated, long evictions, int entries) {
+        /**
+         * Fraction of the creatures that didn't need an evaluation
+         */
+        public double getHitRate() {
+            return lookups == 0 ? 0 : (double) (hits + duplicates) / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Fitness cache: %d of %d creatures cached (%.1f%%), %d cross-generation hits, %d duplicates, %d evaluated, %d evictions, %d entries",
+                    hits + duplicates, lookups, getHitRate() * 100, hits, duplicates, evaluated, evictions, entries);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+
+import java.util.List;
+
+/**
+ * Strategy to determine the fitness of a group of creatures. An evaluator is expected to call
+ * {@link CreatureInterface#setFitness(double)} on every creature before it returns.
+ */
+public interface Evaluator<Creature extends CreatureInterface<Creature>> {
+    void evaluate(List<Creature> creatures);
+}
@@ -0,0 +1,11 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+
+/**
+ * Determine the fitness of a single creature. Implementations are called from multiple threads at the same time, each
+ * call with a different creature.
+ */
+public interface FitnessFunction<Creature extends CreatureInterface<Creature>> {
+    double evaluate(Creature creature);
+}
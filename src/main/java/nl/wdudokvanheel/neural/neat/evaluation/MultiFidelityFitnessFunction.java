@@ -0,0 +1,15 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+
+/**
+ * Fitness function with cheaper, less accurate variants, for example fewer episodes, shorter horizons or a smaller
+ * dataset. Used by the {@link SuccessiveHalvingEvaluator}.
+ */
+public interface MultiFidelityFitnessFunction<Creature extends CreatureInterface<Creature>> {
+    /**
+     * @param fidelity Level of the evaluation, from 0 (cheapest) up to the number of levels of the evaluator minus one
+     *                 (the full evaluation)
+     */
+    double evaluate(Creature creature, int fidelity);
+}
@@ -0,0 +1,53 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Evaluate creatures with a fitness function on a fixed number of threads in the current process
+ */
+public class ParallelEvaluator<Creature extends CreatureInterface<Creature>> implements Evaluator<Creature>, AutoCloseable {
+    private final FitnessFunction<Creature> fitnessFunction;
+    private final ExecutorService executor;
+
+    public ParallelEvaluator(FitnessFunction<Creature> fitnessFunction) {
+        this(fitnessFunction, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelEvaluator(FitnessFunction<Creature> fitnessFunction, int threads) {
+        this.fitnessFunction = fitnessFunction;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "neat-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void evaluate(List<Creature> creatures) {
+        List<Future<?>> futures = new ArrayList<>(creatures.size());
+        for (Creature creature : creatures) {
+            futures.add(executor.submit(() -> creature.setFitness(fitnessFunction.evaluate(creature))));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating creatures", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Fitness function failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,147 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.Species;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluator that races the creatures of each species against the survival cutoff of that species. The bottom
+ * {@code bottomElimination} fraction of every species is removed in the next generation anyway, so as soon as enough
+ * creatures of a species have completed to fill all surviving places, any creature whose upper bound is below the
+ * lowest of those fitness values is stopped.
+ * <p>
+ * Stopped creatures keep their partial fitness, capped below the cutoff, so the same creatures are eliminated as with
+ * a full evaluation and they are never picked as parents. Their fitness is still lower than a full evaluation would
+ * have given, which lowers the species average used to detect stagnation, and it is what a
+ * {@link SurrogateModel} learns for their genomes. Species that eliminate all of their creatures are not raced, there
+ * is no survivor to race against. Creatures must be speciated before they are evaluated, which is the case for every
+ * generation created by {@link nl.wdudokvanheel.neural.neat.NeatEvolution}.
+ */
+public class RacingEvaluator<Creature extends CreatureInterface<Creature>> implements Evaluator<Creature>, AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(RacingEvaluator.class);
+
+    private final RacingFitnessFunction<Creature> fitnessFunction;
+    private final NeatConfiguration configuration;
+    private final ExecutorService executor;
+
+    private int lastStopped = 0;
+
+    public RacingEvaluator(RacingFitnessFunction<Creature> fitnessFunction, NeatConfiguration configuration, int threads) {
+        this.fitnessFunction = fitnessFunction;
+        this.configuration = configuration;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "neat-racing-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void evaluate(List<Creature> creatures) {
+        Map<Species<Creature>, Race> races = new IdentityHashMap<>();
+        for (Creature creature : creatures) {
+            Species<Creature> species = creature.getSpecies();
+            if (species != null && !races.containsKey(species)) {
+                int eliminated = (int) Math.floor(species.size() * configuration.bottomElimination);
+                int survivors = species.size() - eliminated;
+                races.put(species, new Race(survivors, eliminated > 0 && survivors > 0));
+            }
+        }
+
+        AtomicInteger stopped = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(creatures.size());
+        for (Creature creature : creatures) {
+            Race race = creature.getSpecies() == null ? null : races.get(creature.getSpecies());
+            futures.add(executor.submit(() -> evaluate(creature, race, stopped)));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating creatures", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Fitness function failed", e.getCause());
+        }
+
+        lastStopped = stopped.get();
+        logger.debug("Stopped the evaluation of {} of {} creatures early", lastStopped, creatures.size());
+    }
+
+    /**
+     * Number of creatures that were stopped early during the last call to {@link #evaluate(List)}
+     */
+    public int getLastStopped() {
+        return lastStopped;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void evaluate(Creature creature, Race race, AtomicInteger stopped) {
+        if (race == null || !race.eliminates) {
+            creature.setFitness(fitnessFunction.evaluate(creature, (fitness, upperBound) -> true));
+            return;
+        }
+
+        // Upper bound that proved the creature can't survive, NaN while it still can
+        double[] stoppedAt = {Double.NaN};
+        double fitness = fitnessFunction.evaluate(creature, (partial, upperBound) -> {
+            if (upperBound < race.getCutoff()) {
+                stoppedAt[0] = upperBound;
+                return false;
+            }
+            return true;
+        });
+
+        if (!Double.isNaN(stoppedAt[0])) {
+            // The bound is below the cutoff, so the creature is ranked below every survivor
+            creature.setFitness(Math.min(fitness, stoppedAt[0]));
+            stopped.incrementAndGet();
+        } else {
+            creature.setFitness(fitness);
+            race.complete(fitness);
+        }
+    }
+
+    /**
+     * Completed fitness values of one species
+     */
+    private static class Race {
+        private final int survivors;
+        private final boolean eliminates;
+        // The best completed fitness values, up to the number of survivors
+        private final PriorityQueue<Double> best = new PriorityQueue<>();
+        private volatile double cutoff = Double.NEGATIVE_INFINITY;
+
+        Race(int survivors, boolean eliminates) {
+            this.survivors = survivors;
+            this.eliminates = eliminates;
+        }
+
+        double getCutoff() {
+            return cutoff;
+        }
+
+        synchronized void complete(double fitness) {
+            best.add(fitness);
+            if (best.size() > survivors) {
+                best.poll();
+            }
+            if (best.size() == survivors) {
+                cutoff = best.peek();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+
+/**
+ * Fitness function that reports its progress while it runs, so the {@link RacingEvaluator} can stop evaluating
+ * creatures that can no longer survive selection.
+ */
+public interface RacingFitnessFunction<Creature extends CreatureInterface<Creature>> {
+    /**
+     * Evaluate a creature. The function should call {@link Progress#report(double, double)} regularly, for example after
+     * every simulation step or sample, and return as soon as it returns false.
+     *
+     * @return The fitness of the creature, or the partial fitness if the evaluation was stopped early
+     */
+    double evaluate(Creature creature, Progress progress);
+
+    interface Progress {
+        /**
+         * Report the progress of an evaluation
+         *
+         * @param fitness    Fitness accumulated so far
+         * @param upperBound Highest fitness the creature can still reach when the evaluation completes
+         * @return True to continue, false if the creature can't reach the survival cutoff and evaluation should stop
+         */
+        boolean report(double fitness, double upperBound);
+    }
+}
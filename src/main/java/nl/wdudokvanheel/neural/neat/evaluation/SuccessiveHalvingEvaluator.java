@@ -0,0 +1,211 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.Species;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Multi-fidelity evaluator based on successive halving. All creatures are evaluated at the cheapest fidelity, then only
+ * the best {@code promotionFraction} of them is promoted to the next, more expensive fidelity, and so on until the
+ * full evaluation. The best creature of every species is always promoted, so each species has at least one creature
+ * with a full evaluation.
+ * <p>
+ * Scores of different fidelities are usually not on the same scale, so creatures that were not promoted all the way
+ * get a fitness that is projected onto the scale of the full evaluation: a linear fit from the scores of the
+ * creatures that were promoted from the same level to their final fitness. The projection is capped just below the
+ * lowest final fitness of the promoted creatures that scored at least as high on that level, so a creature never
+ * outranks one that beat it, while a weak species champion that was only promoted for its species doesn't pull down
+ * the creatures that beat it. This keeps species
+ * averages comparable for the offspring quotas of the {@link nl.wdudokvanheel.neural.neat.service.CrossoverService}.
+ */
+public class SuccessiveHalvingEvaluator<Creature extends CreatureInterface<Creature>> implements Evaluator<Creature>, AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(SuccessiveHalvingEvaluator.class);
+
+    private final MultiFidelityFitnessFunction<Creature> fitnessFunction;
+    private final int levels;
+    private final double promotionFraction;
+    private final ExecutorService executor;
+
+    private int[] lastEvaluations = new int[0];
+
+    /**
+     * @param levels            Number of fidelity levels
+     * @param promotionFraction Fraction of the creatures of a level that is promoted to the next level, 0.5 halves the
+     *                          creatures at every level
+     * @param threads           Number of creatures that are evaluated at the same time
+     */
+    public SuccessiveHalvingEvaluator(MultiFidelityFitnessFunction<Creature> fitnessFunction, int levels, double promotionFraction, int threads) {
+        if (levels < 1) {
+            throw new IllegalArgumentException("At least one fidelity level is required");
+        }
+        if (promotionFraction <= 0 || promotionFraction > 1) {
+            throw new IllegalArgumentException("Promotion fraction must be in (0, 1]");
+        }
+
+        this.fitnessFunction = fitnessFunction;
+        this.levels = levels;
+        this.promotionFraction = promotionFraction;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "neat-halving-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void evaluate(List<Creature> creatures) {
+        lastEvaluations = new int[levels];
+        if (creatures.isEmpty()) {
+            return;
+        }
+
+        // Scores of each creature, one per level it was evaluated at
+        Map<Creature, double[]> scores = new IdentityHashMap<>();
+        // Creatures per level, a creature of level n is also part of all levels below
+        List<List<Creature>> rungs = new ArrayList<>();
+
+        List<Creature> current = new ArrayList<>(creatures);
+        for (int level = 0; level < levels && !current.isEmpty(); level++) {
+            evaluateLevel(current, level, scores);
+            rungs.add(current);
+            lastEvaluations[level] = current.size();
+
+            if (level < levels - 1) {
+                current = promote(current, level, scores);
+            }
+        }
+
+        assignFitness(rungs, scores);
+        logger.debug("Successive halving evaluations per fidelity level: {}", Arrays.toString(lastEvaluations));
+    }
+
+    /**
+     * Number of creatures evaluated at each fidelity level during the last call to {@link #evaluate(List)}
+     */
+    public int[] getLastEvaluations() {
+        return lastEvaluations.clone();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void evaluateLevel(List<Creature> creatures, int level, Map<Creature, double[]> scores) {
+        List<Future<Double>> futures = new ArrayList<>(creatures.size());
+        for (Creature creature : creatures) {
+            futures.add(executor.submit(() -> fitnessFunction.evaluate(creature, level)));
+        }
+
+        try {
+            for (int i = 0; i < creatures.size(); i++) {
+                double score = futures.get(i).get();
+                scores.computeIfAbsent(creatures.get(i), c -> new double[levels])[level] = score;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating creatures", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Fitness function failed", e.getCause());
+        }
+    }
+
+    private List<Creature> promote(List<Creature> creatures, int level, Map<Creature, double[]> scores) {
+        List<Creature> ranked = new ArrayList<>(creatures);
+        ranked.sort(Comparator.comparingDouble((Creature c) -> scores.get(c)[level]).reversed());
+
+        int promoted = (int) Math.ceil(ranked.size() * promotionFraction);
+        Set<Creature> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        result.addAll(ranked.subList(0, promoted));
+
+        // Ranked best first, so the first creature seen of every species is its best
+        Set<Species<Creature>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Creature creature : ranked) {
+            if (creature.getSpecies() != null && seen.add(creature.getSpecies())) {
+                result.add(creature);
+            }
+        }
+
+        List<Creature> next = new ArrayList<>(result.size());
+        for (Creature creature : ranked) {
+            if (result.contains(creature)) {
+                next.add(creature);
+            }
+        }
+        return next;
+    }
+
+    private void assignFitness(List<List<Creature>> rungs, Map<Creature, double[]> scores) {
+        int top = rungs.size() - 1;
+        for (Creature creature : rungs.get(top)) {
+            creature.setFitness(scores.get(creature)[top]);
+        }
+
+        // Work down from the top, every level is projected onto the final fitness of the level above it
+        for (int level = top - 1; level >= 0; level--) {
+            Set<Creature> promoted = Collections.newSetFromMap(new IdentityHashMap<>());
+            promoted.addAll(rungs.get(level + 1));
+
+            double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+            for (Creature creature : promoted) {
+                double x = scores.get(creature)[level];
+                double y = creature.getFitness();
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumXY += x * y;
+            }
+
+            // Promoted creatures by their score on this level, best first, with the lowest final fitness so far
+            int currentLevel = level;
+            List<Creature> ranked = new ArrayList<>(promoted);
+            ranked.sort(Comparator.comparingDouble((Creature c) -> scores.get(c)[currentLevel]).reversed());
+            double[] rankedScores = new double[ranked.size()];
+            double[] lowest = new double[ranked.size()];
+            for (int i = 0; i < ranked.size(); i++) {
+                rankedScores[i] = scores.get(ranked.get(i))[level];
+                lowest[i] = Math.min(i == 0 ? Double.POSITIVE_INFINITY : lowest[i - 1], ranked.get(i).getFitness());
+            }
+
+            int n = promoted.size();
+            double meanX = sumX / n;
+            double meanY = sumY / n;
+            double variance = sumXX - n * meanX * meanX;
+            double slope = variance > 1e-12 ? (sumXY - n * meanX * meanY) / variance : 1;
+            // Never let a better low fidelity score result in a lower fitness
+            slope = Math.max(slope, 0);
+            double intercept = meanY - slope * meanX;
+
+            for (Creature creature : rungs.get(level)) {
+                if (!promoted.contains(creature)) {
+                    double score = scores.get(creature)[level];
+                    double projected = intercept + slope * score;
+                    int beaten = countAtLeast(rankedScores, score);
+                    creature.setFitness(beaten == 0 ? projected : Math.min(projected, Math.nextDown(lowest[beaten - 1])));
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of scores in the descending array that are at least the score
+     */
+    private static int countAtLeast(double[] descending, double score) {
+        int low = 0;
+        int high = descending.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (descending[middle] >= score) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
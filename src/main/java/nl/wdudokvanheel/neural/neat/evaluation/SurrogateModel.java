@@ -0,0 +1,233 @@
+package nl.wdudokvanheel.neural.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.service.GenomeComparison;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Cheap fitness predictor used to pre-screen offspring. The model keeps an archive of recently evaluated genomes and
+ * predicts the fitness of a new genome with k-nearest-neighbour regression: the distance-weighted average fitness of
+ * the k most similar archived genomes. Similarity is the {@link GenomeComparison} distance plus the relative difference
+ * in neuron and enabled connection count.
+ * <p>
+ * When set on the {@link nl.wdudokvanheel.neural.neat.NeatContext}, the
+ * {@link nl.wdudokvanheel.neural.neat.service.CrossoverService} breeds {@code candidates} children for every offspring
+ * and only keeps the one with the highest prediction. {@link nl.wdudokvanheel.neural.neat.NeatEvolution} feeds the
+ * evaluated generation back into the archive and compares the predictions with the real fitness.
+ * <p>
+ * Genomes in the archive are kept by reference, so they must not be modified after they are evaluated.
+ */
+public class SurrogateModel {
+    private final Logger logger = LoggerFactory.getLogger(SurrogateModel.class);
+
+    private final int neighbours;
+    private final int archiveSize;
+    private final int candidates;
+
+    private final Deque<Sample> archive = new ArrayDeque<>();
+    private final Set<Genome> archived = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Predictions of the offspring that were kept, to compare with their real fitness once evaluated
+    private final Map<Genome, Double> predictions = new IdentityHashMap<>();
+
+    private SurrogateAccuracy lastAccuracy = new SurrogateAccuracy(0, 0, 0);
+
+    /**
+     * @param neighbours  Number of archived genomes a prediction is based on
+     * @param archiveSize Maximum number of evaluated genomes to keep, the oldest are dropped first
+     * @param candidates  Number of children bred for every offspring that is kept
+     */
+    public SurrogateModel(int neighbours, int archiveSize, int candidates) {
+        if (neighbours < 1 || archiveSize < neighbours) {
+            throw new IllegalArgumentException("The archive must hold at least one neighbour");
+        }
+        this.neighbours = neighbours;
+        this.archiveSize = archiveSize;
+        this.candidates = Math.max(1, candidates);
+    }
+
+    /**
+     * True once the archive holds enough genomes to make predictions
+     */
+    public boolean isReady() {
+        return archive.size() >= neighbours;
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Predict the fitness of a genome
+     */
+    public double predict(Genome genome) {
+        if (!isReady()) {
+            throw new IllegalStateException("Not enough evaluated genomes to make a prediction");
+        }
+
+        // Max heap on distance holding the k nearest samples
+        PriorityQueue<double[]> nearest = new PriorityQueue<>(neighbours + 1, (a, b) -> Double.compare(b[0], a[0]));
+        Features features = new Features(genome);
+        for (Sample sample : archive) {
+            double distance = distance(genome, features, sample);
+            if (nearest.size() < neighbours || distance < nearest.peek()[0]) {
+                nearest.add(new double[]{distance, sample.fitness});
+                if (nearest.size() > neighbours) {
+                    nearest.poll();
+                }
+            }
+        }
+
+        double weighted = 0;
+        double totalWeight = 0;
+        for (double[] neighbour : nearest) {
+            double weight = 1 / (neighbour[0] + 1e-6);
+            weighted += weight * neighbour[1];
+            totalWeight += weight;
+        }
+        return weighted / totalWeight;
+    }
+
+    /**
+     * Remember the prediction of an offspring that was kept, it is compared with the real fitness in
+     * {@link #update(List)}
+     */
+    public void recordPrediction(Genome genome, double prediction) {
+        predictions.put(genome, prediction);
+    }
+
+    /**
+     * Add an evaluated generation to the archive and measure the accuracy of the predictions made for it
+     */
+    public <Creature extends CreatureInterface<Creature>> void update(List<Creature> creatures) {
+        List<double[]> pairs = new ArrayList<>();
+        for (Creature creature : creatures) {
+            Double predicted = predictions.get(creature.getGenome());
+            if (predicted != null) {
+                pairs.add(new double[]{predicted, creature.getFitness()});
+            }
+            add(creature.getGenome(), creature.getFitness());
+        }
+        predictions.clear();
+
+        if (!pairs.isEmpty()) {
+            lastAccuracy = measure(pairs);
+            logger.debug("Surrogate accuracy over {} offspring: mean absolute error {}, rank correlation {}", lastAccuracy.samples(), lastAccuracy.meanAbsoluteError(), lastAccuracy.rankCorrelation());
+        }
+    }
+
+    /**
+     * Accuracy of the predictions for the last generation passed to {@link #update(List)} that had predictions
+     */
+    public SurrogateAccuracy getLastAccuracy() {
+        return lastAccuracy;
+    }
+
+    private void add(Genome genome, double fitness) {
+        if (!archived.add(genome)) {
+            return;
+        }
+
+        archive.addLast(new Sample(genome, new Features(genome), fitness));
+        if (archive.size() > archiveSize) {
+            archived.remove(archive.removeFirst().genome);
+        }
+    }
+
+    private double distance(Genome genome, Features features, Sample sample) {
+        double distance = new GenomeComparison(genome, sample.genome).getDistance();
+        distance += relativeDifference(features.neurons, sample.features.neurons);
+        distance += relativeDifference(features.enabledConnections, sample.features.enabledConnections);
+        return distance;
+    }
+
+    private static double relativeDifference(int a, int b) {
+        return Math.abs(a - b) / (double) Math.max(1, Math.max(a, b));
+    }
+
+    private static SurrogateAccuracy measure(List<double[]> pairs) {
+        double error = 0;
+        for (double[] pair : pairs) {
+            error += Math.abs(pair[0] - pair[1]);
+        }
+
+        double[] predictedRanks = ranks(pairs, 0);
+        double[] actualRanks = ranks(pairs, 1);
+        return new SurrogateAccuracy(pairs.size(), error / pairs.size(), correlation(predictedRanks, actualRanks));
+    }
+
+    /**
+     * Ranks of one column, ties get their average rank
+     */
+    private static double[] ranks(List<double[]> pairs, int column) {
+        Integer[] order = new Integer[pairs.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> pairs.get(i)[column]));
+
+        double[] ranks = new double[order.length];
+        int start = 0;
+        while (start < order.length) {
+            int end = start;
+            while (end + 1 < order.length && pairs.get(order[end + 1])[column] == pairs.get(order[start])[column]) {
+                end++;
+            }
+            double rank = (start + end) / 2.0;
+            for (int i = start; i <= end; i++) {
+                ranks[order[i]] = rank;
+            }
+            start = end + 1;
+        }
+        return ranks;
+    }
+
+    private static double correlation(double[] a, double[] b) {
+        double meanA = Arrays.stream(a).average().orElse(0);
+        double meanB = Arrays.stream(b).average().orElse(0);
+
+        double covariance = 0, varianceA = 0, varianceB = 0;
+        for (int i = 0; i < a.length; i++) {
+            covariance += (a[i] - meanA) * (b[i] - meanB);
+            varianceA += (a[i] - meanA) * (a[i] - meanA);
+            varianceB += (b[i] - meanB) * (b[i] - meanB);
+        }
+
+        if (varianceA == 0 || varianceB == 0) {
+            return 0;
+        }
+        return covariance / Math.sqrt(varianceA * varianceB);
+    }
+
+    /**
+     * @param samples           Number of offspring with a prediction that were evaluated
+     * @param meanAbsoluteError Average difference between the predicted and the real fitness
+     * @param rankCorrelation   Spearman rank correlation between the predicted and the real fitness, 1 means the
+     *                          surrogate ranks the offspring perfectly
+     */
+    public record SurrogateAccuracy(int samples, double meanAbsoluteError, double rankCorrelation) {
+    }
+
+    private record Sample(Genome genome, Features features, double fitness) {
+    }
+
+    private static class Features {
+        final int neurons;
+        final int enabledConnections;
+
+        Features(Genome genome) {
+            neurons = genome.getNeurons().size();
+            int enabled = 0;
+            for (ConnectionGene connection : genome.getConnectionView()) {
+                if (connection.isEnabled()) {
+                    enabled++;
+                }
+            }
+            enabledConnections = enabled;
+        }
+    }
+}
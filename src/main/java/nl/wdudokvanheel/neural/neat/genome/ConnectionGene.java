@@ -1,6 +1,7 @@
 package nl.wdudokvanheel.neural.neat.genome;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.Objects;
@@ -11,6 +12,9 @@ public class ConnectionGene {
     private int target;
     private double weight;
     private boolean enabled;
+    // Genome that holds this gene and keeps a fingerprint over it
+    @JsonIgnore
+    GeneOwner owner;
 
     @JsonCreator
     public ConnectionGene(
@@ -52,7 +56,13 @@ public class ConnectionGene {
     }
 
     public void setWeight(double weight) {
+        if (owner == null) {
+            this.weight = weight;
+            return;
+        }
+        long before = GenomeFingerprint.hash(this);
         this.weight = weight;
+        owner.connectionChanged(GenomeFingerprint.hash(this) - before);
     }
 
     public boolean isEnabled() {
@@ -60,7 +70,13 @@ public class ConnectionGene {
     }
 
     public void setEnabled(boolean enabled) {
+        if (owner == null) {
+            this.enabled = enabled;
+            return;
+        }
+        long before = GenomeFingerprint.hash(this);
         this.enabled = enabled;
+        owner.connectionChanged(GenomeFingerprint.hash(this) - before);
     }
 
     public void toggleEnabled() {
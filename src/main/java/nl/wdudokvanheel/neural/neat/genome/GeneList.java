@@ -0,0 +1,224 @@
+package nl.wdudokvanheel.neural.neat.genome;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.UnaryOperator;
+
+/**
+ * Mutable list of genes that reports every change to its genome, so the genome can keep its lookup indexes up to date
+ * while callers keep modifying the genes through {@link Genome#getNeurons()} and {@link Genome#getConnections()}.
+ * <p>
+ * Genes can be shared with the list of a cloned genome. A shared gene is copied the first time it is handed out by
+ * this list, since the caller may modify it, so both genomes only pay for the genes they actually touch. Reading
+ * through {@link #view()} never copies.
+ */
+class GeneList<T> extends AbstractList<T> implements RandomAccess {
+    private final ArrayList<T> genes = new ArrayList<>();
+    private final List<T> view = Collections.unmodifiableList(genes);
+    private final Listener<T> listener;
+    private final UnaryOperator<T> copier;
+
+    // Parallel to genes, true if the gene at that index is also referenced by another genome
+    private boolean[] shared = new boolean[0];
+    private int sharedCount = 0;
+
+    GeneList(Listener<T> listener, UnaryOperator<T> copier) {
+        this.listener = listener;
+        this.copier = copier;
+    }
+
+    @Override
+    public T get(int index) {
+        if (sharedCount > 0 && shared[index]) {
+            return unshare(index);
+        }
+        return genes.get(index);
+    }
+
+    @Override
+    public int size() {
+        return genes.size();
+    }
+
+    @Override
+    public boolean add(T gene) {
+        genes.add(gene);
+        ensureSharedCapacity();
+        shared[genes.size() - 1] = false;
+        modCount++;
+        listener.added(gene);
+        return true;
+    }
+
+    @Override
+    public void add(int index, T gene) {
+        if (index == genes.size()) {
+            add(gene);
+            return;
+        }
+        genes.add(index, gene);
+        ensureSharedCapacity();
+        System.arraycopy(shared, index, shared, index + 1, genes.size() - index - 1);
+        shared[index] = false;
+        modCount++;
+        listener.changed();
+    }
+
+    @Override
+    public T set(int index, T gene) {
+        T previous = genes.set(index, gene);
+        if (shared[index]) {
+            shared[index] = false;
+            sharedCount--;
+        }
+        listener.released(previous);
+        listener.changed();
+        return previous;
+    }
+
+    @Override
+    public T remove(int index) {
+        T removed = genes.remove(index);
+        if (shared[index]) {
+            sharedCount--;
+        }
+        System.arraycopy(shared, index + 1, shared, index, genes.size() - index);
+        shared[genes.size()] = false;
+        modCount++;
+        listener.removed(removed);
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(shared, 0, genes.size(), false);
+        sharedCount = 0;
+        for (T gene : genes) {
+            listener.released(gene);
+        }
+        // Keeps the capacity of the list, so a genome that is reset can be refilled without growing it
+        genes.clear();
+        modCount++;
+        listener.changed();
+    }
+
+    // Searching and comparing only read the genes, so they do not copy shared genes
+
+    @Override
+    public int indexOf(Object o) {
+        return genes.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return genes.lastIndexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return genes.contains(o);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o instanceof GeneList<?> other) return genes.equals(other.genes);
+        return genes.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return genes.hashCode();
+    }
+
+    /**
+     * Read only view on the genes that does not copy shared genes. The genes must not be modified.
+     */
+    List<T> view() {
+        return view;
+    }
+
+    /**
+     * Fill the empty target with the genes of this list, shared between both lists. The listener of the target is not
+     * notified, its genome takes over its state from the genome of this list.
+     */
+    void shareWith(GeneList<T> target) {
+        target.genes.addAll(genes);
+        target.shared = new boolean[genes.size()];
+        Arrays.fill(target.shared, true);
+        target.sharedCount = genes.size();
+        target.modCount++;
+
+        synchronized (this) {
+            Arrays.fill(shared, 0, genes.size(), true);
+            sharedCount = genes.size();
+        }
+    }
+
+    boolean isShared(int index) {
+        return sharedCount > 0 && shared[index];
+    }
+
+    /**
+     * Number of genes that are still shared with another genome
+     */
+    int getSharedCount() {
+        return sharedCount;
+    }
+
+    void ensureCapacity(int capacity) {
+        genes.ensureCapacity(capacity);
+    }
+
+    /**
+     * Copy a shared gene so this list owns it, synchronized so concurrent readers of a published genome all receive the
+     * same copy
+     */
+    private synchronized T unshare(int index) {
+        T gene = genes.get(index);
+        if (!shared[index]) {
+            return gene;
+        }
+        T copy = copier.apply(gene);
+        genes.set(index, copy);
+        shared[index] = false;
+        sharedCount--;
+        listener.copied(copy);
+        return copy;
+    }
+
+    private void ensureSharedCapacity() {
+        if (shared.length < genes.size()) {
+            shared = Arrays.copyOf(shared, Math.max(genes.size(), shared.length * 2));
+        }
+    }
+
+    interface Listener<T> {
+        /**
+         * A gene was appended to the end of the list
+         */
+        void added(T gene);
+
+        void removed(T gene);
+
+        /**
+         * A gene was replaced or cleared, followed by a call to {@link #changed()}
+         */
+        void released(T gene);
+
+        /**
+         * A shared gene was replaced by a copy that is owned by this list
+         */
+        void copied(T gene);
+
+        /**
+         * Genes were inserted, replaced or cleared, the indexes need to be rebuilt
+         */
+        void changed();
+    }
+}
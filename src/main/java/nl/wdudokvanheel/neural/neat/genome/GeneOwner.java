@@ -0,0 +1,17 @@
+package nl.wdudokvanheel.neural.neat.genome;
+
+/**
+ * Fingerprints of the genome that holds a gene. Genes report their changes to their owner so the genome can update its
+ * fingerprints without hashing all of its genes again.
+ */
+interface GeneOwner {
+    /**
+     * The hash of a neuron changed by the delta, this changes both fingerprints
+     */
+    void neuronChanged(long delta);
+
+    /**
+     * The exact hash of a connection changed by the delta, its topology hash does not change
+     */
+    void connectionChanged(long delta);
+}
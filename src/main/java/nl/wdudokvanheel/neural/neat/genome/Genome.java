@@ -1,14 +1,52 @@
 package nl.wdudokvanheel.neural.neat.genome;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonSetter;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class Genome {
-    private List<NeuronGene> neurons = new ArrayList<>();
-    private List<ConnectionGene> connections = new ArrayList<>();
+    // Parent species id of a genome that was not bred from a species
+    public static final int NO_SPECIES = -1;
+    private static final AtomicLong idCounter = new AtomicLong();
+
+    private final GeneList<NeuronGene> neurons = new GeneList<>(new NeuronListener(), NeuronGene::clone);
+    // Connections are shared with clones until they are modified, see clone()
+    private final GeneList<ConnectionGene> connections = new GeneList<>(new ConnectionListener(), ConnectionGene::clone);
+    // Identifies the genome and the genome it was cloned or crossed from, used to store genomes as differences
+    private long id = idCounter.incrementAndGet();
+    private long parentId = 0;
+    // Species of the parent this genome was bred from, tried first when the genome is speciated
+    private int parentSpeciesId = NO_SPECIES;
+
+    // Typed views are kept up to date on every change, they are small and requested often
+    private final List<InputNeuronGene> inputNeurons = new ArrayList<>();
+    private final List<HiddenNeuronGene> hiddenNeurons = new ArrayList<>();
+    private final List<OutputNeuronGene> outputNeurons = new ArrayList<>();
+
+    // Kept up to date on every change, so reading them does not hash the genome
+    private final Fingerprints fingerprints = new Fingerprints();
+
+    // Lookup indexes are built on the first lookup and then updated on every added gene. Removing or replacing genes
+    // drops them until the next lookup. The first gene with a key wins, like a scan through the list would.
+    // Connections are indexed by position, so copying a shared connection does not affect the indexes.
+    private volatile Map<Integer, NeuronGene> neuronsById;
+    private volatile Map<Integer, Integer> connectionsById;
+    private volatile Map<Long, Integer> connectionsByEndpoints;
+    // Positions of the connections in innovation order, see getSortedConnectionView()
+    private volatile List<ConnectionGene> sortedConnections;
+    // Innovation bitsets with the connection fingerprint they were built for, see getInnovationBits()
+    private volatile TrackedBits innovationBits;
 
     public void addNeuron(NeuronGene neuron) {
         neurons.add(neuron);
@@ -29,53 +67,99 @@ public class Genome {
         }
     }
 
+    /**
+     * All neurons of the genome. The list can be modified, the indexes of the genome follow the changes.
+     */
+    @JsonIgnore
     public List<NeuronGene> getNeurons() {
         return neurons;
     }
 
+    // Serialized as a plain list, the gene list type is an implementation detail
+    /**
+     * Read only view of the neurons, the genes must not be modified
+     */
+    @JsonIgnore
+    public List<NeuronGene> getNeuronView() {
+        return neurons.view();
+    }
+
+    @JsonGetter("neurons")
+    private List<NeuronGene> getNeuronList() {
+        return new ArrayList<>(neurons.view());
+    }
+
+    @JsonSetter("neurons")
+    private void setNeuronList(List<NeuronGene> neurons) {
+        this.neurons.clear();
+        this.neurons.addAll(neurons);
+    }
+
+    /**
+     * Read only view of the input neurons, in genome order
+     */
     @JsonIgnore
     public List<InputNeuronGene> getInputNeurons() {
-        return neurons
-                .stream()
-                .filter(neuron -> neuron instanceof InputNeuronGene)
-                .map(neuron -> (InputNeuronGene) neuron)
-                .toList();
+        return Collections.unmodifiableList(inputNeurons);
     }
 
+    /**
+     * Read only view of the hidden neurons, including static hidden neurons, in genome order
+     */
     @JsonIgnore
     public List<HiddenNeuronGene> getHiddenNeurons() {
-        return neurons
-                .stream()
-                .filter(neuron -> neuron instanceof HiddenNeuronGene)
-                .map(neuron -> (HiddenNeuronGene) neuron)
-                .toList();
+        return Collections.unmodifiableList(hiddenNeurons);
     }
 
+    /**
+     * Read only view of the output neurons, in genome order
+     */
     @JsonIgnore
     public List<OutputNeuronGene> getOutputNeurons() {
-        return neurons
-                .stream()
-                .filter(neuron -> neuron instanceof OutputNeuronGene)
-                .map(neuron -> (OutputNeuronGene) neuron)
-                .toList();
+        return Collections.unmodifiableList(outputNeurons);
     }
 
+    /**
+     * All connections of the genome. The list and its genes can be modified, the indexes of the genome follow the
+     * changes. A connection that is still shared with a clone is copied when it is taken from the list, code that only
+     * reads the connections should use {@link #getConnectionView()}.
+     */
+    @JsonIgnore
     public List<ConnectionGene> getConnections() {
         return connections;
     }
 
+    /**
+     * Read only view of the connections that does not copy shared connections, the genes must not be modified
+     */
+    @JsonIgnore
+    public List<ConnectionGene> getConnectionView() {
+        return connections.view();
+    }
+
+    @JsonGetter("connections")
+    private List<ConnectionGene> getConnectionList() {
+        return new ArrayList<>(connections.view());
+    }
+
+    @JsonSetter("connections")
+    private void setConnectionList(List<ConnectionGene> connections) {
+        this.connections.clear();
+        this.connections.ensureCapacity(connections.size());
+        this.connections.addAll(connections);
+    }
+
+    /**
+     * Enabled connections, taken from the read only view so shared connections are not copied. The genes must not be
+     * modified.
+     */
     @JsonIgnore
     public List<ConnectionGene> getActiveConnections() {
-        return connections.stream().filter(c -> c.isEnabled()).collect(Collectors.toList());
+        return connections.view().stream().filter(c -> c.isEnabled()).collect(Collectors.toList());
     }
 
     public NeuronGene getNeuronById(int innovationId) {
-        for (NeuronGene neuron : neurons) {
-            if (neuron.getInnovationId() == innovationId)
-                return neuron;
-        }
-
-        return null;
+        return getNeuronIndex().get(innovationId);
     }
 
     public boolean hasNeuron(int id) {
@@ -87,29 +171,72 @@ public class Genome {
     }
 
     public ConnectionGene getConnectionById(int innovationId) {
-        for (ConnectionGene connection : connections) {
-            if (connection.getInnovationId() == innovationId) {
-                return connection;
+        Integer index = getConnectionIndex().get(innovationId);
+        return index == null ? null : connections.get(index);
+    }
+
+    /**
+     * Same as {@link #getConnectionById(int)}, but does not copy a shared connection. The gene must not be modified.
+     */
+    public ConnectionGene viewConnectionById(int innovationId) {
+        Integer index = getConnectionIndex().get(innovationId);
+        return index == null ? null : connections.view().get(index);
+    }
+
+    /**
+     * For every connection of this genome, in the order of {@link #getConnectionView()}, the connection of the other
+     * genome with the same innovation id or null, the same one {@link #viewConnectionById(int)} finds. The connections
+     * are aligned with a single merge over both genomes in innovation order. The genes must not be modified.
+     */
+    public ConnectionGene[] alignConnections(Genome other) {
+        List<ConnectionGene> view = connections.view();
+        SortedConnections sorted = (SortedConnections) getSortedConnectionView();
+        List<ConnectionGene> otherSorted = other.getSortedConnectionView();
+        ConnectionGene[] aligned = new ConnectionGene[view.size()];
+
+        int j = 0;
+        int otherCount = otherSorted.size();
+        for (int i = 0; i < sorted.size(); i++) {
+            int position = sorted.positions[i];
+            int id = view.get(position).getInnovationId();
+            while (j < otherCount && otherSorted.get(j).getInnovationId() < id) {
+                j++;
+            }
+            if (j < otherCount && otherSorted.get(j).getInnovationId() == id) {
+                aligned[position] = otherSorted.get(j);
             }
         }
-        return null;
-    }
 
-    public ConnectionGene getConnection(int source, int target) {
-        for (ConnectionGene connection : connections) {
-            if (connection.getSource() == source && connection.getTarget() == target) {
-                return connection;
+        // Later connections with the same innovation id are left out of the sorted view
+        if (sorted.size() < view.size()) {
+            for (int position = 0; position < aligned.length; position++) {
+                if (aligned[position] == null) {
+                    aligned[position] = other.viewConnectionById(view.get(position).getInnovationId());
+                }
             }
         }
-        return null;
+        return aligned;
+    }
+
+    /**
+     * Make room for the number of genes, so a genome that is filled gene by gene does not grow its lists on the way
+     */
+    public void ensureCapacity(int neurons, int connections) {
+        this.neurons.ensureCapacity(neurons);
+        this.connections.ensureCapacity(connections);
+    }
+
+    public ConnectionGene getConnection(int source, int target) {
+        Integer index = getEndpointIndex().get(endpoints(source, target));
+        return index == null ? null : connections.get(index);
     }
 
     public boolean hasConnection(int innovationId) {
-        return getConnectionById(innovationId) != null;
+        return getConnectionIndex().containsKey(innovationId);
     }
 
     public boolean hasConnection(int source, int target) {
-        return getConnection(source, target) != null;
+        return getEndpointIndex().containsKey(endpoints(source, target));
     }
 
     public boolean hasConnection(NeuronGene source, NeuronGene target) {
@@ -120,16 +247,420 @@ public class Genome {
         return hasConnection(connection.getInnovationId());
     }
 
+    private Map<Integer, NeuronGene> getNeuronIndex() {
+        Map<Integer, NeuronGene> index = neuronsById;
+        if (index == null) {
+            index = new HashMap<>(neurons.size() * 2);
+            for (NeuronGene neuron : neurons) {
+                index.putIfAbsent(neuron.getInnovationId(), neuron);
+            }
+            neuronsById = index;
+        }
+        return index;
+    }
+
+    private Map<Integer, Integer> getConnectionIndex() {
+        Map<Integer, Integer> index = connectionsById;
+        if (index == null) {
+            List<ConnectionGene> genes = connections.view();
+            index = new HashMap<>(genes.size() * 2);
+            for (int i = 0; i < genes.size(); i++) {
+                index.putIfAbsent(genes.get(i).getInnovationId(), i);
+            }
+            connectionsById = index;
+        }
+        return index;
+    }
+
+    private Map<Long, Integer> getEndpointIndex() {
+        Map<Long, Integer> index = connectionsByEndpoints;
+        if (index == null) {
+            List<ConnectionGene> genes = connections.view();
+            index = new HashMap<>(genes.size() * 2);
+            for (int i = 0; i < genes.size(); i++) {
+                ConnectionGene connection = genes.get(i);
+                index.putIfAbsent(endpoints(connection.getSource(), connection.getTarget()), i);
+            }
+            connectionsByEndpoints = index;
+        }
+        return index;
+    }
+
+    /**
+     * Read only view of the connections sorted by innovation id, without copying shared connections. Only the first
+     * connection with an innovation id is included, the same one {@link #getConnectionById(int)} finds. The order is
+     * cached until the connections of the genome change, the genes must not be modified.
+     */
+    @JsonIgnore
+    public List<ConnectionGene> getSortedConnectionView() {
+        List<ConnectionGene> sorted = sortedConnections;
+        if (sorted == null) {
+            sorted = new SortedConnections(connections.view());
+            sortedConnections = sorted;
+        }
+        return sorted;
+    }
+
+    /**
+     * Bitsets of the innovation ids of the connections, built on first use. Changes to connection genes that are also
+     * held by another genome are not reported to this genome, the bitsets are only reused while the connection
+     * fingerprint is tracked and unchanged.
+     */
+    @JsonIgnore
+    public InnovationBits getInnovationBits() {
+        TrackedBits bits = innovationBits;
+        if (bits == null || !fingerprints.isTracked() || bits.fingerprint() != fingerprints.connections) {
+            bits = new TrackedBits(InnovationBits.of(getSortedConnectionView()), fingerprints.connections);
+            innovationBits = bits;
+        }
+        return bits.bits();
+    }
+
+    private static long endpoints(int source, int target) {
+        return ((long) source << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    private void rebuildTypedNeurons() {
+        inputNeurons.clear();
+        hiddenNeurons.clear();
+        outputNeurons.clear();
+        for (NeuronGene neuron : neurons) {
+            addTypedNeuron(neuron);
+        }
+    }
+
+    private void addTypedNeuron(NeuronGene neuron) {
+        if (neuron instanceof InputNeuronGene input) {
+            inputNeurons.add(input);
+        } else if (neuron instanceof HiddenNeuronGene hidden) {
+            hiddenNeurons.add(hidden);
+        } else if (neuron instanceof OutputNeuronGene output) {
+            outputNeurons.add(output);
+        }
+    }
+
+    /**
+     * Fingerprint over the complete genome, including weights and enabled flags. Two genomes with the same genes have
+     * the same fingerprint, regardless of the order of their genes. The fingerprint is updated on every change of the
+     * genome or one of its genes, so this does not hash the genome.
+     *
+     * @see GenomeFingerprint
+     */
+    @JsonIgnore
+    public long getFingerprint() {
+        if (!fingerprints.isTracked()) {
+            return GenomeFingerprint.of(this);
+        }
+        return fingerprints.neurons + fingerprints.connections;
+    }
+
+    /**
+     * Fingerprint over the topology of the genome: its neurons and the innovation ids, sources and targets of its
+     * connections. Genomes that only differ in weights and enabled flags have the same topology fingerprint.
+     */
+    @JsonIgnore
+    public long getTopologyFingerprint() {
+        if (!fingerprints.isTracked()) {
+            return GenomeFingerprint.topology(this);
+        }
+        return fingerprints.neurons + fingerprints.connectionTopology;
+    }
+
+    private void rebuildNeuronFingerprint() {
+        fingerprints.neurons = 0;
+        fingerprints.foreignNeurons = 0;
+        for (NeuronGene neuron : neurons.view()) {
+            if (neuron.owner == null) {
+                neuron.owner = fingerprints;
+            } else if (neuron.owner != fingerprints) {
+                fingerprints.foreignNeurons++;
+            }
+            fingerprints.neurons += GenomeFingerprint.hash(neuron);
+        }
+    }
+
+    private void rebuildConnectionFingerprint() {
+        fingerprints.connections = 0;
+        fingerprints.connectionTopology = 0;
+        fingerprints.foreignConnections = 0;
+        List<ConnectionGene> genes = connections.view();
+        for (int i = 0; i < genes.size(); i++) {
+            ConnectionGene connection = genes.get(i);
+            // Shared connections are copied before they are modified, so they do not need to report to this genome
+            if (connection.owner == null) {
+                connection.owner = fingerprints;
+            } else if (connection.owner != fingerprints && !connections.isShared(i)) {
+                fingerprints.foreignConnections++;
+            }
+            fingerprints.connections += GenomeFingerprint.hash(connection);
+            fingerprints.connectionTopology += GenomeFingerprint.topologyHash(connection);
+        }
+    }
+
+    /**
+     * Sums of the gene hashes of a genome. Genes refer to this object instead of to their genome, so a gene that is
+     * shared with a clone does not keep the complete genome it came from alive.
+     */
+    private static final class Fingerprints implements GeneOwner {
+        long neurons;
+        long connections;
+        long connectionTopology;
+        // Genes that are owned by another genome do not report their changes to this genome
+        int foreignNeurons;
+        int foreignConnections;
+
+        boolean isTracked() {
+            return foreignNeurons == 0 && foreignConnections == 0;
+        }
+
+        @Override
+        public void neuronChanged(long delta) {
+            neurons += delta;
+        }
+
+        @Override
+        public void connectionChanged(long delta) {
+            connections += delta;
+        }
+    }
+
+    private class NeuronListener implements GeneList.Listener<NeuronGene> {
+        @Override
+        public void added(NeuronGene neuron) {
+            addTypedNeuron(neuron);
+            Map<Integer, NeuronGene> index = neuronsById;
+            if (index != null) {
+                index.putIfAbsent(neuron.getInnovationId(), neuron);
+            }
+
+            if (neuron.owner == null) {
+                neuron.owner = fingerprints;
+            } else if (neuron.owner != fingerprints) {
+                fingerprints.foreignNeurons++;
+            }
+            fingerprints.neurons += GenomeFingerprint.hash(neuron);
+        }
+
+        @Override
+        public void removed(NeuronGene neuron) {
+            released(neuron);
+            changed();
+        }
+
+        @Override
+        public void released(NeuronGene neuron) {
+            if (neuron.owner == fingerprints) {
+                neuron.owner = null;
+            }
+        }
+
+        @Override
+        public void copied(NeuronGene neuron) {
+            neuron.owner = fingerprints;
+        }
+
+        @Override
+        public void changed() {
+            neuronsById = null;
+            rebuildTypedNeurons();
+            rebuildNeuronFingerprint();
+        }
+    }
+
+    private class ConnectionListener implements GeneList.Listener<ConnectionGene> {
+        @Override
+        public void added(ConnectionGene connection) {
+            if (connection.owner == null) {
+                connection.owner = fingerprints;
+            } else if (connection.owner != fingerprints) {
+                fingerprints.foreignConnections++;
+            }
+            fingerprints.connections += GenomeFingerprint.hash(connection);
+            fingerprints.connectionTopology += GenomeFingerprint.topologyHash(connection);
+
+            sortedConnections = null;
+            innovationBits = null;
+            int position = connections.size() - 1;
+            Map<Integer, Integer> index = connectionsById;
+            if (index != null) {
+                index.putIfAbsent(connection.getInnovationId(), position);
+            }
+            Map<Long, Integer> endpoints = connectionsByEndpoints;
+            if (endpoints != null) {
+                endpoints.putIfAbsent(endpoints(connection.getSource(), connection.getTarget()), position);
+            }
+        }
+
+        @Override
+        public void removed(ConnectionGene connection) {
+            connectionsById = null;
+            connectionsByEndpoints = null;
+            sortedConnections = null;
+            innovationBits = null;
+            if (connection.owner == fingerprints) {
+                connection.owner = null;
+                fingerprints.connections -= GenomeFingerprint.hash(connection);
+                fingerprints.connectionTopology -= GenomeFingerprint.topologyHash(connection);
+            } else {
+                rebuildConnectionFingerprint();
+            }
+        }
+
+        @Override
+        public void released(ConnectionGene connection) {
+            if (connection.owner == fingerprints) {
+                connection.owner = null;
+            }
+        }
+
+        @Override
+        public void copied(ConnectionGene connection) {
+            connection.owner = fingerprints;
+        }
+
+        @Override
+        public void changed() {
+            connectionsById = null;
+            connectionsByEndpoints = null;
+            sortedConnections = null;
+            innovationBits = null;
+            rebuildConnectionFingerprint();
+        }
+    }
+
+    private record TrackedBits(InnovationBits bits, long fingerprint) {
+    }
+
+    /**
+     * Connections of a gene list in innovation order. Positions are stored instead of genes, so a shared connection that
+     * is copied is read from the list instead of the stale original.
+     */
+    private static final class SortedConnections extends AbstractList<ConnectionGene> implements RandomAccess {
+        private final List<ConnectionGene> genes;
+        private final int[] positions;
+
+        SortedConnections(List<ConnectionGene> genes) {
+            this.genes = genes;
+            // Innovation id in the high bits and position in the low bits, so sorting keeps the first of equal ids first
+            long[] keys = new long[genes.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = ((long) genes.get(i).getInnovationId() << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            int[] positions = new int[keys.length];
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (i > 0 && (keys[i] >> 32) == (keys[i - 1] >> 32)) {
+                    continue;
+                }
+                positions[count++] = (int) keys[i];
+            }
+            this.positions = count == positions.length ? positions : Arrays.copyOf(positions, count);
+        }
+
+        @Override
+        public ConnectionGene get(int index) {
+            return genes.get(positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return positions.length;
+        }
+    }
+
+    /**
+     * Id of this genome, unique within the running JVM
+     */
+    @JsonIgnore
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Id of the genome this genome was cloned from, or of the fittest parent it was crossed from. 0 if it has no parent.
+     */
+    @JsonIgnore
+    public long getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(long parentId) {
+        this.parentId = parentId;
+    }
+
+    /**
+     * Id of the species of the parent this genome was bred from, or {@link #NO_SPECIES}. Only a hint for speciation,
+     * the genome is not necessarily compatible with that species anymore.
+     */
+    @JsonIgnore
+    public int getParentSpeciesId() {
+        return parentSpeciesId;
+    }
+
+    public void setParentSpeciesId(int parentSpeciesId) {
+        this.parentSpeciesId = parentSpeciesId;
+    }
+
+    /**
+     * Copy this genome. Neurons are copied right away, connections are shared between both genomes and only copied once
+     * either genome takes one from {@link #getConnections()} or one of the connection lookups to modify it. Connection
+     * genes taken from this genome before the clone was made must not be modified afterwards.
+     */
     public Genome clone() {
         Genome clone = new Genome();
+        copyTo(clone);
+        return clone;
+    }
+
+    /**
+     * Same as {@link #clone()}, but reuses an existing genome as the copy. The target is {@link #reset() reset} first.
+     *
+     * @return The target genome
+     */
+    public Genome copyInto(Genome target) {
+        if (target == this) {
+            throw new IllegalArgumentException("Can't copy a genome into itself");
+        }
+        target.reset();
+        copyTo(target);
+        return target;
+    }
+
+    /**
+     * Remove all genes and give the genome a new id, so it can be reused as a new genome. The gene lists keep their
+     * capacity. Connection genes that were shared with clones stay untouched, the clones keep using them.
+     */
+    public void reset() {
+        id = idCounter.incrementAndGet();
+        parentId = 0;
+        parentSpeciesId = NO_SPECIES;
+        neurons.clear();
+        connections.clear();
+    }
+
+    private void copyTo(Genome clone) {
+        clone.parentId = id;
+        clone.neurons.ensureCapacity(neurons.size());
         for (NeuronGene neuron : neurons) {
             clone.addNeuron(neuron.clone());
         }
-
-        for (ConnectionGene connection : connections) {
-            clone.addConnection(connection.clone());
+        connections.shareWith(clone.connections);
+        if (fingerprints.foreignConnections == 0) {
+            clone.fingerprints.connections = fingerprints.connections;
+            clone.fingerprints.connectionTopology = fingerprints.connectionTopology;
+        } else {
+            clone.rebuildConnectionFingerprint();
         }
-        return clone;
+    }
+
+    /**
+     * Number of connection genes this genome still shares with genomes it was cloned from or cloned into
+     */
+    @JsonIgnore
+    public int getSharedConnectionCount() {
+        return connections.getSharedCount();
     }
 
 //    @Override
@@ -183,9 +714,6 @@ public class Genome {
 
     @Override
     public int hashCode() {
-        int result = 17;
-        result = 31 * result + neurons.hashCode();
-        result = 31 * result + connections.hashCode();
-        return result;
+        return Long.hashCode(getFingerprint());
     }
 }
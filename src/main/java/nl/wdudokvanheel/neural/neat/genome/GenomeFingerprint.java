@@ -0,0 +1,86 @@
+package nl.wdudokvanheel.neural.neat.genome;
+
+/**
+ * 64-bit fingerprint of a genome. Every gene is hashed on its own and the gene hashes are summed, so two genomes with
+ * the same genes have the same fingerprint regardless of the order the genes were added in. Summing also lets a genome
+ * keep its fingerprints up to date when a gene changes, see {@link Genome#getFingerprint()}.
+ * <p>
+ * The topology fingerprint leaves out connection weights and enabled flags, genomes with the same neurons and the same
+ * connections have the same topology fingerprint.
+ */
+public final class GenomeFingerprint {
+    private GenomeFingerprint() {
+    }
+
+    /**
+     * Fingerprint over every property of every gene, including weights and enabled flags
+     */
+    public static long of(Genome genome) {
+        long hash = 0;
+        for (NeuronGene neuron : genome.getNeurons()) {
+            hash += hash(neuron);
+        }
+        for (ConnectionGene connection : genome.getConnectionView()) {
+            hash += hash(connection);
+        }
+        return hash;
+    }
+
+    /**
+     * Fingerprint over the neurons and the connection innovation ids, sources and targets
+     */
+    public static long topology(Genome genome) {
+        long hash = 0;
+        for (NeuronGene neuron : genome.getNeurons()) {
+            hash += hash(neuron);
+        }
+        for (ConnectionGene connection : genome.getConnectionView()) {
+            hash += topologyHash(connection);
+        }
+        return hash;
+    }
+
+    /**
+     * Hash of a neuron, which is the same for both fingerprints since all its properties are structural
+     */
+    public static long hash(NeuronGene neuron) {
+        long hash = mix(neuron.getInnovationId() * 0x9E3779B97F4A7C15L ^ kind(neuron));
+        hash = mix(hash ^ neuron.getLayer());
+        if (neuron instanceof HiddenNeuronGene hidden) {
+            hash = mix(hash ^ hidden.getConnectionId());
+        }
+        return hash;
+    }
+
+    public static long hash(ConnectionGene connection) {
+        long hash = mix(topologyHash(connection) ^ Double.doubleToLongBits(connection.getWeight()));
+        return connection.isEnabled() ? hash : mix(hash ^ 1);
+    }
+
+    public static long topologyHash(ConnectionGene connection) {
+        long hash = mix(connection.getInnovationId() * 0xC2B2AE3D27D4EB4FL);
+        return mix(hash ^ ((long) connection.getSource() << 32 | connection.getTarget() & 0xFFFFFFFFL));
+    }
+
+    private static long kind(NeuronGene neuron) {
+        if (neuron instanceof InputNeuronGene) {
+            return 1L << 60;
+        }
+        if (neuron instanceof OutputNeuronGene) {
+            return 2L << 60;
+        }
+        if (neuron instanceof StaticHiddenNeuronGene) {
+            return 3L << 60;
+        }
+        return 4L << 60;
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
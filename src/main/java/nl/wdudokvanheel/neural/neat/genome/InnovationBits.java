@@ -0,0 +1,108 @@
+package nl.wdudokvanheel.neural.neat.genome;
+
+import java.util.List;
+
+/**
+ * Bitsets of the connection innovation ids of a genome and of which of those connections are enabled, bit {@code id}
+ * for innovation id {@code id}. Matching, disjoint and excess connections of two genomes are then counted a word of 64
+ * innovations at a time, and the connection with an innovation id is found by counting the bits before it.
+ * <p>
+ * Like {@link Genome#getSortedConnectionView()} only the first connection with an innovation id is included and ids
+ * below 1 are left out. The bitsets take {@code maxId / 8} bytes each, so they only pay off when the innovation ids of
+ * the population are not much more numerous than the connections of a genome.
+ */
+public final class InnovationBits {
+    private final List<ConnectionGene> connections;
+    private final long[] present;
+    private final long[] enabled;
+    // Number of connections in the words before each word
+    private final int[] ranks;
+    private final int maxId;
+
+    private InnovationBits(List<ConnectionGene> connections, long[] present, long[] enabled, int[] ranks, int maxId) {
+        this.connections = connections;
+        this.present = present;
+        this.enabled = enabled;
+        this.ranks = ranks;
+        this.maxId = maxId;
+    }
+
+    /**
+     * @param sorted Connections in ascending innovation order, one per innovation id
+     */
+    static InnovationBits of(List<ConnectionGene> sorted) {
+        int first = 0;
+        while (first < sorted.size() && sorted.get(first).getInnovationId() < 1) {
+            first++;
+        }
+        List<ConnectionGene> connections = sorted.subList(first, sorted.size());
+        int maxId = connections.isEmpty() ? 0 : connections.getLast().getInnovationId();
+
+        int words = (maxId >> 6) + 1;
+        long[] present = new long[words];
+        long[] enabled = new long[words];
+        for (ConnectionGene connection : connections) {
+            int id = connection.getInnovationId();
+            present[id >> 6] |= 1L << id;
+            if (connection.isEnabled()) {
+                enabled[id >> 6] |= 1L << id;
+            }
+        }
+
+        int[] ranks = new int[words];
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            ranks[w] = count;
+            count += Long.bitCount(present[w]);
+        }
+        return new InnovationBits(connections, present, enabled, ranks, maxId);
+    }
+
+    /**
+     * Highest innovation id, 0 without connections
+     */
+    public int getMaxId() {
+        return maxId;
+    }
+
+    public int getWordCount() {
+        return present.length;
+    }
+
+    /**
+     * Innovation ids {@code 64 * word} to {@code 64 * word + 63}, 0 beyond the last word
+     */
+    public long getPresentWord(int word) {
+        return word < present.length ? present[word] : 0;
+    }
+
+    /**
+     * Innovation ids of enabled connections {@code 64 * word} to {@code 64 * word + 63}, 0 beyond the last word
+     */
+    public long getEnabledWord(int word) {
+        return word < enabled.length ? enabled[word] : 0;
+    }
+
+    public boolean contains(int innovationId) {
+        return innovationId >= 1 && (getPresentWord(innovationId >> 6) & (1L << innovationId)) != 0;
+    }
+
+    /**
+     * The connection with the innovation id, or null. The gene must not be modified.
+     */
+    public ConnectionGene get(int innovationId) {
+        if (!contains(innovationId)) {
+            return null;
+        }
+        int word = innovationId >> 6;
+        long before = present[word] & ((1L << innovationId) - 1);
+        return connections.get(ranks[word] + Long.bitCount(before));
+    }
+
+    /**
+     * Number of connections
+     */
+    public int size() {
+        return connections.size();
+    }
+}
@@ -1,11 +1,16 @@
 package nl.wdudokvanheel.neural.neat.genome;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Base class for all neuron genes.
  */
 public abstract class NeuronGene {
     private final int innovationId;
     private int layer;
+    // Genome that holds this gene and keeps a fingerprint over it
+    @JsonIgnore
+    GeneOwner owner;
 
     protected NeuronGene(int innovationId, int layer) {
         this.innovationId = innovationId;
@@ -25,7 +30,14 @@ public abstract class NeuronGene {
     }
 
     public void setLayer(int layer) {
+        if (owner == null) {
+            this.layer = layer;
+            return;
+        }
+        // The layer is part of the topology, so both fingerprints change
+        long before = GenomeFingerprint.hash(this);
         this.layer = layer;
+        owner.neuronChanged(GenomeFingerprint.hash(this) - before);
     }
 
     @Override
@@ -0,0 +1,277 @@
+package nl.wdudokvanheel.neural.neat.genome;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compact, immutable genome stored in primitive arrays instead of gene objects. Neurons keep their genome order, so
+ * inputs and outputs map to the same network inputs and outputs. Connections are sorted by innovation id, which lets
+ * crossover and comparison walk two genomes side by side instead of looking up every gene.
+ * <p>
+ * A packed genome takes a fraction of the heap of a {@link Genome} with the same genes, which makes it suitable to hold
+ * large populations or archives. Use {@link #of(Genome)} and {@link #toGenome()} to convert between the two, mutations
+ * still work on a regular genome.
+ * <p>
+ * The structure of the genome lives in a {@link PackedTopology}, only the weights and enabled flags belong to the
+ * genome itself. Genomes with the same topology can share it, see {@link TopologyTable}.
+ */
+public final class PackedGenome {
+    private static final byte INPUT = PackedTopology.INPUT;
+    private static final byte OUTPUT = PackedTopology.OUTPUT;
+    private static final byte HIDDEN = PackedTopology.HIDDEN;
+    private static final byte STATIC_HIDDEN = PackedTopology.STATIC_HIDDEN;
+
+    private final PackedTopology topology;
+    private final int[] neuronIds;
+    private final byte[] neuronKinds;
+    private final int[] neuronLayers;
+    private final int[] neuronConnectionIds;
+    private final int[] connectionIds;
+    private final int[] sources;
+    private final int[] targets;
+
+    private final double[] weights;
+    private final long[] enabled;
+
+    private PackedGenome(PackedTopology topology, double[] weights, long[] enabled) {
+        this.topology = topology;
+        // Copied from the topology so the accessors below stay a single array read
+        this.neuronIds = topology.neuronIds;
+        this.neuronKinds = topology.neuronKinds;
+        this.neuronLayers = topology.neuronLayers;
+        this.neuronConnectionIds = topology.neuronConnectionIds;
+        this.connectionIds = topology.connectionIds;
+        this.sources = topology.sources;
+        this.targets = topology.targets;
+        this.weights = weights;
+        this.enabled = enabled;
+    }
+
+    public static PackedGenome of(Genome genome) {
+        List<NeuronGene> neurons = genome.getNeurons();
+        int neuronCount = neurons.size();
+        int[] neuronIds = new int[neuronCount];
+        byte[] neuronKinds = new byte[neuronCount];
+        int[] neuronLayers = new int[neuronCount];
+        int[] neuronConnectionIds = new int[neuronCount];
+        for (int i = 0; i < neuronCount; i++) {
+            NeuronGene neuron = neurons.get(i);
+            neuronIds[i] = neuron.getInnovationId();
+            neuronLayers[i] = neuron.getLayer();
+            if (neuron instanceof InputNeuronGene) {
+                neuronKinds[i] = INPUT;
+            } else if (neuron instanceof OutputNeuronGene) {
+                neuronKinds[i] = OUTPUT;
+            } else if (neuron instanceof StaticHiddenNeuronGene hidden) {
+                neuronKinds[i] = STATIC_HIDDEN;
+                neuronConnectionIds[i] = hidden.getConnectionId();
+            } else {
+                neuronKinds[i] = HIDDEN;
+                neuronConnectionIds[i] = ((HiddenNeuronGene) neuron).getConnectionId();
+            }
+        }
+
+        ConnectionGene[] connections = genome.getConnectionView().toArray(ConnectionGene[]::new);
+        Arrays.sort(connections, (a, b) -> Integer.compare(a.getInnovationId(), b.getInnovationId()));
+        int count = connections.length;
+        int[] connectionIds = new int[count];
+        int[] sources = new int[count];
+        int[] targets = new int[count];
+        double[] weights = new double[count];
+        long[] enabled = new long[(count + 63) / 64];
+        for (int i = 0; i < count; i++) {
+            ConnectionGene connection = connections[i];
+            connectionIds[i] = connection.getInnovationId();
+            sources[i] = connection.getSource();
+            targets[i] = connection.getTarget();
+            weights[i] = connection.getWeight();
+            if (connection.isEnabled()) {
+                enabled[i >>> 6] |= 1L << i;
+            }
+        }
+
+        PackedTopology topology = new PackedTopology(neuronIds, neuronKinds, neuronLayers, neuronConnectionIds, connectionIds, sources, targets);
+        return new PackedGenome(topology, weights, enabled);
+    }
+
+    /**
+     * Same genome on top of an equal topology, used to share topologies between genomes
+     */
+    PackedGenome withTopology(PackedTopology topology) {
+        if (!this.topology.equals(topology)) {
+            throw new IllegalArgumentException("Topology does not match the genome");
+        }
+        return new PackedGenome(topology, weights, enabled);
+    }
+
+    /**
+     * Structure of this genome: its neurons and the innovation ids, sources and targets of its connections
+     */
+    public PackedTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Unpack into a regular genome, with the connections in innovation id order
+     */
+    public Genome toGenome() {
+        Genome genome = new Genome();
+        for (int i = 0; i < neuronIds.length; i++) {
+            genome.addNeuron(getNeuron(i));
+        }
+        for (int i = 0; i < connectionIds.length; i++) {
+            genome.addConnection(getConnection(i));
+        }
+        return genome;
+    }
+
+    public int getNeuronCount() {
+        return neuronIds.length;
+    }
+
+    public int getNeuronId(int index) {
+        return neuronIds[index];
+    }
+
+    public int getNeuronLayer(int index) {
+        return neuronLayers[index];
+    }
+
+    public boolean isInputNeuron(int index) {
+        return neuronKinds[index] == INPUT;
+    }
+
+    public boolean isOutputNeuron(int index) {
+        return neuronKinds[index] == OUTPUT;
+    }
+
+    /**
+     * Create a neuron gene for the neuron at the index
+     */
+    public NeuronGene getNeuron(int index) {
+        return switch (neuronKinds[index]) {
+            case INPUT -> new InputNeuronGene(neuronIds[index], neuronLayers[index]);
+            case OUTPUT -> new OutputNeuronGene(neuronIds[index], neuronLayers[index]);
+            case STATIC_HIDDEN -> new StaticHiddenNeuronGene(neuronConnectionIds[index], neuronIds[index], neuronLayers[index]);
+            default -> new HiddenNeuronGene(neuronConnectionIds[index], neuronIds[index], neuronLayers[index]);
+        };
+    }
+
+    public int getConnectionCount() {
+        return connectionIds.length;
+    }
+
+    public int getConnectionId(int index) {
+        return connectionIds[index];
+    }
+
+    public int getSource(int index) {
+        return sources[index];
+    }
+
+    public int getTarget(int index) {
+        return targets[index];
+    }
+
+    public double getWeight(int index) {
+        return weights[index];
+    }
+
+    public boolean isEnabled(int index) {
+        return (enabled[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Create a connection gene for the connection at the index
+     */
+    public ConnectionGene getConnection(int index) {
+        return new ConnectionGene(connectionIds[index], sources[index], targets[index], weights[index], isEnabled(index));
+    }
+
+    /**
+     * Index of the connection with the innovation id, or a negative value if the genome does not have it
+     */
+    public int indexOfConnection(int innovationId) {
+        return Arrays.binarySearch(connectionIds, innovationId);
+    }
+
+    public boolean hasConnection(int innovationId) {
+        return indexOfConnection(innovationId) >= 0;
+    }
+
+    /**
+     * Highest connection innovation id, 0 for a genome without connections
+     */
+    public int getMaxConnectionId() {
+        return connectionIds.length == 0 ? 0 : connectionIds[connectionIds.length - 1];
+    }
+
+    /**
+     * Cross two packed genomes, with the same rules as
+     * {@link nl.wdudokvanheel.neural.neat.service.CrossoverService#crossover(Genome, Genome)}: all genes of the fit
+     * parent are inherited, matching connections take the weight of either parent and a connection that is disabled in
+     * either parent has a 75% chance to be disabled.
+     */
+    public static PackedGenome crossover(PackedGenome fitParent, PackedGenome parent, Random random) {
+        int count = fitParent.connectionIds.length;
+        double[] weights = fitParent.weights.clone();
+        long[] enabled = fitParent.enabled.clone();
+
+        // Both genomes are sorted by innovation id, so matching connections are found in a single pass
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            int id = fitParent.connectionIds[i];
+            while (j < parent.connectionIds.length && parent.connectionIds[j] < id) {
+                j++;
+            }
+            boolean matching = j < parent.connectionIds.length && parent.connectionIds[j] == id;
+
+            if (matching && random.nextBoolean()) {
+                weights[i] = parent.weights[j];
+            }
+
+            boolean on = fitParent.isEnabled(i);
+            if (matching && !parent.isEnabled(j)) {
+                on = false;
+            }
+            if (!on && random.nextDouble() < 0.75) {
+                enabled[i >>> 6] &= ~(1L << i);
+            }
+        }
+
+        // Topology is always inherited from the fit parent, so those arrays can be shared
+        return new PackedGenome(fitParent.topology, weights, enabled);
+    }
+
+    /**
+     * Approximate heap size in bytes of the arrays of this genome, including its topology
+     */
+    public long getPackedSize() {
+        return topology.getPackedSize() + getVectorSize();
+    }
+
+    /**
+     * Approximate heap size in bytes of the weights and enabled flags, the part of the genome that is not shared
+     */
+    public long getVectorSize() {
+        return 8L * weights.length + 8L * enabled.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PackedGenome other)) return false;
+        return topology.equals(other.topology)
+                && Arrays.equals(weights, other.weights)
+                && Arrays.equals(enabled, other.enabled);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = topology.hashCode();
+        result = 31 * result + Arrays.hashCode(weights);
+        result = 31 * result + Arrays.hashCode(enabled);
+        return result;
+    }
+}
@@ -0,0 +1,80 @@
+package nl.wdudokvanheel.neural.neat.genome;
+
+import java.util.Arrays;
+
+/**
+ * Immutable structure of a {@link PackedGenome}: its neurons and the innovation ids, sources and targets of its
+ * connections, sorted by innovation id. Weights and enabled flags are not part of the topology, so many genomes of a
+ * population can share a single topology.
+ */
+public final class PackedTopology {
+    static final byte INPUT = 0;
+    static final byte OUTPUT = 1;
+    static final byte HIDDEN = 2;
+    static final byte STATIC_HIDDEN = 3;
+
+    final int[] neuronIds;
+    final byte[] neuronKinds;
+    final int[] neuronLayers;
+    // Connection id for hidden neurons, index for static hidden neurons
+    final int[] neuronConnectionIds;
+
+    final int[] connectionIds;
+    final int[] sources;
+    final int[] targets;
+
+    private final int hash;
+
+    PackedTopology(int[] neuronIds, byte[] neuronKinds, int[] neuronLayers, int[] neuronConnectionIds,
+                   int[] connectionIds, int[] sources, int[] targets) {
+        this.neuronIds = neuronIds;
+        this.neuronKinds = neuronKinds;
+        this.neuronLayers = neuronLayers;
+        this.neuronConnectionIds = neuronConnectionIds;
+        this.connectionIds = connectionIds;
+        this.sources = sources;
+        this.targets = targets;
+
+        int result = Arrays.hashCode(neuronIds);
+        result = 31 * result + Arrays.hashCode(neuronLayers);
+        result = 31 * result + Arrays.hashCode(connectionIds);
+        result = 31 * result + Arrays.hashCode(sources);
+        result = 31 * result + Arrays.hashCode(targets);
+        hash = result;
+    }
+
+    public int getNeuronCount() {
+        return neuronIds.length;
+    }
+
+    public int getConnectionCount() {
+        return connectionIds.length;
+    }
+
+    /**
+     * Approximate heap size in bytes of the arrays of this topology
+     */
+    public long getPackedSize() {
+        return 4L * neuronIds.length + neuronKinds.length + 4L * neuronLayers.length + 4L * neuronConnectionIds.length
+                + 4L * connectionIds.length + 4L * sources.length + 4L * targets.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PackedTopology other)) return false;
+        return hash == other.hash
+                && Arrays.equals(neuronIds, other.neuronIds)
+                && Arrays.equals(neuronKinds, other.neuronKinds)
+                && Arrays.equals(neuronLayers, other.neuronLayers)
+                && Arrays.equals(neuronConnectionIds, other.neuronConnectionIds)
+                && Arrays.equals(connectionIds, other.connectionIds)
+                && Arrays.equals(sources, other.sources)
+                && Arrays.equals(targets, other.targets);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
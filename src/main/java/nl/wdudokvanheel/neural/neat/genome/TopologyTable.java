@@ -0,0 +1,166 @@
+package nl.wdudokvanheel.neural.neat.genome;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Population-level table of {@link PackedTopology topologies}. Most genomes of a generation only differ from their
+ * parents in their weights, so the table stores every distinct topology once and each packed genome refers to it, only
+ * holding its own weights and enabled flags.
+ * <p>
+ * {@link #internGeneration(Collection)} packs a complete generation. Topologies that are no longer used by the new
+ * generation are dropped from the table, so it never grows beyond the number of distinct topologies in a generation.
+ * <p>
+ * The table is an offline estimation utility and is not used by the evolution, which keeps working on the gene objects
+ * of the genomes. Packing a population, for example a saved or evolved one, gives an
+ * {@link InterningReport estimate} of how much memory packed genomes with interned topologies would save compared to
+ * the gene objects.
+ */
+public class TopologyTable {
+    private final Logger logger = LoggerFactory.getLogger(TopologyTable.class);
+
+    // Estimated heap size of the gene objects on a 64-bit JVM with compressed references
+    private static final long CONNECTION_GENE_BYTES = 40;
+    private static final long NEURON_GENE_BYTES = 32;
+    // A reference in the gene list and, for neurons, in the typed neuron list of the genome
+    private static final long CONNECTION_REFERENCE_BYTES = 4;
+    private static final long NEURON_REFERENCE_BYTES = 8;
+
+    private Map<PackedTopology, PackedTopology> topologies = new HashMap<>();
+    private List<PackedGenome> generation = Collections.emptyList();
+    private InterningReport lastReport = new InterningReport(0, 0, 0, 0, 0, 0);
+
+    /**
+     * Let the genome share the topology of earlier genomes with the same structure, adding its topology to the table
+     * if it is new
+     */
+    public synchronized PackedGenome intern(PackedGenome genome) {
+        return intern(genome, topologies, Collections.emptyMap());
+    }
+
+    /**
+     * Pack and intern all genomes of a generation, replacing the topologies of the previous generation
+     *
+     * @return The packed genomes in the same order as the genomes
+     */
+    public synchronized List<PackedGenome> internGeneration(Collection<Genome> genomes) {
+        Map<PackedTopology, PackedTopology> previous = topologies;
+        Map<PackedTopology, PackedTopology> current = new HashMap<>();
+        List<PackedGenome> packed = new ArrayList<>(genomes.size());
+
+        Set<Object> genes = Collections.newSetFromMap(new IdentityHashMap<>());
+        long objectBytes = 0;
+        long packedBytes = 0;
+        long vectorBytes = 0;
+        int newTopologies = 0;
+
+        for (Genome genome : genomes) {
+            for (NeuronGene neuron : genome.getNeuronView()) {
+                objectBytes += NEURON_REFERENCE_BYTES;
+                if (genes.add(neuron)) {
+                    objectBytes += NEURON_GENE_BYTES;
+                }
+            }
+            for (ConnectionGene connection : genome.getConnectionView()) {
+                objectBytes += CONNECTION_REFERENCE_BYTES;
+                if (genes.add(connection)) {
+                    objectBytes += CONNECTION_GENE_BYTES;
+                }
+            }
+
+            PackedGenome genomePacked = PackedGenome.of(genome);
+            packedBytes += genomePacked.getPackedSize();
+            vectorBytes += genomePacked.getVectorSize();
+
+            if (!current.containsKey(genomePacked.getTopology()) && !previous.containsKey(genomePacked.getTopology())) {
+                newTopologies++;
+            }
+            packed.add(intern(genomePacked, current, previous));
+        }
+
+        long topologyBytes = 0;
+        for (PackedTopology topology : current.keySet()) {
+            topologyBytes += topology.getPackedSize();
+        }
+
+        topologies = current;
+        generation = Collections.unmodifiableList(packed);
+        lastReport = new InterningReport(packed.size(), current.size(), newTopologies, objectBytes, packedBytes, vectorBytes + topologyBytes);
+        logger.debug("{}", lastReport);
+        return generation;
+    }
+
+    /**
+     * Packed genomes of the last interned generation
+     */
+    public synchronized List<PackedGenome> getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Number of distinct topologies in the table
+     */
+    public synchronized int size() {
+        return topologies.size();
+    }
+
+    /**
+     * Report of the last call to {@link #internGeneration(Collection)}
+     */
+    public synchronized InterningReport getLastReport() {
+        return lastReport;
+    }
+
+    public synchronized void clear() {
+        topologies = new HashMap<>();
+        generation = Collections.emptyList();
+    }
+
+    private static PackedGenome intern(PackedGenome genome, Map<PackedTopology, PackedTopology> table, Map<PackedTopology, PackedTopology> fallback) {
+        PackedTopology topology = table.get(genome.getTopology());
+        if (topology == null) {
+            topology = fallback.getOrDefault(genome.getTopology(), genome.getTopology());
+            table.put(topology, topology);
+        }
+        return topology == genome.getTopology() ? genome : genome.withTopology(topology);
+    }
+
+    /**
+     * @param genomes       Number of genomes in the generation
+     * @param topologies    Distinct topologies in the generation
+     * @param newTopologies Topologies that were not in the previous generation
+     * @param objectBytes   Estimated heap size of the gene objects of the genomes, counting shared genes once
+     * @param packedBytes   Size of the genomes when packed without sharing topologies
+     * @param internedBytes Size of the packed genomes with interned topologies
+     */
+    public record InterningReport(int genomes, int topologies, int newTopologies, long objectBytes, long packedBytes, long internedBytes) {
+        /**
+         * Estimated bytes the interned genomes would save if they replaced the gene objects, nothing is actually saved
+         */
+        public long getPotentialSavings() {
+            return objectBytes - internedBytes;
+        }
+
+        /**
+         * Bytes the table saves by sharing topologies compared to packing every genome on its own
+         */
+        public long getSharedBytes() {
+            return packedBytes - internedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Topology table: %d genomes share %d topologies (%d new), %d bytes interned vs %d packed vs %d as objects, interning would save an estimated %d bytes",
+                    genomes, topologies, newTopologies, internedBytes, packedBytes, objectBytes, getPotentialSavings());
+        }
+    }
+}
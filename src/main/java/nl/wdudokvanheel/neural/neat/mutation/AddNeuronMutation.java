@@ -22,7 +22,7 @@ public class AddNeuronMutation extends AbstractMutation {
             return;
         }
 
-        List<ConnectionGene> connections = new ArrayList<>(genome.getConnections());
+        List<ConnectionGene> connections = new ArrayList<>(genome.getConnectionView());
 
         //Keep trying to replace a connection with a neuron until it succeeds or when there are no more possible connections to replace
         while (!connections.isEmpty()) {
@@ -62,7 +62,8 @@ public class AddNeuronMutation extends AbstractMutation {
             return;
         }
 
-        //Disable the connection that is being replaced by a neuron
+        //Disable the connection that is being replaced by a neuron, taking it from the genome so a shared gene is copied
+        connection = genome.getConnections().get(genome.getConnections().indexOf(connection));
         connection.setEnabled(false);
 
         //Find the source neuron to get the layer
@@ -3,6 +3,8 @@ package nl.wdudokvanheel.neural.neat.mutation;
 import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
 import nl.wdudokvanheel.neural.neat.genome.Genome;
 
+import java.util.List;
+
 public class RandomWeightMutation extends AbstractMutation {
     private static final double SIGMA = 0.5;
     private double mutateConnectionWeightProbability;
@@ -13,12 +15,15 @@ public class RandomWeightMutation extends AbstractMutation {
 
     @Override
     public void mutate(Genome genome) {
-        for (ConnectionGene connection : genome.getConnections()) {
-            if (!connection.isEnabled()) {
+        // Read through the view, only connections that are mutated need their own copy
+        List<ConnectionGene> connections = genome.getConnectionView();
+        for (int i = 0; i < connections.size(); i++) {
+            if (!connections.get(i).isEnabled()) {
                 continue;
             }
 
             if (random.nextDouble() < mutateConnectionWeightProbability) {
+                ConnectionGene connection = genome.getConnections().get(i);
                 double w = connection.getWeight() + getRandomGaussian(SIGMA);
                 connection.setWeight(w);
             }
@@ -3,6 +3,8 @@ package nl.wdudokvanheel.neural.neat.mutation;
 import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
 import nl.wdudokvanheel.neural.neat.genome.Genome;
 
+import java.util.List;
+
 public class ShiftWeightMutation extends AbstractMutation {
     private final double perturbationPower;
     private final double mutateConnectionWeightProbability;
@@ -14,13 +16,16 @@ public class ShiftWeightMutation extends AbstractMutation {
 
     @Override
     public void mutate(Genome genome) {
-        for (ConnectionGene connection : genome.getConnections()) {
-            if (!connection.isEnabled()) {
+        // Read through the view, only connections that are mutated need their own copy
+        List<ConnectionGene> connections = genome.getConnectionView();
+        for (int i = 0; i < connections.size(); i++) {
+            if (!connections.get(i).isEnabled()) {
                 continue;
             }
 
             if (random.nextDouble() < mutateConnectionWeightProbability) {
                 double p = getRandomGaussian(2) * perturbationPower;
+                ConnectionGene connection = genome.getConnections().get(i);
                 connection.setWeight(connection.getWeight() + p);
             }
         }
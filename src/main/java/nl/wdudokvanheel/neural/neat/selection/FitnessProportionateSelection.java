@@ -0,0 +1,82 @@
+package nl.wdudokvanheel.neural.neat.selection;
+
+import java.util.Random;
+
+/**
+ * Roulette wheel selection, the chance to be picked is proportional to the weight. The cumulative weights are summed
+ * once, every pick is a binary search over them, also when one index is excluded. Negative weights count as 0.
+ * <p>
+ * When the weights don't add up to more than 0 the first index is picked, or the second one if the first is excluded.
+ */
+public class FitnessProportionateSelection implements SelectionStrategy {
+    @Override
+    public Selector prepare(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += Math.max(0, weights[i]);
+            cumulative[i] = total;
+        }
+        return new CumulativeSelector(cumulative);
+    }
+
+    private static final class CumulativeSelector implements Selector {
+        private final double[] cumulative;
+
+        CumulativeSelector(double[] cumulative) {
+            this.cumulative = cumulative;
+        }
+
+        @Override
+        public int select(Random random, int exclude) {
+            int count = cumulative.length;
+            boolean excluded = exclude >= 0 && exclude < count;
+            double total = count == 0 ? 0 : cumulative[count - 1];
+            double excludedWeight = excluded ? weight(exclude) : 0;
+
+            if (total - excludedWeight <= 0) {
+                if (count > 0 && exclude != 0) {
+                    return 0;
+                }
+                return count > 1 ? 1 : -1;
+            }
+
+            double target = random.nextDouble(total - excludedWeight);
+            // The first index whose cumulative weight reaches the target, as if the excluded weight was left out
+            int index = firstAtLeast(target, 0);
+            if (excluded && index >= exclude) {
+                index = firstAtLeast(target + excludedWeight, exclude + 1);
+            }
+            return clamp(index, exclude);
+        }
+
+        private double weight(int index) {
+            return cumulative[index] - (index == 0 ? 0 : cumulative[index - 1]);
+        }
+
+        private int firstAtLeast(double target, int from) {
+            int low = from;
+            int high = cumulative.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Rounding can put the target past the last cumulative weight, pick the last index that may be picked then
+         */
+        private int clamp(int index, int exclude) {
+            int last = cumulative.length - 1;
+            if (index <= last) {
+                return index;
+            }
+            return last == exclude ? last - 1 : last;
+        }
+    }
+}
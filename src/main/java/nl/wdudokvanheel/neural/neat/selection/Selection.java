@@ -0,0 +1,61 @@
+package nl.wdudokvanheel.neural.neat.selection;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A group of items prepared for selection by a {@link SelectionStrategy}. The weights are read once when the selection
+ * is created, so the items and their fitness must not change while the selection is in use.
+ */
+public final class Selection<T> {
+    private final List<T> items;
+    private final SelectionStrategy.Selector selector;
+    // Position of each item, only built when an item is excluded from a pick
+    private Map<T, Integer> positions;
+
+    private Selection(List<T> items, SelectionStrategy.Selector selector) {
+        this.items = items;
+        this.selector = selector;
+    }
+
+    public static <T> Selection<T> of(SelectionStrategy strategy, List<T> items, ToDoubleFunction<T> weight) {
+        double[] weights = new double[items.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = weight.applyAsDouble(items.get(i));
+        }
+        return new Selection<>(items, strategy.prepare(weights));
+    }
+
+    /**
+     * @return The picked item, or null if there are no items
+     */
+    public T select(Random random) {
+        return select(random, null);
+    }
+
+    /**
+     * @param exclude Item that must not be picked, or null
+     * @return The picked item, or null if there is no other item
+     */
+    public T select(Random random, T exclude) {
+        int index = selector.select(random, exclude == null ? -1 : indexOf(exclude));
+        return index < 0 ? null : items.get(index);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    private int indexOf(T item) {
+        if (positions == null) {
+            positions = new IdentityHashMap<>();
+            for (int i = items.size() - 1; i >= 0; i--) {
+                positions.put(items.get(i), i);
+            }
+        }
+        return positions.getOrDefault(item, -1);
+    }
+}
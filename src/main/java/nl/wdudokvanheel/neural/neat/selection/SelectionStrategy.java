@@ -0,0 +1,29 @@
+package nl.wdudokvanheel.neural.neat.selection;
+
+import java.util.Random;
+
+/**
+ * Strategy to pick parents from a species, or a species from the population, based on their fitness. The weights of a
+ * group are prepared once, after which every pick only costs what the strategy needs per draw.
+ */
+public interface SelectionStrategy {
+    /**
+     * Prepare the weights of a group for any number of picks. The weights are not modified and not copied.
+     */
+    Selector prepare(double[] weights);
+
+    interface Selector {
+        /**
+         * @return Index of the picked weight, or -1 if there is nothing to pick
+         */
+        default int select(Random random) {
+            return select(random, -1);
+        }
+
+        /**
+         * @param exclude Index that must not be picked, or -1
+         * @return Index of the picked weight, or -1 if there is nothing else to pick
+         */
+        int select(Random random, int exclude);
+    }
+}
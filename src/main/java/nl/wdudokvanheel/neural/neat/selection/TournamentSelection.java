@@ -0,0 +1,46 @@
+package nl.wdudokvanheel.neural.neat.selection;
+
+import java.util.Random;
+
+/**
+ * Tournament selection, picks a number of random contestants and selects the one with the highest weight. Larger
+ * tournaments favor the fittest more. Every pick costs the size of the tournament, regardless of the size of the group.
+ */
+public class TournamentSelection implements SelectionStrategy {
+    private final int size;
+
+    public TournamentSelection(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Tournament size must be at least 1, got " + size);
+        }
+        this.size = size;
+    }
+
+    @Override
+    public Selector prepare(double[] weights) {
+        return (random, exclude) -> {
+            boolean excluded = exclude >= 0 && exclude < weights.length;
+            int candidates = excluded ? weights.length - 1 : weights.length;
+            if (candidates <= 0) {
+                return -1;
+            }
+
+            int best = -1;
+            for (int i = 0; i < size; i++) {
+                int contestant = random.nextInt(candidates);
+                // Skip over the excluded index
+                if (excluded && contestant >= exclude) {
+                    contestant++;
+                }
+                if (best == -1 || weights[contestant] > weights[best]) {
+                    best = contestant;
+                }
+            }
+            return best;
+        };
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
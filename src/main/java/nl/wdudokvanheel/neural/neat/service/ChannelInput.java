@@ -0,0 +1,161 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.NeuronGene;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered reader for the binary checkpoint formats, the counterpart of {@link ChannelOutput}
+ */
+class ChannelInput {
+    private final ReadableByteChannel channel;
+    private final GenomeCodec codec;
+    private ByteBuffer buffer;
+
+    ChannelInput(ReadableByteChannel channel, GenomeCodec codec, int bufferSize) {
+        this.channel = channel;
+        this.codec = codec;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.flip();
+    }
+
+    /**
+     * Make sure the specified number of bytes are buffered and return the buffer to read them from
+     */
+    ByteBuffer require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+
+        if (buffer.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of checkpoint data");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Buffer up to the specified number of bytes, fewer when the channel ends before that
+     */
+    ByteBuffer request(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+
+        buffer.compact();
+        while (buffer.position() < Math.min(bytes, buffer.capacity())) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * True when all data of the channel has been read
+     */
+    boolean isAtEnd() throws IOException {
+        if (buffer.hasRemaining()) {
+            return false;
+        }
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read < 0;
+    }
+
+    int readByte() throws IOException {
+        return require(1).get();
+    }
+
+    int readInt() throws IOException {
+        return require(4).getInt();
+    }
+
+    long readLong() throws IOException {
+        return require(8).getLong();
+    }
+
+    double readDouble() throws IOException {
+        return require(8).getDouble();
+    }
+
+    int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in checkpoint data");
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in checkpoint data");
+    }
+
+    int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    String readString() throws IOException {
+        int length = readVarInt();
+        if (length < 0) {
+            throw new IOException("Malformed string length in checkpoint data");
+        }
+        byte[] bytes = new byte[length];
+        require(bytes.length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    NeuronGene readNeuron() throws IOException {
+        try {
+            return GenomeCodec.readNeuron(request(16), 0);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Malformed neuron in checkpoint data", e);
+        }
+    }
+
+    Genome readGenome() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            throw new IOException("Malformed genome length in checkpoint data");
+        }
+        ByteBuffer source = require(length);
+        ByteBuffer slice = source.slice(source.position(), length);
+        source.position(source.position() + length);
+        try {
+            return codec.read(slice);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed genome in checkpoint data", e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer for the binary checkpoint formats. Values are collected in a direct buffer that is written to the
+ * channel whenever it runs full.
+ */
+class ChannelOutput implements AutoCloseable {
+    private final WritableByteChannel channel;
+    private final GenomeCodec codec;
+    private ByteBuffer buffer;
+
+    ChannelOutput(WritableByteChannel channel, GenomeCodec codec, int bufferSize) {
+        this.channel = channel;
+        this.codec = codec;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Make room for at least the specified number of bytes and return the buffer to write them to
+     */
+    ByteBuffer reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(bytes);
+            }
+        }
+        return buffer;
+    }
+
+    void writeByte(int value) throws IOException {
+        reserve(1).put((byte) value);
+    }
+
+    void writeInt(int value) throws IOException {
+        reserve(4).putInt(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        reserve(8).putLong(value);
+    }
+
+    void writeDouble(double value) throws IOException {
+        reserve(8).putDouble(value);
+    }
+
+    void writeVarInt(int value) throws IOException {
+        GenomeCodec.writeVarInt(reserve(5), value);
+    }
+
+    void writeVarLong(long value) throws IOException {
+        ByteBuffer target = reserve(10);
+        while ((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    void writeSignedVarInt(int value) throws IOException {
+        GenomeCodec.writeSignedVarInt(reserve(5), value);
+    }
+
+    void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        reserve(bytes.length).put(bytes);
+    }
+
+    /**
+     * Write a genome prefixed with its encoded length, so it can be read back without decoding the data before it
+     */
+    void writeGenome(Genome genome) throws IOException {
+        ByteBuffer target = reserve(4 + codec.getMaxEncodedSize(genome));
+        int start = target.position();
+        target.putInt(0);
+        codec.write(genome, target);
+        target.putInt(start, target.position() - start - 4);
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,349 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import nl.wdudokvanheel.neural.neat.CreatureFactory;
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Write a complete {@link NeatContext} to a compact binary checkpoint and restore it again, so a long run can be resumed
+ * after a crash. A checkpoint contains the configuration (including the adapted species threshold), the generation
+ * counter, all innovation ids, the blueprint, every creature with its genome and fitness and every species with its
+ * members and stagnation counters.
+ * <p>
+ * Checkpoints are written through a {@link FileChannel} to a temporary file that replaces the previous checkpoint only
+ * once it is complete, so a crash while writing never leaves a corrupt checkpoint behind. Genomes are stored with the
+ * {@link GenomeCodec}.
+ * <p>
+ * The evaluator, surrogate and other optional parts of the context are not stored, set them again after restoring.
+ * The random generators of the services are not part of the checkpoint either: a restored context continues with the
+ * exact same state, but draws different random numbers than the original run would have.
+ */
+public class CheckpointService<Creature extends CreatureInterface<Creature>> {
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointService.class);
+
+    // "NEAT"
+    static final int MAGIC = 0x4E454154;
+    private static final byte VERSION = 2;
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private static final byte INT_FIELD = 'I';
+    private static final byte DOUBLE_FIELD = 'D';
+    private static final byte BOOLEAN_FIELD = 'Z';
+
+    private final GenomeCodec codec = new GenomeCodec();
+
+    /**
+     * Write the context to a checkpoint file, replacing the existing checkpoint
+     */
+    public void write(NeatContext<Creature> context, Path path) throws IOException {
+        long start = System.nanoTime();
+        writeFile(path, codec, output -> write(context, output));
+        logger.debug("Wrote checkpoint of generation {} with {} creatures in {} ms", context.generation, context.creatures.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Restore a context from a checkpoint file
+     *
+     * @param factory Factory to create the creatures with
+     */
+    public NeatContext<Creature> read(Path path, CreatureFactory<Creature> factory) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            NeatContext<Creature> context = read(new ChannelInput(channel, codec, BUFFER_SIZE), factory);
+            logger.debug("Restored generation {} with {} creatures in {} ms", context.generation, context.creatures.size(), (System.nanoTime() - start) / 1_000_000);
+            return context;
+        }
+    }
+
+    /**
+     * Write a file through a temporary file that replaces the existing file only once it is complete, so a crash while
+     * writing never leaves a corrupt file behind
+     */
+    static long writeFile(Path path, GenomeCodec codec, FileWriter writer) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        long size;
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            try (ChannelOutput output = new ChannelOutput(channel, codec, BUFFER_SIZE)) {
+                writer.write(output);
+            }
+            channel.force(false);
+            size = channel.size();
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return size;
+    }
+
+    void write(NeatContext<Creature> context, ChannelOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        writeSnapshot(ContextSnapshot.of(context), context.innovationService.exportState(), output, ChannelOutput::writeGenome);
+    }
+
+    NeatContext<Creature> read(ChannelInput input, CreatureFactory<Creature> factory) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a NEAT checkpoint");
+        }
+        int version = input.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+
+        ContextSnapshot snapshot = readSnapshot(input, ChannelInput::readGenome);
+        return snapshot.toContext(factory, snapshot.innovations);
+    }
+
+    /**
+     * Write the snapshot, every genome is written by the genome writer
+     */
+    static void writeSnapshot(ContextSnapshot snapshot, InnovationService.State innovations, ChannelOutput output, GenomeWriter genomes) throws IOException {
+        writeConfiguration(snapshot.configuration, output);
+        output.writeVarInt(snapshot.generation);
+        output.writeVarInt(snapshot.nextSpeciesId);
+        writeInnovations(innovations, output);
+
+        output.writeByte(snapshot.blueprint != null ? 1 : 0);
+        if (snapshot.blueprint != null) {
+            genomes.write(output, snapshot.blueprint);
+        }
+
+        output.writeVarInt(snapshot.genomes.length);
+        for (int i = 0; i < snapshot.genomes.length; i++) {
+            output.writeDouble(snapshot.fitness[i]);
+            output.writeVarInt(snapshot.creatureSpecies[i]);
+            genomes.write(output, snapshot.genomes[i]);
+        }
+
+        output.writeVarInt(snapshot.population.length);
+        for (int creature : snapshot.population) {
+            output.writeVarInt(creature);
+        }
+
+        output.writeVarInt(snapshot.speciesIds.length);
+        for (int s = 0; s < snapshot.speciesIds.length; s++) {
+            output.writeSignedVarInt(snapshot.speciesIds[s]);
+            output.writeDouble(snapshot.lastFitness[s]);
+            output.writeVarInt(snapshot.lastImprovement[s]);
+            output.writeVarInt(snapshot.representatives[s]);
+            output.writeVarInt(snapshot.members[s].length);
+            for (int member : snapshot.members[s]) {
+                output.writeVarInt(member);
+            }
+        }
+    }
+
+    static ContextSnapshot readSnapshot(ChannelInput input, GenomeReader genomes) throws IOException {
+        ContextSnapshot snapshot = new ContextSnapshot();
+        snapshot.configuration = readConfiguration(input);
+        snapshot.generation = input.readVarInt();
+        snapshot.nextSpeciesId = input.readVarInt();
+        snapshot.innovations = readInnovations(input);
+        snapshot.innovationCounter = snapshot.innovations.innovationIdCounter();
+
+        if (input.readByte() == 1) {
+            snapshot.blueprint = genomes.read(input);
+        }
+
+        int count = input.readVarInt();
+        snapshot.genomes = new Genome[count];
+        snapshot.fitness = new double[count];
+        snapshot.creatureSpecies = new int[count];
+        for (int i = 0; i < count; i++) {
+            snapshot.fitness[i] = input.readDouble();
+            snapshot.creatureSpecies[i] = input.readVarInt();
+            snapshot.genomes[i] = genomes.read(input);
+        }
+
+        snapshot.population = new int[input.readVarInt()];
+        for (int i = 0; i < snapshot.population.length; i++) {
+            snapshot.population[i] = input.readVarInt();
+        }
+
+        int speciesCount = input.readVarInt();
+        snapshot.speciesIds = new int[speciesCount];
+        snapshot.lastFitness = new double[speciesCount];
+        snapshot.lastImprovement = new int[speciesCount];
+        snapshot.representatives = new int[speciesCount];
+        snapshot.members = new int[speciesCount][];
+        for (int s = 0; s < speciesCount; s++) {
+            snapshot.speciesIds[s] = input.readSignedVarInt();
+            snapshot.lastFitness[s] = input.readDouble();
+            snapshot.lastImprovement[s] = input.readVarInt();
+            snapshot.representatives[s] = input.readVarInt();
+            snapshot.members[s] = new int[input.readVarInt()];
+            for (int m = 0; m < snapshot.members[s].length; m++) {
+                snapshot.members[s][m] = input.readVarInt();
+            }
+        }
+
+        snapshot.validate();
+        return snapshot;
+    }
+
+    /**
+     * All public settings are stored by name, so checkpoints stay readable when settings are added or removed
+     */
+    private static void writeConfiguration(NeatConfiguration configuration, ChannelOutput output) throws IOException {
+        List<Field> fields = getConfigurationFields();
+        output.writeVarInt(fields.size());
+        try {
+            for (Field field : fields) {
+                output.writeString(field.getName());
+                if (field.getType() == int.class) {
+                    output.writeByte(INT_FIELD);
+                    output.writeInt(field.getInt(configuration));
+                } else if (field.getType() == double.class) {
+                    output.writeByte(DOUBLE_FIELD);
+                    output.writeDouble(field.getDouble(configuration));
+                } else {
+                    output.writeByte(BOOLEAN_FIELD);
+                    output.writeByte(field.getBoolean(configuration) ? 1 : 0);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Configuration setting is not accessible", e);
+        }
+    }
+
+    private static NeatConfiguration readConfiguration(ChannelInput input) throws IOException {
+        NeatConfiguration configuration = new NeatConfiguration();
+        Map<String, Field> fields = new HashMap<>();
+        for (Field field : getConfigurationFields()) {
+            fields.put(field.getName(), field);
+        }
+
+        int count = input.readVarInt();
+        try {
+            for (int i = 0; i < count; i++) {
+                String name = input.readString();
+                int type = input.readByte();
+                Field field = fields.get(name);
+                switch (type) {
+                    case INT_FIELD -> {
+                        int value = input.readInt();
+                        if (field != null && field.getType() == int.class) {
+                            field.setInt(configuration, value);
+                        }
+                    }
+                    case DOUBLE_FIELD -> {
+                        double value = input.readDouble();
+                        if (field != null && field.getType() == double.class) {
+                            field.setDouble(configuration, value);
+                        }
+                    }
+                    case BOOLEAN_FIELD -> {
+                        boolean value = input.readByte() != 0;
+                        if (field != null && field.getType() == boolean.class) {
+                            field.setBoolean(configuration, value);
+                        }
+                    }
+                    default -> throw new IOException("Unknown type of setting " + name);
+                }
+                if (field == null) {
+                    logger.warn("Ignoring unknown setting {} in checkpoint", name);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Configuration setting is not accessible", e);
+        }
+        return configuration;
+    }
+
+    static List<Field> getConfigurationFields() {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : NeatConfiguration.class.getFields()) {
+            int modifiers = field.getModifiers();
+            Class<?> type = field.getType();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && (type == int.class || type == double.class || type == boolean.class)) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static void writeInnovations(InnovationService.State state, ChannelOutput output) throws IOException {
+        output.writeVarInt(state.innovationIdCounter());
+        writeIdMap(state.inputNeuronIds(), output);
+        writeIdMap(state.outputNeuronIds(), output);
+        writeIdMap(state.hiddenNeuronIds(), output);
+        writeIdMap(state.staticHiddenNeuronIds(), output);
+
+        output.writeVarInt(state.connectionIds().size());
+        for (Table.Cell<Integer, Integer, Integer> cell : state.connectionIds().cellSet()) {
+            output.writeSignedVarInt(cell.getRowKey());
+            output.writeSignedVarInt(cell.getColumnKey());
+            output.writeVarInt(cell.getValue());
+        }
+    }
+
+    private static InnovationService.State readInnovations(ChannelInput input) throws IOException {
+        int counter = input.readVarInt();
+        Map<Integer, Integer> inputs = readIdMap(input);
+        Map<Integer, Integer> outputs = readIdMap(input);
+        Map<Integer, Integer> hidden = readIdMap(input);
+        Map<Integer, Integer> staticHidden = readIdMap(input);
+
+        int connections = input.readVarInt();
+        Table<Integer, Integer, Integer> connectionIds = HashBasedTable.create();
+        for (int i = 0; i < connections; i++) {
+            connectionIds.put(input.readSignedVarInt(), input.readSignedVarInt(), input.readVarInt());
+        }
+        return new InnovationService.State(counter, inputs, outputs, hidden, staticHidden, connectionIds);
+    }
+
+    private static void writeIdMap(Map<Integer, Integer> ids, ChannelOutput output) throws IOException {
+        output.writeVarInt(ids.size());
+        for (Map.Entry<Integer, Integer> entry : ids.entrySet()) {
+            output.writeSignedVarInt(entry.getKey());
+            output.writeVarInt(entry.getValue());
+        }
+    }
+
+    private static Map<Integer, Integer> readIdMap(ChannelInput input) throws IOException {
+        int size = input.readVarInt();
+        Map<Integer, Integer> ids = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            ids.put(input.readSignedVarInt(), input.readVarInt());
+        }
+        return ids;
+    }
+
+    interface FileWriter {
+        void write(ChannelOutput output) throws IOException;
+    }
+
+    /**
+     * Writes a genome of a snapshot, so checkpoints can store genomes in different ways
+     */
+    interface GenomeWriter {
+        void write(ChannelOutput output, Genome genome) throws IOException;
+    }
+
+    interface GenomeReader {
+        Genome read(ChannelInput input) throws IOException;
+    }
+}
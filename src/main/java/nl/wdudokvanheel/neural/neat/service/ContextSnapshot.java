@@ -0,0 +1,203 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.CreatureFactory;
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of a {@link NeatContext} at a generation boundary, detached from the live context so it can be written while
+ * the evolution continues. Genomes are shared with the context instead of copied: a genome is complete once its
+ * creature is created and is not modified afterwards, offspring always receive new genomes.
+ * <p>
+ * Creatures are stored by index. The population refers to them by index as well, as do species and their members,
+ * since species can hold creatures that are not part of the population (their representative is the champion of the
+ * previous generation).
+ */
+final class ContextSnapshot {
+    NeatConfiguration configuration;
+    int generation;
+    int nextSpeciesId;
+    int innovationCounter;
+    // Innovation ids are exported when the snapshot is written, this is only set for a snapshot that was read
+    InnovationService.State innovations;
+    Genome blueprint;
+
+    Genome[] genomes;
+    double[] fitness;
+    // Index + 1 of the species of each creature, 0 if it is not part of a species
+    int[] creatureSpecies;
+    int[] population;
+
+    int[] speciesIds;
+    double[] lastFitness;
+    int[] lastImprovement;
+    int[] representatives;
+    int[][] members;
+
+    static <Creature extends CreatureInterface<Creature>> ContextSnapshot of(NeatContext<Creature> context) {
+        ContextSnapshot snapshot = new ContextSnapshot();
+        snapshot.configuration = copyConfiguration(context.configuration);
+        snapshot.generation = context.generation;
+        snapshot.nextSpeciesId = Species.getNextId();
+        snapshot.innovationCounter = context.innovationService.getLastInnovationId();
+        snapshot.blueprint = context.blueprint == null ? null : context.blueprint.getGenome();
+
+        List<Creature> creatures = new ArrayList<>(context.creatures);
+        Map<Creature, Integer> index = new IdentityHashMap<>();
+        for (Creature creature : creatures) {
+            index.putIfAbsent(creature, index.size());
+        }
+        for (Species<Creature> species : context.species) {
+            for (Creature member : species.getCreatures()) {
+                addExtraCreature(member, creatures, index);
+            }
+            addExtraCreature(species.getRepresentative(), creatures, index);
+        }
+
+        Map<Species<Creature>, Integer> speciesIndex = new IdentityHashMap<>();
+        for (Species<Creature> species : context.species) {
+            speciesIndex.put(species, speciesIndex.size());
+        }
+
+        int count = creatures.size();
+        snapshot.genomes = new Genome[count];
+        snapshot.fitness = new double[count];
+        snapshot.creatureSpecies = new int[count];
+        for (int i = 0; i < count; i++) {
+            Creature creature = creatures.get(i);
+            snapshot.genomes[i] = creature.getGenome();
+            snapshot.fitness[i] = creature.getFitness();
+            Integer species = speciesIndex.get(creature.getSpecies());
+            snapshot.creatureSpecies[i] = species == null ? 0 : species + 1;
+        }
+
+        snapshot.population = new int[context.creatures.size()];
+        for (int i = 0; i < snapshot.population.length; i++) {
+            snapshot.population[i] = index.get(context.creatures.get(i));
+        }
+
+        int speciesCount = context.species.size();
+        snapshot.speciesIds = new int[speciesCount];
+        snapshot.lastFitness = new double[speciesCount];
+        snapshot.lastImprovement = new int[speciesCount];
+        snapshot.representatives = new int[speciesCount];
+        snapshot.members = new int[speciesCount][];
+        for (int s = 0; s < speciesCount; s++) {
+            Species<Creature> species = context.species.get(s);
+            snapshot.speciesIds[s] = species.id;
+            snapshot.lastFitness[s] = species.lastFitness;
+            snapshot.lastImprovement[s] = species.lastImprovement;
+            snapshot.representatives[s] = index.get(species.getRepresentative());
+            List<Creature> members = species.getCreatures();
+            snapshot.members[s] = new int[members.size()];
+            for (int m = 0; m < members.size(); m++) {
+                snapshot.members[s][m] = index.get(members.get(m));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Build a new context from this snapshot, creating every creature with the factory
+     */
+    <Creature extends CreatureInterface<Creature>> NeatContext<Creature> toContext(CreatureFactory<Creature> factory, InnovationService.State innovations) {
+        NeatContext<Creature> context = new NeatContext<>(factory, configuration);
+        context.generation = generation;
+        Species.reserveIds(nextSpeciesId);
+        context.innovationService.importState(innovations);
+
+        if (blueprint != null) {
+            context.blueprint = factory.createNewCreature(blueprint);
+        }
+
+        List<Creature> creatures = new ArrayList<>(genomes.length);
+        for (int i = 0; i < genomes.length; i++) {
+            Creature creature = factory.createNewCreature(genomes[i]);
+            creature.setFitness(fitness[i]);
+            creatures.add(creature);
+        }
+
+        List<Species<Creature>> species = new ArrayList<>(speciesIds.length);
+        for (int s = 0; s < speciesIds.length; s++) {
+            Species<Creature> restored = new Species<>(speciesIds[s], creatures.get(representatives[s]));
+            restored.lastFitness = lastFitness[s];
+            restored.lastImprovement = lastImprovement[s];
+
+            // The constructor adds the representative, replace it with the stored members in their stored order
+            restored.getCreatures().clear();
+            for (int member : members[s]) {
+                restored.addCreature(creatures.get(member));
+            }
+            species.add(restored);
+        }
+
+        for (int i = 0; i < creatures.size(); i++) {
+            creatures.get(i).setSpecies(creatureSpecies[i] == 0 ? null : species.get(creatureSpecies[i] - 1));
+        }
+
+        context.creatures = new ArrayList<>(population.length);
+        for (int creature : population) {
+            context.creatures.add(creatures.get(creature));
+        }
+        context.species = species;
+        return context;
+    }
+
+    /**
+     * Check all references between creatures and species after reading a snapshot
+     */
+    void validate() throws IOException {
+        for (int creature : population) {
+            checkCreature(creature);
+        }
+        for (int s = 0; s < speciesIds.length; s++) {
+            checkCreature(representatives[s]);
+            for (int member : members[s]) {
+                checkCreature(member);
+            }
+        }
+        for (int species : creatureSpecies) {
+            if (species < 0 || species > speciesIds.length) {
+                throw new IOException("Creature refers to unknown species " + species);
+            }
+        }
+    }
+
+    private void checkCreature(int index) throws IOException {
+        if (index < 0 || index >= genomes.length) {
+            throw new IOException("Reference to unknown creature " + index);
+        }
+    }
+
+    private static <Creature extends CreatureInterface<Creature>> void addExtraCreature(Creature creature, List<Creature> creatures, Map<Creature, Integer> index) {
+        if (creature != null && !index.containsKey(creature)) {
+            index.put(creature, creatures.size());
+            creatures.add(creature);
+        }
+    }
+
+    /**
+     * Copy all public settings, the species threshold is adapted during the evolution so the snapshot needs its own
+     */
+    static NeatConfiguration copyConfiguration(NeatConfiguration configuration) {
+        NeatConfiguration copy = new NeatConfiguration();
+        try {
+            for (Field field : CheckpointService.getConfigurationFields()) {
+                field.set(copy, field.get(configuration));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Configuration setting is not accessible", e);
+        }
+        return copy;
+    }
+}
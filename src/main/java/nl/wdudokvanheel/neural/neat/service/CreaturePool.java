@@ -0,0 +1,179 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.CreatureFactory;
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pool of creatures and genomes of earlier generations, used to create the creatures of a new generation without
+ * allocating new objects for every one of them. The pool only fills up when {@link NeatConfiguration#recycleCreatures}
+ * is enabled, otherwise every request simply creates a new genome or creature.
+ * <p>
+ * After a new generation is created, {@link #release(NeatContext, List)} hands the creatures of the previous generation
+ * that are no longer part of the population or a species to {@link CreatureFactory#releaseCreatures(List)} and keeps
+ * them for reuse. Genomes are reset and refilled, which keeps the capacity of their gene lists. Connection genes are
+ * not pooled, clones share them with their parent until they are modified.
+ * <p>
+ * Genomes are only recycled when the context has no surrogate model and no checkpoint writer, as both keep references
+ * to the genomes of evaluated generations.
+ */
+public class CreaturePool<Creature extends CreatureInterface<Creature>> {
+    private final Logger logger = LoggerFactory.getLogger(CreaturePool.class);
+
+    private final ArrayDeque<Creature> creatures = new ArrayDeque<>();
+    private final ArrayDeque<Genome> genomes = new ArrayDeque<>();
+
+    private int creaturesReused = 0;
+    private int creaturesCreated = 0;
+    private int genomesReused = 0;
+    private int genomesCreated = 0;
+
+    private RecyclingStatistics lastStatistics = new RecyclingStatistics(0, 0, 0, 0, 0, 0, 0);
+
+    /**
+     * Empty genome, a recycled one if available
+     */
+    public synchronized Genome newGenome() {
+        Genome genome = genomes.pollFirst();
+        if (genome == null) {
+            genomesCreated++;
+            return new Genome();
+        }
+        genomesReused++;
+        genome.reset();
+        return genome;
+    }
+
+    /**
+     * Clone of the genome, copied into a recycled genome if available
+     */
+    public synchronized Genome cloneGenome(Genome genome) {
+        Genome target = genomes.pollFirst();
+        if (target == null) {
+            genomesCreated++;
+            return genome.clone();
+        }
+        genomesReused++;
+        return genome.copyInto(target);
+    }
+
+    /**
+     * Creature with the genome, reusing a released creature if the factory supports it
+     */
+    public synchronized Creature createCreature(CreatureFactory<Creature> factory, Genome genome) {
+        Creature creature = creatures.pollFirst();
+        if (creature != null) {
+            Creature reused = factory.reuseCreature(creature, genome);
+            if (reused != null) {
+                creaturesReused++;
+                return reused;
+            }
+            // The factory does not reuse creatures, keeping them is pointless
+            creatures.clear();
+        }
+        creaturesCreated++;
+        return factory.createNewCreature(genome);
+    }
+
+    /**
+     * Release the creatures of the previous generation that are no longer used by the context and report how many
+     * objects the new generation reused
+     *
+     * @param previous The population before the new generation was created
+     */
+    public synchronized void release(NeatContext<Creature> context, List<Creature> previous) {
+        Set<Creature> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        used.addAll(context.creatures);
+        for (Species<Creature> species : context.species) {
+            used.addAll(species.getCreatures());
+            used.add(species.getRepresentative());
+        }
+        if (context.blueprint != null) {
+            used.add(context.blueprint);
+        }
+
+        List<Creature> released = new ArrayList<>();
+        for (Creature creature : previous) {
+            if (used.add(creature)) {
+                released.add(creature);
+            }
+        }
+        if (!released.isEmpty()) {
+            context.creatureFactory.releaseCreatures(released);
+        }
+
+        // Leftovers of earlier generations are kept up to the size of a population
+        int limit = context.configuration.populationSize;
+        boolean recycleGenomes = context.surrogate == null && context.checkpointWriter == null;
+        for (Creature creature : released) {
+            if (creatures.size() < limit) {
+                creatures.addLast(creature);
+            }
+            if (recycleGenomes && genomes.size() < limit) {
+                genomes.addLast(creature.getGenome());
+            }
+        }
+
+        lastStatistics = new RecyclingStatistics(creaturesReused, creaturesCreated, genomesReused, genomesCreated,
+                released.size(), creatures.size(), genomes.size());
+        creaturesReused = 0;
+        creaturesCreated = 0;
+        genomesReused = 0;
+        genomesCreated = 0;
+        logger.debug("{}", lastStatistics);
+    }
+
+    /**
+     * Statistics of the generation that was created before the last call to {@link #release(NeatContext, List)}
+     */
+    public synchronized RecyclingStatistics getLastStatistics() {
+        return lastStatistics;
+    }
+
+    public synchronized void clear() {
+        creatures.clear();
+        genomes.clear();
+    }
+
+    /**
+     * @param creaturesReused  Creatures of the generation that were released creatures
+     * @param creaturesCreated Creatures of the generation that were newly created
+     * @param genomesReused    Genomes of the generation that were recycled
+     * @param genomesCreated   Genomes of the generation that were newly created
+     * @param released         Creatures of the previous generation that were released
+     * @param pooledCreatures  Creatures available for the next generation
+     * @param pooledGenomes    Genomes available for the next generation
+     */
+    public record RecyclingStatistics(int creaturesReused, int creaturesCreated, int genomesReused, int genomesCreated,
+                                      int released, int pooledCreatures, int pooledGenomes) {
+        public double getCreatureReuseRate() {
+            int total = creaturesReused + creaturesCreated;
+            return total == 0 ? 0 : (double) creaturesReused / total;
+        }
+
+        public double getGenomeReuseRate() {
+            int total = genomesReused + genomesCreated;
+            return total == 0 ? 0 : (double) genomesReused / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Recycling: %d of %d creatures reused (%.1f%%), %d of %d genomes reused (%.1f%%), %d released, %d creatures and %d genomes pooled",
+                    creaturesReused, creaturesReused + creaturesCreated, getCreatureReuseRate() * 100,
+                    genomesReused, genomesReused + genomesCreated, getGenomeReuseRate() * 100,
+                    released, pooledCreatures, pooledGenomes);
+        }
+    }
+}
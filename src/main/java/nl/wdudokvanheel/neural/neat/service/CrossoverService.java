@@ -3,21 +3,58 @@ package nl.wdudokvanheel.neural.neat.service;
 import nl.wdudokvanheel.neural.neat.CreatureInterface;
 import nl.wdudokvanheel.neural.neat.NeatContext;
 import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.evaluation.SurrogateModel;
 import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
 import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InnovationBits;
+import nl.wdudokvanheel.neural.neat.genome.NeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.PackedGenome;
+import nl.wdudokvanheel.neural.neat.selection.FitnessProportionateSelection;
+import nl.wdudokvanheel.neural.neat.selection.Selection;
+import nl.wdudokvanheel.neural.neat.selection.SelectionStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class CrossoverService<Creature extends CreatureInterface<Creature>> {
     private Logger logger = LoggerFactory.getLogger(CrossoverService.class);
     private Random random = new Random();
 
+    // Selections are prepared once per species while offspring are created, see prepareSelections(NeatContext)
+    private final SelectionStrategy defaultStrategy = new FitnessProportionateSelection();
+    private SelectionStrategy strategy = defaultStrategy;
+    private boolean prepared = false;
+    private final Map<Species<Creature>, Selection<Creature>> creatureSelections = new IdentityHashMap<>();
+    private Selection<Species<Creature>> speciesSelection;
+
     public List<Creature> createOffspring(NeatContext<Creature> context, int population) {
+        return createOffspring(context, population, creature -> {
+        });
+    }
+
+    /**
+     * Create offspring for the next generation
+     *
+     * @param population Number of offspring to create
+     * @param created    Called with each offspring as soon as it is created
+     */
+    public List<Creature> createOffspring(NeatContext<Creature> context, int population, Consumer<Creature> created) {
+        prepareSelections(context);
+        try {
+            return createAllOffspring(context, population, created);
+        } finally {
+            releaseSelections();
+        }
+    }
+
+    private List<Creature> createAllOffspring(NeatContext<Creature> context, int population, Consumer<Creature> created) {
         ArrayList<Creature> creatures = new ArrayList<>();
 
         if (population <= 0) {
@@ -60,23 +97,66 @@ public class CrossoverService<Creature extends CreatureInterface<Creature>> {
 
 //            logger.debug("Creating {} offspring ({} asexual) for species {}", sexual + asexual, asexual, species);
 
-            creatures.addAll(createOffspringWithoutCrossover(context, species, asexual));
-            creatures.addAll(createOffspring(context, species, sexual));
-        }
-
-        if (creatures.size() > population) {
-            Collections.shuffle(creatures, random);
-            creatures.subList(population, creatures.size()).clear();
+            addOffspring(creatures, createOffspringWithoutCrossover(context, species, asexual), population, created);
+            addOffspring(creatures, createOffspring(context, species, sexual), population, created);
         }
 
         while (creatures.size() < population) {
             Species<Creature> fallback = sorted.get(random.nextInt(sorted.size()));
-            creatures.addAll(createOffspringWithoutCrossover(context, fallback, 1));
+            addOffspring(creatures, createOffspringWithoutCrossover(context, fallback, 1), population, created);
         }
 
         return creatures;
     }
 
+    /**
+     * Add offspring up to the population limit. The quotas add up to the population, so the limit only guards against
+     * rounding; offspring that are passed on can't be taken back.
+     */
+    private void addOffspring(List<Creature> creatures, List<Creature> offspring, int population, Consumer<Creature> created) {
+        for (Creature creature : offspring) {
+            if (creatures.size() >= population) {
+                return;
+            }
+            creatures.add(creature);
+            created.accept(creature);
+        }
+    }
+
+    /**
+     * Create a single offspring for a species, sexual or asexual according to the configured ratio. Used when creatures
+     * are replaced one at a time instead of a whole generation at once.
+     */
+    public Creature createOffspring(NeatContext<Creature> context, Species<Creature> species) {
+        prepareSelections(context);
+        try {
+            if (random.nextDouble() < context.configuration.reproduceWithoutCrossover) {
+                return createOffspringWithoutCrossover(context, species, 1).getFirst();
+            }
+            return createOffspring(context, species, 1).getFirst();
+        } finally {
+            releaseSelections();
+        }
+    }
+
+    /**
+     * Use the selection strategy of the context and keep the prepared selection of each species until
+     * {@link #releaseSelections()}. The species and the fitness of their creatures don't change while offspring are
+     * created, so every pick after the first one of a species is a single draw.
+     */
+    private void prepareSelections(NeatContext<Creature> context) {
+        releaseSelections();
+        strategy = context.selection != null ? context.selection : defaultStrategy;
+        prepared = true;
+    }
+
+    private void releaseSelections() {
+        prepared = false;
+        strategy = defaultStrategy;
+        creatureSelections.clear();
+        speciesSelection = null;
+    }
+
     private List<Creature> createOffspring(NeatContext<Creature> context, Species<Creature> species, int offspring) {
         List<Creature> creatures = new ArrayList<>();
         if (species.size() == 0) {
@@ -84,71 +164,80 @@ public class CrossoverService<Creature extends CreatureInterface<Creature>> {
         }
 
         for (int i = 0; i < offspring; i++) {
-            //Get two random creatures
-            Creature parentA = selectRandomWeightedCreature(species);
-            //Make sure to exclude the other parent
-            Species<Creature> parentBSpecies = species;
-
-            if ((random.nextDouble() < context.configuration.interspeciesCrossover && context.species.size() > 1) || species.size() == 1) {
-                parentBSpecies = selectRandomWeightedSpecies(context.species, species);
-            }
-            // If there is no other species available, add an asexual offspring
-            if (parentBSpecies == null) {
-                creatures.add(createOffspringWithoutCrossover(context, species, 1).getFirst());
-                continue;
-            }
-            Creature parentB = selectRandomWeightedCreature(parentBSpecies, parentA);
-
-            Creature child = crossCreatures(context, parentA, parentB);
-            creatures.add(child);
+            creatures.add(screenOffspring(context, () -> breedGenome(context, species)));
         }
         logger.trace("Created {} offspring with crossover", creatures.size());
 
         return creatures;
     }
 
-    private Species<Creature> selectRandomWeightedSpecies(List<Species<Creature>> species) {
-        return selectRandomWeightedSpecies(species, null);
-    }
+    /**
+     * Breed a mutated child genome from two parents, or from a single parent when there is no second parent available
+     */
+    private Genome breedGenome(NeatContext<Creature> context, Species<Creature> species) {
+        //Get two random creatures
+        Creature parentA = selectRandomWeightedCreature(species);
+        //Make sure to exclude the other parent
+        Species<Creature> parentBSpecies = species;
+
+        if ((random.nextDouble() < context.configuration.interspeciesCrossover && context.species.size() > 1) || species.size() == 1) {
+            parentBSpecies = selectRandomWeightedSpecies(context.species, species);
+        }
+        // If there is no other species available, create an asexual offspring
+        if (parentBSpecies == null) {
+            return cloneGenome(context, species);
+        }
+        Creature parentB = selectRandomWeightedCreature(parentBSpecies, parentA);
 
-    private Species<Creature> selectRandomWeightedSpecies(List<Species<Creature>> species, Species<Creature> exclude) {
-        double totalFitness = 0;
+        Genome genome = crossCreatures(context, parentA, parentB);
+        // Offspring are bred for the species, so that is the species they most likely belong to
+        genome.setParentSpeciesId(species.id);
+        return genome;
+    }
 
-        for (Species<Creature> iter : species) {
-            if (iter == exclude) {
-                continue;
+    /**
+     * Create an offspring from the genome supplier. With a surrogate model on the context, several candidate genomes
+     * are bred and only the one with the highest predicted fitness is kept.
+     */
+    private Creature screenOffspring(NeatContext<Creature> context, Supplier<Genome> breed) {
+        Genome genome = breed.get();
+
+        SurrogateModel surrogate = context.surrogate;
+        if (surrogate != null && surrogate.isReady()) {
+            double prediction = surrogate.predict(genome);
+            for (int i = 1; i < surrogate.getCandidates(); i++) {
+                Genome candidate = breed.get();
+                double candidatePrediction = surrogate.predict(candidate);
+                if (candidatePrediction > prediction) {
+                    genome = candidate;
+                    prediction = candidatePrediction;
+                }
             }
-
-            totalFitness += iter.getFitness();
+            surrogate.recordPrediction(genome, prediction);
         }
 
-        if (totalFitness <= 0) {
-            if (species.get(0) != exclude) {
-                return species.getFirst();
-            } else if (species.size() > 1) {
-                return species.get(1);
-            } else {
-                return null;
-            }
-        }
+        return context.creaturePool.createCreature(context.creatureFactory, genome);
+    }
 
-        double target = random.nextDouble(totalFitness);
-        double count = 0;
-        for (Species<Creature> iter : species) {
-            if (iter == exclude) {
-                continue;
-            }
+    /**
+     * Select a random species, weighted by the average fitness of each species
+     */
+    public Species<Creature> selectRandomWeightedSpecies(List<Species<Creature>> species) {
+        return selectRandomWeightedSpecies(species, null);
+    }
 
-            count += iter.getFitness();
-            if (count >= target) {
-                return iter;
+    private Species<Creature> selectRandomWeightedSpecies(List<Species<Creature>> species, Species<Creature> exclude) {
+        Selection<Species<Creature>> selection = speciesSelection;
+        if (selection == null || selection.getItems() != species) {
+            selection = Selection.of(strategy, species, Species::getFitness);
+            if (prepared) {
+                speciesSelection = selection;
             }
         }
-
-        return null;
+        return selection.select(random, exclude);
     }
 
-    private Creature crossCreatures(NeatContext<Creature> context, Creature parentA, Creature parentB) {
+    private Genome crossCreatures(NeatContext<Creature> context, Creature parentA, Creature parentB) {
         Genome fit = parentA.getGenome();
         Genome weak = parentB.getGenome();
 
@@ -157,42 +246,49 @@ public class CrossoverService<Creature extends CreatureInterface<Creature>> {
             weak = parentA.getGenome();
         }
 
-        Genome genome = crossover(fit, weak);
+        Genome genome = crossover(fit, weak, context.creaturePool.newGenome(), context.configuration.innovationBitsets);
         context.mutationService.mutateGenome(genome);
-        return context.creatureFactory.createNewCreature(genome);
+        return genome;
     }
 
     private List<Creature> createOffspringWithoutCrossover(NeatContext<Creature> context, Species<Creature> species, int offspring) {
         List<Creature> creatures = new ArrayList<>();
 
         for (int i = 0; i < offspring; i++) {
-            Creature creature = selectRandomCreature(species);
-            //Clone a random creature's genome
-            Genome genome = creature.getGenome().clone();
-            //Mutate the genome
-            context.mutationService.mutateGenome(genome);
-            //Create a new creature with the specified offspring
-            Creature newCreature = context.creatureFactory.createNewCreature(genome);
-            creatures.add(newCreature);
+            creatures.add(screenOffspring(context, () -> cloneGenome(context, species)));
         }
         logger.trace("Created {} offspring without crossover", creatures.size());
         return creatures;
     }
 
+    private Genome cloneGenome(NeatContext<Creature> context, Species<Creature> species) {
+        Creature creature = selectRandomCreature(species);
+        //Clone a random creature's genome
+        Genome genome = context.creaturePool.cloneGenome(creature.getGenome());
+        genome.setParentSpeciesId(species.id);
+        //Mutate the genome
+        context.mutationService.mutateGenome(genome);
+        return genome;
+    }
+
     private Creature selectRandomCreature(Species<Creature> species) {
         return species.getCreatures().get(random.nextInt(species.getCreatures().size()));
     }
 
     private Creature selectRandomCreature(Species<Creature> species, Creature exclude) {
-        ArrayList<Creature> list = new ArrayList<>(species.getCreatures());
-        list.remove(exclude);
-        return list.get(random.nextInt(list.size()));
+        return selectRandomCreature(species.getCreatures(), exclude);
     }
 
+    /**
+     * Uniform pick that skips over the excluded creature instead of copying the list without it
+     */
     private Creature selectRandomCreature(List<Creature> creatures, Creature exclude) {
-        ArrayList<Creature> list = new ArrayList<>(creatures);
-        list.remove(exclude);
-        return list.get(random.nextInt(list.size()));
+        int excluded = exclude == null ? -1 : creatures.indexOf(exclude);
+        if (excluded < 0) {
+            return creatures.get(random.nextInt(creatures.size()));
+        }
+        int index = random.nextInt(creatures.size() - 1);
+        return creatures.get(index >= excluded ? index + 1 : index);
     }
 
     private Creature selectRandomWeightedCreature(Species<Creature> species) {
@@ -200,39 +296,12 @@ public class CrossoverService<Creature extends CreatureInterface<Creature>> {
     }
 
     private Creature selectRandomWeightedCreature(Species<Creature> species, Creature exclude) {
-        double totalFitness = 0;
-
-        for (Creature creature : species.getCreatures()) {
-            if (creature == exclude) {
-                continue;
-            }
-
-            totalFitness += creature.getFitness();
-        }
-
-        if (totalFitness <= 0) {
-            if (species.getCreatures().get(0) != exclude) {
-                return species.getCreatures().getFirst();
-            } else if (species.getCreatures().size() > 1) {
-                return species.getCreatures().get(1);
-            } else {
-                return species.getCreatures().getFirst();
-            }
-        }
-        double target = random.nextDouble(totalFitness);
-        double count = 0;
-        for (Creature creature : species.getCreatures()) {
-            if (creature == exclude) {
-                continue;
-            }
-
-            count += creature.getFitness();
-            if (count >= target) {
-                return creature;
-            }
-        }
-
-        return null;
+        Selection<Creature> selection = prepared
+                ? creatureSelections.computeIfAbsent(species, s -> Selection.of(strategy, s.getCreatures(), Creature::getFitness))
+                : Selection.of(strategy, species.getCreatures(), Creature::getFitness);
+        Creature creature = selection.select(random, exclude);
+        // Without any other creature to pick, the first creature is the only parent there is
+        return creature != null ? creature : species.getCreatures().getFirst();
     }
 
     private double getTotalScore(List<Species<Creature>> species) {
@@ -251,38 +320,63 @@ public class CrossoverService<Creature extends CreatureInterface<Creature>> {
      * @return A new genome
      */
     public Genome crossover(Genome fitParent, Genome parent) {
-        Genome child = new Genome();
+        return crossover(fitParent, parent, new Genome(), false);
+    }
+
+    /**
+     * Both parents are aligned once in innovation order, after which the child is written gene by gene into storage
+     * that is allocated up front
+     *
+     * @param bitsets Find the connections of the other parent in its innovation bitsets instead of the alignment
+     */
+    private Genome crossover(Genome fitParent, Genome parent, Genome child, boolean bitsets) {
+        child.setParentId(fitParent.getId());
+        List<NeuronGene> neurons = fitParent.getNeuronView();
+        List<ConnectionGene> connections = fitParent.getConnectionView();
+        child.ensureCapacity(neurons.size(), connections.size());
 
         //Add all the neurons from the fit parent, leaving out the disjoint and excess neurons from the less fit parent
-        fitParent.getNeurons().forEach(neuron -> child.addNeuron(neuron.clone()));
+        for (NeuronGene neuron : neurons) {
+            child.addNeuron(neuron.clone());
+        }
 
-        //Add all the connections from the fit parent, omitting disjoint and excess connections from the less fit parent
-        for (ConnectionGene parentA : fitParent.getConnections()) {
-            //Get the connection from the other parent
-            ConnectionGene parentB = parent.getConnectionById(parentA.getInnovationId());
+        InnovationBits parentBits = bitsets ? parent.getInnovationBits() : null;
+        ConnectionGene[] aligned = bitsets ? null : fitParent.alignConnections(parent);
 
-            //Clone from the fit parent
-            ConnectionGene connection = parentA.clone();
+        //Add all the connections from the fit parent, omitting disjoint and excess connections from the less fit parent
+        for (int i = 0; i < connections.size(); i++) {
+            ConnectionGene parentA = connections.get(i);
+            int id = parentA.getInnovationId();
+            //Get the connection from the other parent, the bitsets leave out ids below 1, which are not valid innovation ids
+            ConnectionGene parentB = aligned != null ? aligned[i] : id >= 1 ? parentBits.get(id) : parent.viewConnectionById(id);
 
             //If parentB has the connection as well, give it a 50% chance to use its weight as this
             //are the only values that might differ between the parents
+            double weight = parentA.getWeight();
             if (parentB != null && random.nextBoolean()) {
-                connection.setWeight(parentB.getWeight());
+                weight = parentB.getWeight();
             }
 
             boolean enabled = parentA.isEnabled();
-            if (parentB != null && !parentB.isEnabled()) {
-                enabled = false;
-            }
-
-            if (!enabled) {
+            if (!enabled || (parentB != null && !parentB.isEnabled())) {
                 if (random.nextDouble() < 0.75) {
-                    connection.setEnabled(false);
+                    enabled = false;
                 }
             }
 
-            child.addConnection(connection);
+            child.addConnection(new ConnectionGene(id, parentA.getSource(), parentA.getTarget(), weight, enabled));
         }
         return child;
     }
+
+    /**
+     * Cross two packed genomes into a new child, see {@link PackedGenome#crossover(PackedGenome, PackedGenome, Random)}
+     *
+     * @param fitParent The fittest parent of the two
+     * @param parent    The least fit parent
+     * @return A new packed genome
+     */
+    public PackedGenome crossover(PackedGenome fitParent, PackedGenome parent) {
+        return PackedGenome.crossover(fitParent, parent, random);
+    }
 }
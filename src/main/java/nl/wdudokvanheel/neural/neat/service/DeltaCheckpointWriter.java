@@ -0,0 +1,636 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.CreatureFactory;
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.HiddenNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.NeuronGene;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Checkpoints every generation without stalling the evolution. When set on the {@link NeatContext},
+ * {@link nl.wdudokvanheel.neural.neat.NeatEvolution#nextGeneration(NeatContext)} takes a snapshot of the evaluated
+ * generation before breeding the next one. Taking a snapshot only copies references and counters, the file is written
+ * by a background thread.
+ * <p>
+ * Every {@code fullSnapshotInterval} snapshots a full checkpoint is written, in between only deltas: the innovations
+ * added since the previous checkpoint, fitness values and species, and every genome either as a reference to a genome
+ * that was already written, as the difference with the parent it was cloned or crossed from, or in full when its
+ * parent is unknown. When the disk can't keep up, snapshots that are still waiting are replaced by the newest one.
+ * <p>
+ * Files are named {@code checkpoint-<sequence>.full} and {@code checkpoint-<sequence>.delta}; older files are deleted
+ * once a new full checkpoint is written. Use {@link #restore(Path, CreatureFactory)} to rebuild the context from the
+ * latest full checkpoint and the deltas that follow it.
+ */
+public class DeltaCheckpointWriter<Creature extends CreatureInterface<Creature>> implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DeltaCheckpointWriter.class);
+
+    // "NEAD"
+    private static final int MAGIC = 0x4E454144;
+    private static final byte VERSION = 1;
+    private static final byte FULL = 1;
+    private static final byte DELTA = 2;
+
+    private static final byte GENOME_FULL = 0;
+    private static final byte GENOME_REFERENCE = 1;
+    private static final byte GENOME_DIFF = 2;
+
+    private static final byte WEIGHT_CHANGED = 1;
+    private static final byte ENABLED_CHANGED = 2;
+
+    private static final Pattern FILE_NAME = Pattern.compile("checkpoint-(\\d+)\\.(full|delta)");
+
+    private final Path directory;
+    private final int fullSnapshotInterval;
+    private final GenomeCodec codec = new GenomeCodec();
+    private final Thread thread;
+
+    private final Object lock = new Object();
+    private ContextSnapshot pending;
+    private InnovationService pendingInnovations;
+    private boolean writing = false;
+    private boolean closed = false;
+
+    // Only used by the writer thread: the genomes and innovations of the last checkpoint that was written
+    private Map<Long, Genome> written;
+    private int writtenInnovations;
+    private int deltasSinceFull;
+    private long sequence;
+
+    private long snapshots = 0;
+    private long coalesced = 0;
+    private long fullCheckpoints = 0;
+    private long deltaCheckpoints = 0;
+    private long failures = 0;
+    private long bytesWritten = 0;
+
+    /**
+     * @param directory            Directory to write the checkpoints to, created if it does not exist
+     * @param fullSnapshotInterval Number of deltas written between two full checkpoints
+     */
+    public DeltaCheckpointWriter(Path directory, int fullSnapshotInterval) throws IOException {
+        this.directory = directory;
+        this.fullSnapshotInterval = Math.max(0, fullSnapshotInterval);
+        Files.createDirectories(directory);
+
+        // Continue the numbering of files that are already there, so they are replaced by the first full checkpoint
+        for (CheckpointFile file : listFiles(directory)) {
+            sequence = Math.max(sequence, file.sequence);
+        }
+
+        thread = new Thread(this::writeSnapshots, "neat-checkpoint-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Take a snapshot of the context and queue it for writing. This never waits for the disk.
+     */
+    public void snapshot(NeatContext<Creature> context) {
+        ContextSnapshot snapshot = ContextSnapshot.of(context);
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Checkpoint writer is closed");
+            }
+            snapshots++;
+            if (pending != null) {
+                coalesced++;
+            }
+            pending = snapshot;
+            pendingInnovations = context.innovationService;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Block until all snapshots taken so far are written
+     */
+    public void flush() throws InterruptedException {
+        synchronized (lock) {
+            while (pending != null || writing) {
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * Write the last snapshot and stop the writer thread. When interrupted the snapshot is still written in the
+     * background, and the interrupt flag is set again.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public CheckpointStatistics getStatistics() {
+        synchronized (lock) {
+            return new CheckpointStatistics(snapshots, coalesced, fullCheckpoints, deltaCheckpoints, failures, bytesWritten);
+        }
+    }
+
+    private void writeSnapshots() {
+        while (true) {
+            ContextSnapshot snapshot;
+            InnovationService innovations;
+            synchronized (lock) {
+                while (pending == null && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending == null) {
+                    return;
+                }
+                snapshot = pending;
+                innovations = pendingInnovations;
+                pending = null;
+                pendingInnovations = null;
+                writing = true;
+            }
+
+            try {
+                write(snapshot, innovations);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to write checkpoint of generation {}", snapshot.generation, e);
+                // The next checkpoint can't build on one that failed
+                written = null;
+                synchronized (lock) {
+                    failures++;
+                }
+            } finally {
+                synchronized (lock) {
+                    writing = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void write(ContextSnapshot snapshot, InnovationService innovationService) throws IOException {
+        long start = System.nanoTime();
+        boolean full = written == null || deltasSinceFull >= fullSnapshotInterval;
+        long number = ++sequence;
+        Path path = directory.resolve(String.format("checkpoint-%010d.%s", number, full ? "full" : "delta"));
+
+        // Ids are handed out in order, so the range since the last checkpoint holds exactly the new innovations
+        InnovationService.State innovations = innovationService.exportState(full ? 0 : writtenInnovations, snapshot.innovationCounter);
+        Map<Long, Genome> previous = full ? Map.of() : written;
+        Map<Long, Genome> current = new HashMap<>(snapshot.genomes.length * 2);
+        int[] diffs = new int[1];
+
+        long size = CheckpointService.writeFile(path, codec, output -> {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeByte(full ? FULL : DELTA);
+            CheckpointService.writeSnapshot(snapshot, innovations, output, (out, genome) -> {
+                if (writeGenome(out, genome, previous, current)) {
+                    diffs[0]++;
+                }
+            });
+        });
+
+        written = current;
+        writtenInnovations = snapshot.innovationCounter;
+        deltasSinceFull = full ? 0 : deltasSinceFull + 1;
+        if (full) {
+            deleteFilesBefore(number);
+        }
+
+        synchronized (lock) {
+            bytesWritten += size;
+            if (full) {
+                fullCheckpoints++;
+            } else {
+                deltaCheckpoints++;
+            }
+        }
+        logger.debug("Wrote {} checkpoint of generation {}: {} bytes, {} genome diffs in {} ms", full ? "full" : "delta", snapshot.generation, size, diffs[0], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return True if the genome was written as a diff
+     */
+    private boolean writeGenome(ChannelOutput output, Genome genome, Map<Long, Genome> previous, Map<Long, Genome> current) throws IOException {
+        long id = genome.getId();
+        if (current.get(id) == genome || previous.get(id) == genome) {
+            output.writeByte(GENOME_REFERENCE);
+            output.writeVarLong(id);
+            current.put(id, genome);
+            return false;
+        }
+
+        current.put(id, genome);
+        Genome parent = previous.get(genome.getParentId());
+        if (parent != null && GenomeDiff.isCompatible(genome, parent)) {
+            output.writeByte(GENOME_DIFF);
+            output.writeVarLong(id);
+            output.writeVarLong(parent.getId());
+            GenomeDiff.write(output, genome, parent);
+            return true;
+        }
+
+        output.writeByte(GENOME_FULL);
+        output.writeVarLong(id);
+        output.writeGenome(genome);
+        return false;
+    }
+
+    private void deleteFilesBefore(long number) {
+        try {
+            for (CheckpointFile file : listFiles(directory)) {
+                if (file.sequence < number) {
+                    Files.deleteIfExists(file.path);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete old checkpoints: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Restore the context from the latest full checkpoint in the directory and the deltas written after it
+     *
+     * @param factory Factory to create the creatures with
+     */
+    public static <Creature extends CreatureInterface<Creature>> NeatContext<Creature> restore(Path directory, CreatureFactory<Creature> factory) throws IOException {
+        long start = System.nanoTime();
+        List<CheckpointFile> files = listFiles(directory);
+
+        int first = -1;
+        for (int i = 0; i < files.size(); i++) {
+            if (files.get(i).full) {
+                first = i;
+            }
+        }
+        if (first < 0) {
+            throw new IOException("No full checkpoint in " + directory);
+        }
+
+        GenomeCodec codec = new GenomeCodec();
+        Map<Long, Genome> genomes = Map.of();
+        ContextSnapshot snapshot = null;
+        InnovationService.State innovations = null;
+
+        for (int i = first; i < files.size(); i++) {
+            CheckpointFile file = files.get(i);
+            if (i > first && file.sequence != files.get(i - 1).sequence + 1) {
+                throw new IOException("Checkpoint " + file.path.getFileName() + " does not follow the previous checkpoint");
+            }
+
+            Map<Long, Genome> previous = genomes;
+            Map<Long, Genome> current = new HashMap<>();
+            try (FileChannel channel = FileChannel.open(file.path, READ)) {
+                ChannelInput input = new ChannelInput(channel, codec, CheckpointService.BUFFER_SIZE);
+                if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+                    throw new IOException("Not a NEAT delta checkpoint: " + file.path.getFileName());
+                }
+                boolean full = input.readByte() == FULL;
+                if (full != file.full) {
+                    throw new IOException("Checkpoint type does not match the file name: " + file.path.getFileName());
+                }
+
+                snapshot = CheckpointService.readSnapshot(input, in -> readGenome(in, previous, current));
+                innovations = full ? snapshot.innovations : innovations.merge(snapshot.innovations);
+            }
+            genomes = current;
+        }
+
+        NeatContext<Creature> context = snapshot.toContext(factory, innovations);
+        logger.debug("Restored generation {} from {} checkpoint files in {} ms", context.generation, files.size() - first, (System.nanoTime() - start) / 1_000_000);
+        return context;
+    }
+
+    private static Genome readGenome(ChannelInput input, Map<Long, Genome> previous, Map<Long, Genome> current) throws IOException {
+        int type = input.readByte();
+        long id = input.readVarLong();
+
+        Genome genome = switch (type) {
+            case GENOME_FULL -> input.readGenome();
+            case GENOME_REFERENCE -> {
+                Genome known = current.containsKey(id) ? current.get(id) : previous.get(id);
+                if (known == null) {
+                    throw new IOException("Reference to unknown genome " + id);
+                }
+                yield known;
+            }
+            case GENOME_DIFF -> {
+                long parentId = input.readVarLong();
+                Genome parent = previous.get(parentId);
+                if (parent == null) {
+                    throw new IOException("Diff against unknown genome " + parentId);
+                }
+                yield GenomeDiff.read(input, parent);
+            }
+            default -> throw new IOException("Unknown genome record " + type);
+        };
+
+        current.put(id, genome);
+        return genome;
+    }
+
+    private static List<CheckpointFile> listFiles(Path directory) throws IOException {
+        List<CheckpointFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Matcher matcher = FILE_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.add(new CheckpointFile(path, Long.parseLong(matcher.group(1)), matcher.group(2).equals("full")));
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(CheckpointFile::sequence));
+        return files;
+    }
+
+    private record CheckpointFile(Path path, long sequence, boolean full) {
+    }
+
+    /**
+     * @param snapshots        Snapshots taken
+     * @param coalesced        Snapshots that were replaced by a newer one before they were written
+     * @param fullCheckpoints  Full checkpoints written
+     * @param deltaCheckpoints Delta checkpoints written
+     * @param failures         Checkpoints that could not be written
+     * @param bytesWritten     Total size of all checkpoints written
+     */
+    public record CheckpointStatistics(long snapshots, long coalesced, long fullCheckpoints, long deltaCheckpoints,
+                                       long failures, long bytesWritten) {
+    }
+
+    /**
+     * A genome written as the changes to its parent. Genes of the parent keep their order, genes that are new in the
+     * child come after them, which is how cloning, crossover and mutation build a genome. Genomes that don't follow
+     * that order are written in full.
+     * <p>
+     * Layout: removed neuron indexes, changed neuron layers (index, layer), added neurons, removed connection indexes,
+     * changed connections (index, flags, [weight]), added connections (id, source, target, weight, enabled).
+     */
+    private static final class GenomeDiff {
+        static boolean isCompatible(Genome child, Genome parent) {
+            return matchNeurons(child, parent) != null && matchConnections(child, parent) != null;
+        }
+
+        static void write(ChannelOutput output, Genome child, Genome parent) throws IOException {
+            List<NeuronGene> childNeurons = child.getNeurons();
+            List<NeuronGene> parentNeurons = parent.getNeurons();
+            int[] neuronMatch = matchNeurons(child, parent);
+            writeRemoved(output, neuronMatch, parentNeurons.size());
+
+            List<int[]> layers = new ArrayList<>();
+            List<NeuronGene> added = new ArrayList<>();
+            for (int i = 0; i < childNeurons.size(); i++) {
+                if (neuronMatch[i] < 0) {
+                    added.add(childNeurons.get(i));
+                } else if (childNeurons.get(i).getLayer() != parentNeurons.get(neuronMatch[i]).getLayer()) {
+                    layers.add(new int[]{neuronMatch[i], childNeurons.get(i).getLayer()});
+                }
+            }
+            output.writeVarInt(layers.size());
+            for (int[] layer : layers) {
+                output.writeVarInt(layer[0]);
+                output.writeVarInt(layer[1]);
+            }
+            output.writeVarInt(added.size());
+            for (NeuronGene neuron : added) {
+                GenomeCodec.writeNeuron(output.reserve(16), neuron, 0);
+            }
+
+            List<ConnectionGene> childConnections = child.getConnectionView();
+            List<ConnectionGene> parentConnections = parent.getConnectionView();
+            int[] connectionMatch = matchConnections(child, parent);
+            writeRemoved(output, connectionMatch, parentConnections.size());
+
+            int changed = 0;
+            List<ConnectionGene> addedConnections = new ArrayList<>();
+            for (int i = 0; i < childConnections.size(); i++) {
+                if (connectionMatch[i] < 0) {
+                    addedConnections.add(childConnections.get(i));
+                } else if (getChanges(childConnections.get(i), parentConnections.get(connectionMatch[i])) != 0) {
+                    changed++;
+                }
+            }
+            output.writeVarInt(changed);
+            for (int i = 0; i < childConnections.size(); i++) {
+                if (connectionMatch[i] < 0) {
+                    continue;
+                }
+                ConnectionGene connection = childConnections.get(i);
+                int changes = getChanges(connection, parentConnections.get(connectionMatch[i]));
+                if (changes != 0) {
+                    output.writeVarInt(connectionMatch[i]);
+                    output.writeByte(changes);
+                    if ((changes & WEIGHT_CHANGED) != 0) {
+                        output.writeDouble(connection.getWeight());
+                    }
+                }
+            }
+            output.writeVarInt(addedConnections.size());
+            for (ConnectionGene connection : addedConnections) {
+                output.writeSignedVarInt(connection.getInnovationId());
+                output.writeSignedVarInt(connection.getSource());
+                output.writeSignedVarInt(connection.getTarget());
+                output.writeDouble(connection.getWeight());
+                output.writeByte(connection.isEnabled() ? 1 : 0);
+            }
+        }
+
+        static Genome read(ChannelInput input, Genome parent) throws IOException {
+            Genome genome = new Genome();
+            genome.setParentId(parent.getId());
+
+            List<NeuronGene> parentNeurons = parent.getNeurons();
+            boolean[] removedNeurons = readRemoved(input, parentNeurons.size());
+            NeuronGene[] neurons = new NeuronGene[parentNeurons.size()];
+            for (int i = 0; i < neurons.length; i++) {
+                neurons[i] = parentNeurons.get(i).clone();
+            }
+            int layers = input.readVarInt();
+            for (int i = 0; i < layers; i++) {
+                int index = readIndex(input, neurons.length);
+                neurons[index].setLayer(input.readVarInt());
+            }
+            for (int i = 0; i < neurons.length; i++) {
+                if (!removedNeurons[i]) {
+                    genome.addNeuron(neurons[i]);
+                }
+            }
+            int addedNeurons = input.readVarInt();
+            for (int i = 0; i < addedNeurons; i++) {
+                genome.addNeuron(input.readNeuron());
+            }
+
+            List<ConnectionGene> parentConnections = parent.getConnectionView();
+            boolean[] removedConnections = readRemoved(input, parentConnections.size());
+            ConnectionGene[] connections = new ConnectionGene[parentConnections.size()];
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = parentConnections.get(i).clone();
+            }
+            int changed = input.readVarInt();
+            for (int i = 0; i < changed; i++) {
+                ConnectionGene connection = connections[readIndex(input, connections.length)];
+                int changes = input.readByte();
+                if ((changes & WEIGHT_CHANGED) != 0) {
+                    connection.setWeight(input.readDouble());
+                }
+                if ((changes & ENABLED_CHANGED) != 0) {
+                    connection.setEnabled(!connection.isEnabled());
+                }
+            }
+            for (int i = 0; i < connections.length; i++) {
+                if (!removedConnections[i]) {
+                    genome.addConnection(connections[i]);
+                }
+            }
+            int addedConnections = input.readVarInt();
+            for (int i = 0; i < addedConnections; i++) {
+                int id = input.readSignedVarInt();
+                int source = input.readSignedVarInt();
+                int target = input.readSignedVarInt();
+                double weight = input.readDouble();
+                genome.addConnection(new ConnectionGene(id, source, target, weight, input.readByte() != 0));
+            }
+            return genome;
+        }
+
+        /**
+         * Index of the parent neuron for every child neuron, -1 for new neurons
+         *
+         * @return Null if the child neurons are not in the order of the parent followed by new neurons
+         */
+        private static int[] matchNeurons(Genome child, Genome parent) {
+            List<NeuronGene> parentNeurons = parent.getNeurons();
+            Map<Integer, Integer> index = new HashMap<>(parentNeurons.size() * 2);
+            for (int i = 0; i < parentNeurons.size(); i++) {
+                index.put(parentNeurons.get(i).getInnovationId(), i);
+            }
+
+            List<NeuronGene> childNeurons = child.getNeurons();
+            int[] match = new int[childNeurons.size()];
+            int last = -1;
+            boolean added = false;
+            for (int i = 0; i < childNeurons.size(); i++) {
+                NeuronGene neuron = childNeurons.get(i);
+                Integer parentIndex = index.get(neuron.getInnovationId());
+                if (parentIndex == null) {
+                    match[i] = -1;
+                    added = true;
+                    continue;
+                }
+
+                NeuronGene original = parentNeurons.get(parentIndex);
+                if (added || parentIndex <= last || original.getClass() != neuron.getClass()) {
+                    return null;
+                }
+                if (neuron instanceof HiddenNeuronGene hidden && hidden.getConnectionId() != ((HiddenNeuronGene) original).getConnectionId()) {
+                    return null;
+                }
+                match[i] = parentIndex;
+                last = parentIndex;
+            }
+            return match;
+        }
+
+        private static int[] matchConnections(Genome child, Genome parent) {
+            List<ConnectionGene> parentConnections = parent.getConnectionView();
+            Map<Integer, Integer> index = new HashMap<>(parentConnections.size() * 2);
+            for (int i = 0; i < parentConnections.size(); i++) {
+                index.put(parentConnections.get(i).getInnovationId(), i);
+            }
+
+            List<ConnectionGene> childConnections = child.getConnectionView();
+            int[] match = new int[childConnections.size()];
+            int last = -1;
+            boolean added = false;
+            for (int i = 0; i < childConnections.size(); i++) {
+                ConnectionGene connection = childConnections.get(i);
+                Integer parentIndex = index.get(connection.getInnovationId());
+                if (parentIndex == null) {
+                    match[i] = -1;
+                    added = true;
+                    continue;
+                }
+
+                ConnectionGene original = parentConnections.get(parentIndex);
+                if (added || parentIndex <= last || original.getSource() != connection.getSource() || original.getTarget() != connection.getTarget()) {
+                    return null;
+                }
+                match[i] = parentIndex;
+                last = parentIndex;
+            }
+            return match;
+        }
+
+        private static int getChanges(ConnectionGene child, ConnectionGene parent) {
+            int changes = 0;
+            if (Double.doubleToLongBits(child.getWeight()) != Double.doubleToLongBits(parent.getWeight())) {
+                changes |= WEIGHT_CHANGED;
+            }
+            if (child.isEnabled() != parent.isEnabled()) {
+                changes |= ENABLED_CHANGED;
+            }
+            return changes;
+        }
+
+        private static void writeRemoved(ChannelOutput output, int[] match, int parentSize) throws IOException {
+            boolean[] kept = new boolean[parentSize];
+            for (int index : match) {
+                if (index >= 0) {
+                    kept[index] = true;
+                }
+            }
+            int removed = 0;
+            for (boolean keep : kept) {
+                if (!keep) {
+                    removed++;
+                }
+            }
+            output.writeVarInt(removed);
+            for (int i = 0; i < parentSize; i++) {
+                if (!kept[i]) {
+                    output.writeVarInt(i);
+                }
+            }
+        }
+
+        private static boolean[] readRemoved(ChannelInput input, int parentSize) throws IOException {
+            boolean[] removed = new boolean[parentSize];
+            int count = input.readVarInt();
+            for (int i = 0; i < count; i++) {
+                removed[readIndex(input, parentSize)] = true;
+            }
+            return removed;
+        }
+
+        private static int readIndex(ChannelInput input, int size) throws IOException {
+            int index = input.readVarInt();
+            if (index < 0 || index >= size) {
+                throw new IOException("Gene index " + index + " out of range");
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.genome.*;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a genome. Where the {@link SerializationService} writes human-readable JSON, this codec is
+ * meant for the hot paths that move genomes around in bulk (remote evaluation, checkpoints).
+ * <p>
+ * Layout, all integers are unsigned or zigzag varints:
+ * <pre>
+ * neuronCount
+ *   kind (byte), innovationId delta, layer, [connectionId for hidden neurons]
+ * connectionCount
+ *   innovationId delta, source neuron index, target neuron index, weight (8 bytes)
+ * enabled bitmap (1 bit per connection, omitted when only active connections are written)
+ * </pre>
+ * Neurons keep their genome order, so input and output neurons map to the same network inputs and outputs after
+ * decoding.
+ */
+public class GenomeCodec {
+    private static final byte INPUT = 0;
+    private static final byte OUTPUT = 1;
+    private static final byte HIDDEN = 2;
+    private static final byte STATIC_HIDDEN = 3;
+
+    private final boolean activeConnectionsOnly;
+
+    public GenomeCodec() {
+        this(false);
+    }
+
+    /**
+     * @param activeConnectionsOnly Skip disabled connections. The decoded genome builds the exact same network, but
+     *                              is not a full copy of the original genome
+     */
+    public GenomeCodec(boolean activeConnectionsOnly) {
+        this.activeConnectionsOnly = activeConnectionsOnly;
+    }
+
+    public byte[] encode(Genome genome) {
+        ByteBuffer buffer = ByteBuffer.allocate(getMaxEncodedSize(genome));
+        write(genome, buffer);
+        byte[] result = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(result);
+        return result;
+    }
+
+    public Genome decode(byte[] data) {
+        return read(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Get an upper bound for the number of bytes {@link #write(Genome, ByteBuffer)} will use for this genome
+     */
+    public int getMaxEncodedSize(Genome genome) {
+        int neurons = genome.getNeurons().size();
+        int connections = genome.getConnectionView().size();
+        return 10 + neurons * 16 + connections * 23 + (connections + 7) / 8;
+    }
+
+    public void write(Genome genome, ByteBuffer buffer) {
+        List<NeuronGene> neurons = genome.getNeurons();
+        Map<Integer, Integer> neuronIndex = new HashMap<>(neurons.size() * 2);
+
+        writeVarInt(buffer, neurons.size());
+        int previous = 0;
+        for (int i = 0; i < neurons.size(); i++) {
+            NeuronGene neuron = neurons.get(i);
+            neuronIndex.put(neuron.getInnovationId(), i);
+            writeNeuron(buffer, neuron, previous);
+            previous = neuron.getInnovationId();
+        }
+
+        List<ConnectionGene> connections = genome.getConnectionView();
+        if (activeConnectionsOnly) {
+            connections = connections.stream().filter(ConnectionGene::isEnabled).toList();
+        }
+        writeVarInt(buffer, connections.size());
+        previous = 0;
+        for (ConnectionGene connection : connections) {
+            writeSignedVarInt(buffer, connection.getInnovationId() - previous);
+            writeVarInt(buffer, getNeuronIndex(neuronIndex, connection.getSource()));
+            writeVarInt(buffer, getNeuronIndex(neuronIndex, connection.getTarget()));
+            buffer.putDouble(connection.getWeight());
+            previous = connection.getInnovationId();
+        }
+
+        if (!activeConnectionsOnly) {
+            writeBitmap(buffer, connections);
+        }
+    }
+
+    public Genome read(ByteBuffer buffer) {
+        try {
+            Genome genome = new Genome();
+
+            int neuronCount = readVarInt(buffer);
+            int[] neuronIds = new int[neuronCount];
+            int previous = 0;
+            for (int i = 0; i < neuronCount; i++) {
+                NeuronGene neuron = readNeuron(buffer, previous);
+                genome.addNeuron(neuron);
+                neuronIds[i] = neuron.getInnovationId();
+                previous = neuron.getInnovationId();
+            }
+
+            int connectionCount = readVarInt(buffer);
+            List<ConnectionGene> connections = new ArrayList<>(connectionCount);
+            previous = 0;
+            for (int i = 0; i < connectionCount; i++) {
+                int id = previous + readSignedVarInt(buffer);
+                int source = neuronIds[readVarInt(buffer)];
+                int target = neuronIds[readVarInt(buffer)];
+                double weight = buffer.getDouble();
+                connections.add(new ConnectionGene(id, source, target, weight));
+                previous = id;
+            }
+
+            if (!activeConnectionsOnly) {
+                readBitmap(buffer, connections);
+            }
+
+            connections.forEach(genome::addConnection);
+            return genome;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed genome data", e);
+        }
+    }
+
+    /**
+     * Write a single neuron, its innovation id relative to the id of the previously written neuron
+     */
+    static void writeNeuron(ByteBuffer buffer, NeuronGene neuron, int previousId) {
+        buffer.put(getKind(neuron));
+        writeSignedVarInt(buffer, neuron.getInnovationId() - previousId);
+        writeVarInt(buffer, neuron.getLayer());
+        if (neuron instanceof HiddenNeuronGene hidden) {
+            writeSignedVarInt(buffer, hidden.getConnectionId());
+        }
+    }
+
+    static NeuronGene readNeuron(ByteBuffer buffer, int previousId) {
+        byte kind = buffer.get();
+        int id = previousId + readSignedVarInt(buffer);
+        int layer = readVarInt(buffer);
+        return createNeuron(buffer, kind, id, layer);
+    }
+
+    private static NeuronGene createNeuron(ByteBuffer buffer, byte kind, int id, int layer) {
+        return switch (kind) {
+            case INPUT -> new InputNeuronGene(id, layer);
+            case OUTPUT -> new OutputNeuronGene(id, layer);
+            case HIDDEN -> new HiddenNeuronGene(readSignedVarInt(buffer), id, layer);
+            case STATIC_HIDDEN -> new StaticHiddenNeuronGene(readSignedVarInt(buffer), id, layer);
+            default -> throw new IllegalArgumentException("Unknown neuron kind " + kind);
+        };
+    }
+
+    private static byte getKind(NeuronGene neuron) {
+        if (neuron instanceof InputNeuronGene) {
+            return INPUT;
+        }
+        if (neuron instanceof OutputNeuronGene) {
+            return OUTPUT;
+        }
+        if (neuron instanceof StaticHiddenNeuronGene) {
+            return STATIC_HIDDEN;
+        }
+        return HIDDEN;
+    }
+
+    private int getNeuronIndex(Map<Integer, Integer> neuronIndex, int id) {
+        Integer index = neuronIndex.get(id);
+        if (index == null) {
+            throw new IllegalArgumentException("Connection refers to neuron #" + id + " which is not a part of the genome");
+        }
+        return index;
+    }
+
+    private void writeBitmap(ByteBuffer buffer, List<ConnectionGene> connections) {
+        int bits = 0;
+        for (int i = 0; i < connections.size(); i++) {
+            if (connections.get(i).isEnabled()) {
+                bits |= 1 << (i & 7);
+            }
+            if ((i & 7) == 7) {
+                buffer.put((byte) bits);
+                bits = 0;
+            }
+        }
+        if ((connections.size() & 7) != 0) {
+            buffer.put((byte) bits);
+        }
+    }
+
+    private void readBitmap(ByteBuffer buffer, List<ConnectionGene> connections) {
+        int bits = 0;
+        for (int i = 0; i < connections.size(); i++) {
+            if ((i & 7) == 0) {
+                bits = buffer.get();
+            }
+            connections.get(i).setEnabled((bits & (1 << (i & 7))) != 0);
+        }
+    }
+
+    public static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static void writeSignedVarInt(ByteBuffer buffer, int value) {
+        writeVarInt(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readSignedVarInt(ByteBuffer buffer) {
+        int value = readVarInt(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -2,6 +2,10 @@ package nl.wdudokvanheel.neural.neat.service;
 
 import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
 import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InnovationBits;
+import nl.wdudokvanheel.neural.neat.genome.PackedGenome;
+
+import java.util.List;
 
 public class GenomeComparison {
     private double distance = 0;
@@ -26,96 +30,300 @@ public class GenomeComparison {
 
     private double averageWeightDifference = 0;
 
+    // Bounded comparisons stop once the distance can't end up below the bound
+    private double bound = Double.POSITIVE_INFINITY;
+    private boolean stoppedEarly = false;
+
     public GenomeComparison(Genome parentA, Genome parentB) {
         this.fitParent = parentA;
         this.weakParent = parentB;
         calculateValues();
     }
 
+    private GenomeComparison(Genome parentA, Genome parentB, double bound) {
+        this.fitParent = parentA;
+        this.weakParent = parentB;
+        this.bound = bound;
+        calculateValues();
+    }
+
+    /**
+     * Compare two genomes only to find out if their distance is below the bound. The comparison stops as soon as the
+     * excess and disjoint connections found so far, together with the connections that can't be matched anymore, put
+     * the distance at or above the bound. The distance is then a lower bound instead of the exact distance.
+     *
+     * @see #isStoppedEarly()
+     */
+    public static GenomeComparison bounded(Genome parentA, Genome parentB, double bound) {
+        return new GenomeComparison(parentA, parentB, bound);
+    }
+
+    /**
+     * Compare two genomes with the bitsets of their innovation ids, see {@link Genome#getInnovationBits()}. The
+     * distance is exactly the same as that of a regular comparison.
+     */
+    public static GenomeComparison bitsets(Genome parentA, Genome parentB) {
+        GenomeComparison comparison = new GenomeComparison();
+        comparison.fitParent = parentA;
+        comparison.weakParent = parentB;
+        comparison.calculateBitsetValues();
+        comparison.calculateDistance(parentA.getConnectionView().size(), parentB.getConnectionView().size());
+        return comparison;
+    }
+
+    private GenomeComparison() {
+    }
+
     public GenomeComparison(Genome parentA, Genome parentB, double excessCoefficient, double disjointCoefficient, double weightCoefficient) {
         this.fitParent = parentA;
         this.weakParent = parentB;
         this.excessCoefficient = excessCoefficient;
         this.disjointCoefficient = disjointCoefficient;
         this.weightCoefficient = weightCoefficient;
+        calculateValues();
+    }
+
+    public GenomeComparison(PackedGenome parentA, PackedGenome parentB) {
+        calculatePackedValues(parentA, parentB);
+    }
+
+    public GenomeComparison(PackedGenome parentA, PackedGenome parentB, double excessCoefficient, double disjointCoefficient, double weightCoefficient) {
+        this.excessCoefficient = excessCoefficient;
+        this.disjointCoefficient = disjointCoefficient;
+        this.weightCoefficient = weightCoefficient;
+        calculatePackedValues(parentA, parentB);
     }
 
     private void calculateValues() {
         calculateConnectionValues();
+        if (!stoppedEarly) {
+            calculateDistance(fitParent.getConnectionView().size(), weakParent.getConnectionView().size());
+        }
+    }
 
-        int n = Math.max(fitParent.getConnections().size(), weakParent.getConnections().size());
+    private void calculateDistance(int fitConnections, int weakConnections) {
+        int n = Math.max(fitConnections, weakConnections);
         if (n == 0) {
             n = 1;
         }
 
-        distance = (excessCoefficient * excessConnections / n) + (disjointCoefficient * disjointConnections / n) + (weightCoefficient * averageWeightDifference);
+        distance = distance(excessCoefficient, disjointCoefficient, weightCoefficient, excessConnections, disjointConnections, averageWeightDifference, n);
     }
 
+    static double distance(double excessCoefficient, double disjointCoefficient, double weightCoefficient,
+                           int excessConnections, int disjointConnections, double averageWeightDifference, int n) {
+        return (excessCoefficient * excessConnections / n) + (disjointCoefficient * disjointConnections / n) + (weightCoefficient * averageWeightDifference);
+    }
+
+    /**
+     * Lowest possible distance when some connections are not compared yet. Of the remaining connections at least
+     * {@code unmatched} will be excess or disjoint, the number by which one genome has more remaining connections than
+     * the other, and the weight term is never negative.
+     */
+    static double lowerBound(double excessCoefficient, double disjointCoefficient, int excessConnections, int disjointConnections, int unmatched, int n) {
+        return (excessCoefficient * excessConnections / n) + (disjointCoefficient * disjointConnections / n)
+                + (Math.min(excessCoefficient, disjointCoefficient) * unmatched / n);
+    }
+
+    /**
+     * Walk the connections of both genomes in innovation order side by side, so the cost only depends on the size of
+     * the genomes and not on the number of innovations in the population
+     */
     private void calculateConnectionValues() {
-        int maxInnovationIdFitParent = getMaxConnectionInnovationId(fitParent);
-        int maxInnovationIdWeakParent = getMaxConnectionInnovationId(weakParent);
-        int maxInnovationId = Math.max(maxInnovationIdFitParent, maxInnovationIdWeakParent);
+        List<ConnectionGene> fit = fitParent.getSortedConnectionView();
+        List<ConnectionGene> weak = weakParent.getSortedConnectionView();
+        int fitCount = fit.size();
+        int weakCount = weak.size();
+        int maxInnovationIdFitParent = fitCount == 0 ? 0 : Math.max(0, fit.get(fitCount - 1).getInnovationId());
+        int maxInnovationIdWeakParent = weakCount == 0 ? 0 : Math.max(0, weak.get(weakCount - 1).getInnovationId());
 
         double totalWeightDifference = 0;
+        int i = 0;
+        int j = 0;
+        // Innovation ids start at 1
+        while (i < fitCount && fit.get(i).getInnovationId() < 1) {
+            i++;
+        }
+        while (j < weakCount && weak.get(j).getInnovationId() < 1) {
+            j++;
+        }
 
-        for (int i = 1; i <= maxInnovationId; i++) {
-            ConnectionGene fitConnection = fitParent.getConnectionById(i);
-            ConnectionGene weakConnection = weakParent.getConnectionById(i);
+        boolean bounded = bound != Double.POSITIVE_INFINITY;
+        int n = Math.max(Math.max(fitParent.getConnectionView().size(), weakParent.getConnectionView().size()), 1);
+        if (bounded && exceedsBound(Math.abs((fitCount - i) - (weakCount - j)), n)) {
+            return;
+        }
 
-            if (fitConnection == null && weakConnection == null) {
-                continue;
-            }
+        while (i < fitCount || j < weakCount) {
+            ConnectionGene fitConnection = i < fitCount ? fit.get(i) : null;
+            ConnectionGene weakConnection = j < weakCount ? weak.get(j) : null;
+            int fitId = fitConnection != null ? fitConnection.getInnovationId() : Integer.MAX_VALUE;
+            int weakId = weakConnection != null ? weakConnection.getInnovationId() : Integer.MAX_VALUE;
 
             //Both genomes have this connection, so count it as a matching connection
-            if (fitConnection != null && weakConnection != null) {
-                if (!fitConnection.isEnabled() ^ !weakConnection.isEnabled()) {
-                    disjointConnections++;
+            if (fitId == weakId) {
+                i++;
+                j++;
+                if (fitConnection.isEnabled() == weakConnection.isEnabled()) {
+                    matchingConnections++;
+                    //Add the weight difference to the total
+                    totalWeightDifference += Math.abs(fitConnection.getWeight() - weakConnection.getWeight());
                     continue;
                 }
-
-                matchingConnections++;
-                //Add the weight difference to the total
-                totalWeightDifference += Math.abs(fitConnection.getWeight() - weakConnection.getWeight());
-                continue;
-            }
-
-            //Only the fit parent has the connection, test if it's an excess or disjoint connection
-            if (fitConnection != null) {
-                if (fitConnection.getInnovationId() > maxInnovationIdWeakParent) {
+                disjointConnections++;
+            } else if (fitId < weakId) {
+                //Only the fit parent has the connection, test if it's an excess or disjoint connection
+                if (fitId > maxInnovationIdWeakParent) {
                     excessConnections++;
                 } else {
                     disjointConnections++;
                 }
-                continue;
-            }
-
-            //Only the weak parent has the connection, test if it's an excess or disjoint connection
-            if (weakConnection != null) {
-                if (weakConnection.getInnovationId() > maxInnovationIdFitParent) {
+                i++;
+            } else {
+                //Only the weak parent has the connection, test if it's an excess or disjoint connection
+                if (weakId > maxInnovationIdFitParent) {
                     excessConnections++;
                 } else {
                     disjointConnections++;
                 }
+                j++;
+            }
+
+            if (bounded && exceedsBound(Math.abs((fitCount - i) - (weakCount - j)), n)) {
+                return;
             }
         }
 
         averageWeightDifference = matchingConnections == 0 ? 0 : totalWeightDifference / matchingConnections;
     }
 
-    private int getMaxConnectionInnovationId(Genome genome) {
-        int highest = 0;
-        for (ConnectionGene connection : genome.getConnections()) {
-            if (connection.getInnovationId() > highest) {
-                highest = connection.getInnovationId();
+    /**
+     * Same values as {@link #calculateConnectionValues()}, counted 64 innovation ids at a time. Connections that only
+     * one genome has are excess above the highest innovation id of the other genome, the mask keeps the ones below it.
+     */
+    private void calculateBitsetValues() {
+        InnovationBits fit = fitParent.getInnovationBits();
+        InnovationBits weak = weakParent.getInnovationBits();
+        int maxInnovationIdFitParent = fit.getMaxId();
+        int maxInnovationIdWeakParent = weak.getMaxId();
+        int words = Math.max(fit.getWordCount(), weak.getWordCount());
+
+        double totalWeightDifference = 0;
+        for (int w = 0; w < words; w++) {
+            long fitPresent = fit.getPresentWord(w);
+            long weakPresent = weak.getPresentWord(w);
+            long both = fitPresent & weakPresent;
+            // Connections both genomes have only match if they are both enabled or both disabled
+            long matching = both & ~(fit.getEnabledWord(w) ^ weak.getEnabledWord(w));
+            matchingConnections += Long.bitCount(matching);
+            disjointConnections += Long.bitCount(both & ~matching);
+
+            long fitOnly = fitPresent & ~weakPresent;
+            long weakOnly = weakPresent & ~fitPresent;
+            long belowWeak = maskUpTo(w, maxInnovationIdWeakParent);
+            long belowFit = maskUpTo(w, maxInnovationIdFitParent);
+            disjointConnections += Long.bitCount(fitOnly & belowWeak) + Long.bitCount(weakOnly & belowFit);
+            excessConnections += Long.bitCount(fitOnly & ~belowWeak) + Long.bitCount(weakOnly & ~belowFit);
+
+            // In ascending innovation order, like the merge, so the sum is exactly the same
+            while (matching != 0) {
+                int id = (w << 6) + Long.numberOfTrailingZeros(matching);
+                totalWeightDifference += Math.abs(fit.get(id).getWeight() - weak.get(id).getWeight());
+                matching &= matching - 1;
             }
         }
-        return highest;
+
+        averageWeightDifference = matchingConnections == 0 ? 0 : totalWeightDifference / matchingConnections;
     }
 
+    /**
+     * Bits of the word for the innovation ids up to and including the max id
+     */
+    private static long maskUpTo(int word, int maxId) {
+        int last = maxId - (word << 6);
+        if (last < 0) {
+            return 0;
+        }
+        if (last >= 63) {
+            return -1L;
+        }
+        return -1L >>> (63 - last);
+    }
+
+    /**
+     * Stop a bounded comparison if the distance can no longer end up below the bound
+     */
+    private boolean exceedsBound(int unmatched, int n) {
+        double lowest = lowerBound(excessCoefficient, disjointCoefficient, excessConnections, disjointConnections, unmatched, n);
+        if (lowest < bound) {
+            return false;
+        }
+        stoppedEarly = true;
+        distance = lowest;
+        return true;
+    }
+
+    /**
+     * Same values as {@link #calculateConnectionValues()}, but on the connection arrays of packed genomes
+     */
+    private void calculatePackedValues(PackedGenome fit, PackedGenome weak) {
+        int maxInnovationIdFitParent = fit.getMaxConnectionId();
+        int maxInnovationIdWeakParent = weak.getMaxConnectionId();
+        int fitCount = fit.getConnectionCount();
+        int weakCount = weak.getConnectionCount();
+
+        double totalWeightDifference = 0;
+        int i = 0;
+        int j = 0;
+        while (i < fitCount || j < weakCount) {
+            int fitId = i < fitCount ? fit.getConnectionId(i) : Integer.MAX_VALUE;
+            int weakId = j < weakCount ? weak.getConnectionId(j) : Integer.MAX_VALUE;
+
+            if (fitId == weakId) {
+                if (fit.isEnabled(i) != weak.isEnabled(j)) {
+                    disjointConnections++;
+                } else {
+                    matchingConnections++;
+                    totalWeightDifference += Math.abs(fit.getWeight(i) - weak.getWeight(j));
+                }
+                i++;
+                j++;
+            } else if (fitId < weakId) {
+                if (fitId > maxInnovationIdWeakParent) {
+                    excessConnections++;
+                } else {
+                    disjointConnections++;
+                }
+                i++;
+            } else {
+                if (weakId > maxInnovationIdFitParent) {
+                    excessConnections++;
+                } else {
+                    disjointConnections++;
+                }
+                j++;
+            }
+        }
+
+        averageWeightDifference = matchingConnections == 0 ? 0 : totalWeightDifference / matchingConnections;
+        calculateDistance(fitCount, weakCount);
+    }
+
+    /**
+     * Distance between the genomes. For a bounded comparison that stopped early this is a lower bound of the distance
+     * that is at least the bound.
+     */
     public double getDistance() {
         return distance;
     }
 
+    /**
+     * True if this is a bounded comparison that stopped before all connections were compared
+     */
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
     @Override
     public String toString() {
         return "Genomes distance: " + distance + " disjoint: " + disjointGenes + " excess: " + excessGenes + " average weight diff: " + averageWeightDifference;
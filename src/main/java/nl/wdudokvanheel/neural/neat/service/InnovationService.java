@@ -4,6 +4,8 @@ import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import nl.wdudokvanheel.neural.neat.genome.*;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -80,7 +82,7 @@ public class InnovationService {
     }
 
     public void importFromGenome(Genome genome) {
-        for (ConnectionGene conn : genome.getConnections()) {
+        for (ConnectionGene conn : genome.getConnectionView()) {
             int id = conn.getInnovationId();
             bumpCounterTo(id);
             synchronized (connectionIds) {
@@ -114,6 +116,71 @@ public class InnovationService {
         }
     }
 
+    /**
+     * Get the most recently handed out innovation id
+     */
+    public int getLastInnovationId() {
+        return innovationIdCounter.get();
+    }
+
+    /**
+     * Get a copy of all innovation ids handed out so far, used to checkpoint an evolution
+     */
+    public State exportState() {
+        synchronized (connectionIds) {
+            return exportState(0, innovationIdCounter.get());
+        }
+    }
+
+    /**
+     * Get a copy of the innovation ids in a range. Ids are handed out in increasing order, so this is the state at the
+     * moment {@code upTo} was the last id, without the ids that were already exported up to {@code after}.
+     *
+     * @param after Exclusive lower bound of the ids to export
+     * @param upTo  Inclusive upper bound of the ids to export
+     */
+    public State exportState(int after, int upTo) {
+        synchronized (connectionIds) {
+            Table<Integer, Integer, Integer> connections = HashBasedTable.create();
+            for (Table.Cell<Integer, Integer, Integer> cell : connectionIds.cellSet()) {
+                if (cell.getValue() > after && cell.getValue() <= upTo) {
+                    connections.put(cell.getRowKey(), cell.getColumnKey(), cell.getValue());
+                }
+            }
+            return new State(upTo, filterIds(inputNeuronIds, after, upTo), filterIds(outputNeuronIds, after, upTo),
+                    filterIds(hiddenNeuronIds, after, upTo), filterIds(staticHiddenNeuronIds, after, upTo), connections);
+        }
+    }
+
+    private static Map<Integer, Integer> filterIds(Map<Integer, Integer> ids, int after, int upTo) {
+        Map<Integer, Integer> result = new HashMap<>();
+        ids.forEach((key, id) -> {
+            if (id > after && id <= upTo) {
+                result.put(key, id);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Replace all innovation ids with a previously exported state
+     */
+    public void importState(State state) {
+        synchronized (connectionIds) {
+            inputNeuronIds.clear();
+            inputNeuronIds.putAll(state.inputNeuronIds());
+            outputNeuronIds.clear();
+            outputNeuronIds.putAll(state.outputNeuronIds());
+            hiddenNeuronIds.clear();
+            hiddenNeuronIds.putAll(state.hiddenNeuronIds());
+            staticHiddenNeuronIds.clear();
+            staticHiddenNeuronIds.putAll(state.staticHiddenNeuronIds());
+            connectionIds.clear();
+            connectionIds.putAll(state.connectionIds());
+            innovationIdCounter.set(state.innovationIdCounter());
+        }
+    }
+
     /**
      * Atomically advance the counter so it's at least `id`.
      */
@@ -136,4 +203,32 @@ public class InnovationService {
     public int getConnectionInnovationId(NeuronGene source, NeuronGene target) {
         return getConnectionInnovationId(source.getInnovationId(), target.getInnovationId());
     }
+
+    /**
+     * Innovation ids handed out by an InnovationService. The neuron maps are keyed by input/output/static index or by
+     * the id of the connection a hidden neuron replaced, the connection table by source and target neuron id.
+     */
+    public record State(int innovationIdCounter,
+                        Map<Integer, Integer> inputNeuronIds,
+                        Map<Integer, Integer> outputNeuronIds,
+                        Map<Integer, Integer> hiddenNeuronIds,
+                        Map<Integer, Integer> staticHiddenNeuronIds,
+                        Table<Integer, Integer, Integer> connectionIds) {
+        /**
+         * Combine this state with the ids exported after it
+         */
+        public State merge(State newer) {
+            Map<Integer, Integer> inputs = new HashMap<>(inputNeuronIds);
+            inputs.putAll(newer.inputNeuronIds);
+            Map<Integer, Integer> outputs = new HashMap<>(outputNeuronIds);
+            outputs.putAll(newer.outputNeuronIds);
+            Map<Integer, Integer> hidden = new HashMap<>(hiddenNeuronIds);
+            hidden.putAll(newer.hiddenNeuronIds);
+            Map<Integer, Integer> staticHidden = new HashMap<>(staticHiddenNeuronIds);
+            staticHidden.putAll(newer.staticHiddenNeuronIds);
+            Table<Integer, Integer, Integer> connections = HashBasedTable.create(connectionIds);
+            connections.putAll(newer.connectionIds);
+            return new State(Math.max(innovationIdCounter, newer.innovationIdCounter), inputs, outputs, hidden, staticHidden, connections);
+        }
+    }
 }
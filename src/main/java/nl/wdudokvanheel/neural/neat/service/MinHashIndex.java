@@ -0,0 +1,173 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Locality-sensitive hashing index over the connection innovation ids of genomes. Every genome gets a MinHash signature
+ * of {@code bands * rows} values, of which each band of {@code rows} values is hashed into a bucket. Two genomes share a
+ * bucket with a probability that rises steeply with the Jaccard similarity of their innovation ids, so the genomes that
+ * share a bucket with a creature are the representatives most likely to be within the species threshold.
+ * <p>
+ * Genomes are numbered in the order they are added, like the rows of a {@link RepresentativeTable}. The index is not
+ * thread safe.
+ */
+public class MinHashIndex {
+    // Fixed seed, so the same genomes always end up in the same buckets
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    private final int bands;
+    private final int rows;
+    private final long[] multipliers;
+    private final long[] offsets;
+
+    private final Map<Long, List<Integer>> buckets = new HashMap<>();
+    private int size = 0;
+
+    // Marks the genomes already returned as a candidate for the current query
+    private int[] marks = new int[0];
+    private int query = 0;
+
+    public MinHashIndex(int bands, int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("MinHash index needs at least one band and one row, got " + bands + " bands and " + rows + " rows");
+        }
+        this.bands = bands;
+        this.rows = rows;
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        int functions = bands * rows;
+        multipliers = new long[functions];
+        offsets = new long[functions];
+        for (int i = 0; i < functions; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            offsets[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Add the genome to the buckets of its signature
+     *
+     * @return The number of the genome in the index
+     */
+    public int add(Genome genome) {
+        return add(innovationIds(genome));
+    }
+
+    int add(int[] ids) {
+        int index = size++;
+        long[] keys = bucketKeys(ids);
+        for (long key : keys) {
+            List<Integer> bucket = buckets.computeIfAbsent(key, k -> new ArrayList<>(2));
+            // Several bands of the same genome may hash to the same key
+            if (bucket.isEmpty() || bucket.getLast() != index) {
+                bucket.add(index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Genomes in the index that share at least one bucket with the genome, in the order they were added
+     */
+    public int[] candidates(Genome genome) {
+        return candidates(innovationIds(genome));
+    }
+
+    int[] candidates(int[] ids) {
+        if (marks.length < size) {
+            marks = Arrays.copyOf(marks, Math.max(size, marks.length * 2));
+        }
+        query++;
+
+        int[] found = new int[size];
+        int count = 0;
+        for (long key : bucketKeys(ids)) {
+            List<Integer> bucket = buckets.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            for (int index : bucket) {
+                if (marks[index] != query) {
+                    marks[index] = query;
+                    found[count++] = index;
+                }
+            }
+        }
+        Arrays.sort(found, 0, count);
+        return Arrays.copyOf(found, count);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        buckets.clear();
+        size = 0;
+    }
+
+    /**
+     * MinHash signature of the innovation ids, one minimum per hash function
+     */
+    long[] signature(int[] ids) {
+        long[] signature = new long[multipliers.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (int id : ids) {
+            for (int i = 0; i < signature.length; i++) {
+                long hash = mix(id * multipliers[i] + offsets[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private long[] bucketKeys(int[] ids) {
+        long[] signature = signature(ids);
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            // The band is part of the key, so equal values in different bands don't collide
+            long key = band;
+            for (int row = 0; row < rows; row++) {
+                key = mix(key * 31 + signature[band * rows + row]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Unique connection innovation ids of the genome, ascending
+     */
+    private static int[] innovationIds(Genome genome) {
+        List<ConnectionGene> connections = genome.getSortedConnectionView();
+        int[] ids = new int[connections.size()];
+        int count = 0;
+        for (ConnectionGene connection : connections) {
+            int id = connection.getInnovationId();
+            // Innovation ids start at 1
+            if (id >= 1) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB53A9C8B3EC5L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
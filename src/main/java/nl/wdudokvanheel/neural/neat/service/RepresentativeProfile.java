@@ -0,0 +1,57 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+
+import java.util.List;
+
+/**
+ * Connections of a species representative prepared for comparisons: innovation ids in ascending order with their
+ * weights and enabled flags in parallel arrays. Profiles are immutable, so one profile can be shared by every
+ * generation in which a genome with the same genes represents a species.
+ */
+final class RepresentativeProfile {
+    final long fingerprint;
+    // Only the first connection of each innovation id, ids below 1 are left out like in GenomeComparison
+    final int[] ids;
+    final double[] weights;
+    final long[] enabled;
+    final int maxId;
+    // Number of connections of the genome, including the ones left out
+    final int size;
+
+    private RepresentativeProfile(long fingerprint, int[] ids, double[] weights, long[] enabled, int size) {
+        this.fingerprint = fingerprint;
+        this.ids = ids;
+        this.weights = weights;
+        this.enabled = enabled;
+        this.maxId = ids.length == 0 ? 0 : ids[ids.length - 1];
+        this.size = size;
+    }
+
+    static RepresentativeProfile of(Genome genome) {
+        List<ConnectionGene> sorted = genome.getSortedConnectionView();
+        int skip = 0;
+        while (skip < sorted.size() && sorted.get(skip).getInnovationId() < 1) {
+            skip++;
+        }
+
+        int count = sorted.size() - skip;
+        int[] ids = new int[count];
+        double[] weights = new double[count];
+        long[] enabled = new long[(count + 63) >>> 6];
+        for (int i = 0; i < count; i++) {
+            ConnectionGene connection = sorted.get(skip + i);
+            ids[i] = connection.getInnovationId();
+            weights[i] = connection.getWeight();
+            if (connection.isEnabled()) {
+                enabled[i >>> 6] |= 1L << i;
+            }
+        }
+        return new RepresentativeProfile(genome.getFingerprint(), ids, weights, enabled, genome.getConnectionView().size());
+    }
+
+    boolean isEnabled(int index) {
+        return (enabled[index >>> 6] & (1L << index)) != 0;
+    }
+}
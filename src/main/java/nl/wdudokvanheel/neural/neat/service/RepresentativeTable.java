@@ -0,0 +1,342 @@
+package nl.wdudokvanheel.neural.neat.service;
+
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Species representatives packed into one table to compare a genome with all of them at once. The columns of the table
+ * are the innovation ids of all representatives in ascending order, every representative is a row holding the weight
+ * and state of each of its connections. A genome is mapped onto the columns once, after which its distance to each
+ * representative is a single pass over primitive arrays. Representatives are added as a {@link RepresentativeProfile},
+ * which can be kept for as long as the representative is in use, see {@link SpeciationService}.
+ * <p>
+ * The distances are exactly the same as those of a {@link GenomeComparison} of the representative with the genome. With
+ * a bound, the comparison with a representative stops early like {@link GenomeComparison#bounded}. The table is not
+ * thread safe.
+ */
+public class RepresentativeTable {
+    private static final byte ABSENT = 0;
+    private static final byte DISABLED = 1;
+    private static final byte ENABLED = 2;
+
+    //C1, C2 and C3 in the NEAT paper, see GenomeComparison
+    private final double excessCoefficient;
+    private final double disjointCoefficient;
+    private final double weightCoefficient;
+
+    private final List<RepresentativeProfile> representatives = new ArrayList<>();
+    // Set when a representative has innovation ids that are not a column yet
+    private boolean dirty = false;
+
+    private int[] ids = new int[0];
+    private int rows = 0;
+    private byte[] states = new byte[0];
+    private double[] weights = new double[0];
+    private int[] maxIds = new int[0];
+    private int[] sizes = new int[0];
+    // Number of connections of each representative that have a column
+    private int[] counts = new int[0];
+
+    // The genome that is compared, mapped onto the columns
+    private byte[] genomeStates = new byte[0];
+    private double[] genomeWeights = new double[0];
+    // Innovation ids of the genome that none of the representatives have, ascending
+    private int[] genomeExtraIds = new int[0];
+    private int genomeCount = 0;
+    private int genomeMaxId = 0;
+    private int genomeSize = 0;
+
+    private long comparisons = 0;
+    private long stoppedEarly = 0;
+
+    public RepresentativeTable() {
+        this(1.0, 1.0, 0.5);
+    }
+
+    public RepresentativeTable(double excessCoefficient, double disjointCoefficient, double weightCoefficient) {
+        this.excessCoefficient = excessCoefficient;
+        this.disjointCoefficient = disjointCoefficient;
+        this.weightCoefficient = weightCoefficient;
+    }
+
+    /**
+     * Add a representative as the last row of the table
+     *
+     * @return The index of the representative in the distances
+     */
+    public int add(Genome representative) {
+        return add(RepresentativeProfile.of(representative));
+    }
+
+    int add(RepresentativeProfile representative) {
+        representatives.add(representative);
+        if (!dirty && !addRow(representative)) {
+            dirty = true;
+        }
+        return representatives.size() - 1;
+    }
+
+    public int size() {
+        return representatives.size();
+    }
+
+    public void clear() {
+        representatives.clear();
+        dirty = false;
+        ids = new int[0];
+        rows = 0;
+    }
+
+    /**
+     * Distance of the genome to every representative, in the order they were added
+     */
+    public double[] distances(Genome genome) {
+        return distances(genome, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Distance of the genome to every representative, in the order they were added. Distances that are not below the
+     * bound are not calculated completely, those are a lower bound of the distance of at least the bound.
+     */
+    public double[] distances(Genome genome, double bound) {
+        load(genome);
+        double[] distances = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            distances[r] = distance(r, bound);
+        }
+        return distances;
+    }
+
+    /**
+     * Map the connections of the genome onto the columns, so it can be compared with {@link #distance(int, double)}
+     */
+    void load(Genome genome) {
+        if (dirty) {
+            rebuild();
+        }
+        genomeMaxId = prepare(genome.getSortedConnectionView());
+        genomeSize = genome.getConnectionView().size();
+    }
+
+    /**
+     * Distance of the loaded genome to a single representative, see {@link #distances(Genome, double)}
+     */
+    double distance(int row, double bound) {
+        comparisons++;
+        int columns = ids.length;
+        int extraCount = genomeExtraIds.length;
+        int base = row * columns;
+        int maxId = maxIds[row];
+        int n = Math.max(Math.max(sizes[row], genomeSize), 1);
+        boolean bounded = bound != Double.POSITIVE_INFINITY;
+        int matching = 0;
+        double totalWeightDifference = 0;
+
+        // Connections none of the representatives have never match
+        int excess = extraCount - upperBound(genomeExtraIds, maxId);
+        int disjoint = extraCount - excess;
+        int remaining = counts[row];
+        int genomeRemaining = genomeCount;
+        if (bounded) {
+            double lowest = GenomeComparison.lowerBound(excessCoefficient, disjointCoefficient, excess, disjoint, Math.abs(remaining - genomeRemaining), n);
+            if (lowest >= bound) {
+                stoppedEarly++;
+                return lowest;
+            }
+        }
+
+        for (int k = 0; k < columns; k++) {
+            byte state = states[base + k];
+            byte genomeState = genomeStates[k];
+            if (state == ABSENT && genomeState == ABSENT) {
+                continue;
+            }
+
+            if (state != ABSENT && genomeState != ABSENT) {
+                remaining--;
+                genomeRemaining--;
+                if (state == genomeState) {
+                    matching++;
+                    totalWeightDifference += Math.abs(weights[base + k] - genomeWeights[k]);
+                    continue;
+                }
+                disjoint++;
+            } else if (state != ABSENT) {
+                remaining--;
+                if (ids[k] > genomeMaxId) {
+                    excess++;
+                } else {
+                    disjoint++;
+                }
+            } else {
+                genomeRemaining--;
+                if (ids[k] > maxId) {
+                    excess++;
+                } else {
+                    disjoint++;
+                }
+            }
+
+            if (bounded) {
+                double lowest = GenomeComparison.lowerBound(excessCoefficient, disjointCoefficient, excess, disjoint, Math.abs(remaining - genomeRemaining), n);
+                if (lowest >= bound) {
+                    stoppedEarly++;
+                    return lowest;
+                }
+            }
+        }
+
+        double averageWeightDifference = matching == 0 ? 0 : totalWeightDifference / matching;
+        return GenomeComparison.distance(excessCoefficient, disjointCoefficient, weightCoefficient, excess, disjoint, averageWeightDifference, n);
+    }
+
+    /**
+     * Number of distances to a representative calculated by this table
+     */
+    public long getComparisonCount() {
+        return comparisons;
+    }
+
+    /**
+     * Number of distances that stopped early because they could not end up below the bound
+     */
+    public long getStoppedEarlyCount() {
+        return stoppedEarly;
+    }
+
+    /**
+     * Map the connections of the genome onto the columns
+     *
+     * @return The highest innovation id of the genome
+     */
+    private int prepare(List<ConnectionGene> connections) {
+        int columns = ids.length;
+        if (genomeStates.length < columns) {
+            genomeStates = new byte[columns];
+            genomeWeights = new double[columns];
+        } else {
+            Arrays.fill(genomeStates, 0, columns, ABSENT);
+        }
+
+        int[] extra = new int[connections.size()];
+        int extraCount = 0;
+        genomeCount = 0;
+        int maxId = 0;
+        int k = 0;
+        for (ConnectionGene connection : connections) {
+            int id = connection.getInnovationId();
+            // Innovation ids start at 1
+            if (id < 1) {
+                continue;
+            }
+            maxId = id;
+            while (k < columns && ids[k] < id) {
+                k++;
+            }
+            if (k < columns && ids[k] == id) {
+                genomeStates[k] = connection.isEnabled() ? ENABLED : DISABLED;
+                genomeWeights[k] = connection.getWeight();
+                genomeCount++;
+            } else {
+                extra[extraCount++] = id;
+            }
+        }
+        genomeExtraIds = Arrays.copyOf(extra, extraCount);
+        return maxId;
+    }
+
+    /**
+     * Fill a new row with the representative
+     *
+     * @return False if the representative has innovation ids that are not a column, the row is not added then
+     */
+    private boolean addRow(RepresentativeProfile representative) {
+        int columns = ids.length;
+        if (states.length < (rows + 1) * columns) {
+            int capacity = Math.max(rows + 1, rows * 2) * columns;
+            states = Arrays.copyOf(states, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        if (maxIds.length <= rows) {
+            maxIds = Arrays.copyOf(maxIds, Math.max(4, rows * 2));
+            sizes = Arrays.copyOf(sizes, maxIds.length);
+            counts = Arrays.copyOf(counts, maxIds.length);
+        }
+
+        int base = rows * columns;
+        Arrays.fill(states, base, base + columns, ABSENT);
+        int[] representativeIds = representative.ids;
+        int k = 0;
+        for (int i = 0; i < representativeIds.length; i++) {
+            int id = representativeIds[i];
+            while (k < columns && ids[k] < id) {
+                k++;
+            }
+            if (k == columns || ids[k] != id) {
+                return false;
+            }
+            states[base + k] = representative.isEnabled(i) ? ENABLED : DISABLED;
+            weights[base + k] = representative.weights[i];
+        }
+
+        maxIds[rows] = representative.maxId;
+        counts[rows] = representativeIds.length;
+        sizes[rows] = representative.size;
+        rows++;
+        return true;
+    }
+
+    /**
+     * Rebuild the table with the innovation ids of all representatives as columns
+     */
+    private void rebuild() {
+        int count = 0;
+        for (RepresentativeProfile representative : representatives) {
+            count += representative.ids.length;
+        }
+        int[] all = new int[count];
+        int offset = 0;
+        for (RepresentativeProfile representative : representatives) {
+            System.arraycopy(representative.ids, 0, all, offset, representative.ids.length);
+            offset += representative.ids.length;
+        }
+        Arrays.sort(all);
+
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || all[unique - 1] != all[i]) {
+                all[unique++] = all[i];
+            }
+        }
+        ids = Arrays.copyOf(all, unique);
+
+        rows = 0;
+        states = new byte[representatives.size() * unique];
+        weights = new double[representatives.size() * unique];
+        for (RepresentativeProfile representative : representatives) {
+            addRow(representative);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Number of values in the sorted array that are less than or equal to the key
+     */
+    private static int upperBound(int[] values, int key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
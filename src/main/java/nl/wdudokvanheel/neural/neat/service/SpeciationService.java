@@ -4,10 +4,13 @@ import nl.wdudokvanheel.neural.neat.CreatureInterface;
 import nl.wdudokvanheel.neural.neat.NeatConfiguration;
 import nl.wdudokvanheel.neural.neat.NeatContext;
 import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 public class SpeciationService<Creature extends CreatureInterface<Creature>> {
@@ -16,14 +19,134 @@ public class SpeciationService<Creature extends CreatureInterface<Creature>> {
     private Random random = new Random();
     private NeatConfiguration configuration;
 
+    // Distances are only calculated until they can't end up below the species threshold
+    private long comparisons = 0;
+    private long stoppedEarly = 0;
+
+    // Prepared connections of the representatives of the last speciation, by genome fingerprint. A champion usually
+    // represents its species for several generations through clones of its genome, which have the same fingerprint.
+    private Map<Long, RepresentativeProfile> profiles = new HashMap<>();
+    private long profileHits = 0;
+    private long profileMisses = 0;
+
+    private HashingReport lastHashingReport = null;
+    private WarmStartReport lastWarmStartReport = null;
+
     public SpeciationService(NeatConfiguration configuration) {
         this.configuration = configuration;
     }
 
+    /**
+     * Prepared connections of a representative, reused from earlier speciations if a genome with the same genes was a
+     * representative before
+     */
+    private RepresentativeProfile getProfile(Genome genome, Map<Long, RepresentativeProfile> used) {
+        long fingerprint = genome.getFingerprint();
+        RepresentativeProfile profile = used.get(fingerprint);
+        if (profile == null) {
+            profile = profiles.get(fingerprint);
+        }
+        if (profile == null) {
+            profileMisses++;
+            profile = RepresentativeProfile.of(genome);
+        } else {
+            profileHits++;
+        }
+        used.put(fingerprint, profile);
+        return profile;
+    }
+
     public List<Species<Creature>> speciate(List<Creature> creatures, List<Species<Creature>> species) {
+        // Compare each creature with all representatives at once, new species are added to the table as they appear
+        RepresentativeTable table = new RepresentativeTable();
+        Map<Species<Creature>, Integer> rows = new IdentityHashMap<>();
+        Map<Long, RepresentativeProfile> used = new HashMap<>();
+        // The hash index numbers representatives in the same order as the table
+        MinHashIndex index = configuration.speciationHashing ? new MinHashIndex(configuration.speciationHashBands, configuration.speciationHashRows) : null;
+        for (Species<Creature> existing : species) {
+            RepresentativeProfile profile = getProfile(existing.getRepresentative().getGenome(), used);
+            rows.put(existing, table.add(profile));
+            if (index != null) {
+                index.add(profile.ids);
+            }
+        }
+
+        // Successors of the species of the previous generation keep their id
+        Map<Integer, Species<Creature>> successors = new HashMap<>();
+        if (configuration.speciationWarmStart) {
+            species.forEach(existing -> successors.put(existing.id, existing));
+        }
+
+        int hinted = 0;
+        int warmStarts = 0;
+        int hashed = 0;
+        long candidates = 0;
+        int candidateMatches = 0;
+        int fallbackMatches = 0;
+        ToDoubleFunction<Species<Creature>> distance = existing -> table.distance(rows.get(existing), configuration.speciesThreshold);
         for (Creature creature : creatures) {
-            addCreatureToSpecies(species, creature);
+            table.load(creature.getGenome());
+
+            // Try the species of the parent first, most offspring still belong to it
+            Species<Creature> parent = successors.get(creature.getGenome().getParentSpeciesId());
+            if (parent != null) {
+                hinted++;
+                if (distance.applyAsDouble(parent) < configuration.speciesThreshold) {
+                    warmStarts++;
+                    addCreatureToSpecies(species, creature, parent);
+                    continue;
+                }
+            }
+            Predicate<Species<Creature>> untested = existing -> existing != parent;
+
+            // Shuffle species so the first ones don't automatically fill up
+            Collections.shuffle(species, random);
+
+            Species<Creature> match;
+            if (index == null) {
+                match = findSpecies(species, distance, untested);
+            } else {
+                // Representatives that share a bucket first, the others only if none of those is compatible
+                hashed++;
+                boolean[] candidate = new boolean[table.size()];
+                for (int row : index.candidates(creature.getGenome())) {
+                    candidate[row] = true;
+                    candidates++;
+                }
+                match = findSpecies(species, distance, untested.and(existing -> candidate[rows.get(existing)]));
+                if (match != null) {
+                    candidateMatches++;
+                } else {
+                    match = findSpecies(species, distance, untested.and(existing -> !candidate[rows.get(existing)]));
+                    if (match != null) {
+                        fallbackMatches++;
+                    }
+                }
+            }
+
+            Species<Creature> added = addCreatureToSpecies(species, creature, match);
+            if (!rows.containsKey(added)) {
+                RepresentativeProfile profile = getProfile(creature.getGenome(), used);
+                rows.put(added, table.add(profile));
+                if (index != null) {
+                    index.add(profile.ids);
+                }
+            }
+        }
+        // Profiles of representatives that are no longer in use are dropped
+        profiles = used;
+        comparisons += table.getComparisonCount();
+        stoppedEarly += table.getStoppedEarlyCount();
+        logger.debug("Speciation compared {} genomes with representatives, {} stopped early, {} representative profiles reused", table.getComparisonCount(), table.getStoppedEarlyCount(), profileHits);
+        if (index != null) {
+            lastHashingReport = new HashingReport(hashed, candidates, candidateMatches, fallbackMatches);
+            logger.debug("{}", lastHashingReport);
         }
+        if (configuration.speciationWarmStart) {
+            lastWarmStartReport = new WarmStartReport(creatures.size(), hinted, warmStarts);
+            logger.debug("{}", lastWarmStartReport);
+        }
+
         eliminateEmptySpecies(species);
         logger.trace("Speciated {} creatures into {} species", creatures.size(), species.size());
         return species;
@@ -75,7 +198,9 @@ public class SpeciationService<Creature extends CreatureInterface<Creature>> {
         ArrayList<Creature> creatures = new ArrayList<>();
         for (Species<Creature> iter : context.species) {
             if (iter.size() >= context.configuration.minimumSpeciesSizeForChampionCopy) {
-                Creature champion = context.creatureFactory.createNewCreature(iter.getChampion().getGenome().clone());
+                Genome genome = context.creaturePool.cloneGenome(iter.getChampion().getGenome());
+                genome.setParentSpeciesId(iter.id);
+                Creature champion = context.creaturePool.createCreature(context.creatureFactory, genome);
                 creatures.add(champion);
             }
         }
@@ -115,25 +240,116 @@ public class SpeciationService<Creature extends CreatureInterface<Creature>> {
         }
     }
 
-    private void addCreatureToSpecies(List<Species<Creature>> species, Creature creature) {
+    /**
+     * Add a creature to the first species it is compatible with, or to a new species if there is none
+     */
+    public void addCreatureToSpecies(List<Species<Creature>> species, Creature creature) {
+        ToDoubleFunction<Species<Creature>> distance = existing -> {
+            Genome representative = existing.getRepresentative().getGenome();
+            GenomeComparison comparison = configuration.innovationBitsets
+                    ? GenomeComparison.bitsets(representative, creature.getGenome())
+                    : GenomeComparison.bounded(representative, creature.getGenome(), configuration.speciesThreshold);
+            comparisons++;
+            if (comparison.isStoppedEarly()) {
+                stoppedEarly++;
+            }
+            return comparison.getDistance();
+        };
+
+        // Try the species of the parent first, species keep their id while creatures are replaced one at a time
+        Species<Creature> parent = null;
+        if (configuration.speciationWarmStart) {
+            int parentId = creature.getGenome().getParentSpeciesId();
+            parent = species.stream().filter(existing -> existing.id == parentId).findFirst().orElse(null);
+            if (parent != null && distance.applyAsDouble(parent) < configuration.speciesThreshold) {
+                addCreatureToSpecies(species, creature, parent);
+                return;
+            }
+        }
+        Species<Creature> tested = parent;
+
         // Shuffle species so the first ones don't automatically fill up
         Collections.shuffle(species, random);
-        //Try to add the creature to any existing species
+        Species<Creature> match = findSpecies(species, distance, existing -> existing != tested);
+        addCreatureToSpecies(species, creature, match);
+    }
+
+    /**
+     * Recall of the MinHash candidates in the last speciation, only set when {@link NeatConfiguration#speciationHashing}
+     * is enabled
+     */
+    public HashingReport getLastHashingReport() {
+        return lastHashingReport;
+    }
+
+    /**
+     * Creatures that were added to the species of their parent in the last speciation, only set when
+     * {@link NeatConfiguration#speciationWarmStart} is enabled
+     */
+    public WarmStartReport getLastWarmStartReport() {
+        return lastWarmStartReport;
+    }
+
+    /**
+     * Number of representatives that reused the prepared connections of an earlier representative with the same genes
+     */
+    public long getProfileHitCount() {
+        return profileHits;
+    }
+
+    /**
+     * Number of representatives whose connections had to be prepared for comparison
+     */
+    public long getProfileMissCount() {
+        return profileMisses;
+    }
+
+    /**
+     * Total number of distances between a creature and a species representative calculated by this service
+     */
+    public long getComparisonCount() {
+        return comparisons;
+    }
+
+    /**
+     * Number of distances that stopped as soon as it was clear the creature did not fit the species
+     */
+    public long getStoppedEarlyCount() {
+        return stoppedEarly;
+    }
+
+    /**
+     * @param distance Distance of the creature's genome to the representative of a species
+     * @param filter   Species to consider
+     * @return The first species in the list the creature is compatible with, or null if there is none
+     */
+    private Species<Creature> findSpecies(List<Species<Creature>> species, ToDoubleFunction<Species<Creature>> distance, Predicate<Species<Creature>> filter) {
         for (Species<Creature> existingSpecies : species) {
             //Compare the creature's genome with the representative of the species
-            double distance = new GenomeComparison(existingSpecies.getRepresentative().getGenome(), creature.getGenome()).getDistance();
-            if (distance < configuration.speciesThreshold) {
-                logger.trace("Adding creature to species");
-                existingSpecies.addCreature(creature);
-                creature.setSpecies(existingSpecies);
-                return;
+            if (filter.test(existingSpecies) && distance.applyAsDouble(existingSpecies) < configuration.speciesThreshold) {
+                return existingSpecies;
             }
         }
+        return null;
+    }
+
+    /**
+     * @param match The species the creature is compatible with, or null to create a new species
+     * @return The species the creature was added to
+     */
+    private Species<Creature> addCreatureToSpecies(List<Species<Creature>> species, Creature creature, Species<Creature> match) {
+        if (match != null) {
+            logger.trace("Adding creature to species");
+            match.addCreature(creature);
+            creature.setSpecies(match);
+            return match;
+        }
 
         //Creature did not match with any existing species, create a new one
         Species<Creature> newSpecies = new Species<>(creature);
         species.add(newSpecies);
         logger.trace("Creating new species for creature");
+        return newSpecies;
     }
 
     public void adjustThreshold(List<Species<Creature>> species) {
@@ -148,4 +364,48 @@ public class SpeciationService<Creature extends CreatureInterface<Creature>> {
                 Math.min(configuration.speciesThreshold, configuration.maxSpeciesThreshold)
         );
     }
+
+    /**
+     * Every creature is compatible with a candidate, with a representative that was only compared in the fallback, or
+     * with none at all. The recall is the share of the creatures that fit an existing species for which the candidates
+     * contained one, which is exactly what an exhaustive comparison would have found.
+     *
+     * @param creatures        Creatures that were compared with their candidates
+     * @param candidates       Representatives that shared a bucket with a creature, summed over all creatures
+     * @param candidateMatches Creatures added to the species of a candidate
+     * @param fallbackMatches  Creatures that were only compatible with representatives outside their candidates
+     */
+    public record HashingReport(int creatures, long candidates, int candidateMatches, int fallbackMatches) {
+        public double getRecall() {
+            int compatible = candidateMatches + fallbackMatches;
+            return compatible == 0 ? 1 : (double) candidateMatches / compatible;
+        }
+
+        public double getAverageCandidates() {
+            return creatures == 0 ? 0 : (double) candidates / creatures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Speciation hashing: %.1f candidates per creature, recall %.1f%% (%d found by candidates, %d by fallback, %d new species)",
+                    getAverageCandidates(), getRecall() * 100, candidateMatches, fallbackMatches, creatures - candidateMatches - fallbackMatches);
+        }
+    }
+
+    /**
+     * @param creatures  Creatures that were speciated
+     * @param hinted     Creatures whose parent species has a successor in the new generation
+     * @param warmStarts Creatures that were compatible with that successor, each one a full scan of the species avoided
+     */
+    public record WarmStartReport(int creatures, int hinted, int warmStarts) {
+        public double getHitRate() {
+            return hinted == 0 ? 0 : (double) warmStarts / hinted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Speciation warm start: %d of %d creatures added to their parent's species (%.1f%%), %d full scans avoided, %d creatures without parent species",
+                    warmStarts, hinted, getHitRate() * 100, warmStarts, creatures - hinted);
+        }
+    }
 }
@@ -38,7 +38,7 @@ public class Network {
         }
 
         //Add all connections
-        for (ConnectionGene gene : genome.getConnections()) {
+        for (ConnectionGene gene : genome.getConnectionView()) {
             if (!gene.isEnabled()) {
                 continue;
             }
@@ -48,6 +48,33 @@ public class Network {
         }
     }
 
+    /**
+     * Build the network straight from the arrays of a packed genome, without creating gene objects. Connections are
+     * added in innovation id order.
+     */
+    public Network(PackedGenome genome) {
+        this();
+        for (int i = 0; i < genome.getNeuronCount(); i++) {
+            if (genome.isInputNeuron(i)) {
+                addNeuron(new InputNeuron(genome.getNeuronId(i)));
+            } else if (genome.isOutputNeuron(i)) {
+                addNeuron(new OutputNeuron(genome.getNeuronId(i), genome.getNeuronLayer(i)));
+            } else { // Hidden
+                addNeuron(new Neuron(genome.getNeuronId(i), genome.getNeuronLayer(i)));
+            }
+        }
+
+        for (int i = 0; i < genome.getConnectionCount(); i++) {
+            if (!genome.isEnabled(i)) {
+                continue;
+            }
+            // The map directly, not the overridable getter, while the network is still being constructed
+            Neuron source = neuronsById.get(genome.getSource(i));
+            Neuron target = neuronsById.get(genome.getTarget(i));
+            target.addConnection(source, genome.getWeight(i));
+        }
+    }
+
     public void setInput(double... values) {
         for (int i = 0; i < values.length && i < inputNeurons.size(); i++) {
             inputNeurons.get(i).setValue(values[i]);
@@ -8,7 +8,7 @@ import nl.wdudokvanheel.neural.neat.genome.Genome;
  * Small helper class to implement the basic requirements for the Creature interface
  */
 public class AbstractCreatureInterface<Creature extends CreatureInterface<Creature>> implements CreatureInterface<Creature> {
-    private final Genome genome;
+    private Genome genome;
     private Species<Creature> species;
     private double score;
 
@@ -21,6 +21,16 @@ public class AbstractCreatureInterface<Creature extends CreatureInterface<Creatu
         this.species = species;
     }
 
+    /**
+     * Reuse this creature for a new genome, clearing its fitness and species. Used by factories that implement
+     * {@link nl.wdudokvanheel.neural.neat.CreatureFactory#reuseCreature}.
+     */
+    public void reset(Genome genome) {
+        this.genome = genome;
+        this.species = null;
+        this.score = 0;
+    }
+
     @Override
     public Genome getGenome() {
         return genome;
@@ -42,6 +52,13 @@ public class AbstractCreatureInterface<Creature extends CreatureInterface<Creatu
 
     @Override
     public void setFitness(double fitness) {
+        if (fitness == score) {
+            return;
+        }
         this.score = fitness;
+        // The species keeps the average and fittest creature, those are outdated now
+        if (species != null) {
+            species.fitnessChanged();
+        }
     }
 }
@@ -41,7 +41,7 @@ public class Print {
             logger.debug("Connections:");
         }
 
-        for (ConnectionGene connection : genome.getConnections()) {
+        for (ConnectionGene connection : genome.getConnectionView()) {
             NeuronGene source = genome.getNeuronById(connection.getSource());
             NeuronGene destination = genome.getNeuronById(connection.getTarget());
             logger.debug("\tConnection #" + connection.getInnovationId() + " (" + (connection.isEnabled() ? "Enabled" : "Disabled") + ") " + source + " -> " + destination + " with weight of " + connection.getWeight());
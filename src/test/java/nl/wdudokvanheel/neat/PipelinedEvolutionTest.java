@@ -0,0 +1,134 @@
+package nl.wdudokvanheel.neat;
+
+import nl.wdudokvanheel.neural.neat.*;
+import nl.wdudokvanheel.neural.neat.evaluation.FitnessFunction;
+import nl.wdudokvanheel.neural.neat.evaluation.ParallelEvaluator;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.network.Network;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedEvolutionTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    private static final FitnessFunction<TestCreature> FITNESS = creature -> {
+        Network network = new Network(creature.getGenome());
+        network.setInput(1, 1);
+        return network.getOutput();
+    };
+
+    private static NeatContext<TestCreature> createContext(int population) {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = population;
+        cfg.targetSpecies = 3;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(2);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        b.addConnection(in[1], out, -0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+        return ctx;
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Every creature of the new generation is evaluated exactly once")
+    void evaluatesWholeGeneration() {
+        NeatContext<TestCreature> ctx = createContext(60);
+        AtomicInteger evaluations = new AtomicInteger();
+        FitnessFunction<TestCreature> counting = creature -> {
+            evaluations.incrementAndGet();
+            return FITNESS.evaluate(creature);
+        };
+
+        try (ParallelEvaluator<TestCreature> evaluator = new ParallelEvaluator<>(counting, 4);
+             PipelinedEvolution<TestCreature> pipeline = new PipelinedEvolution<>(counting, 4, 8)) {
+            evaluator.evaluate(ctx.creatures);
+
+            for (int generation = 1; generation <= 5; generation++) {
+                evaluations.set(0);
+                pipeline.nextGeneration(ctx);
+
+                assertEquals(generation, ctx.generation);
+                assertEquals(60, ctx.creatures.size());
+                assertEquals(60, evaluations.get());
+                for (TestCreature creature : ctx.creatures) {
+                    assertEquals(FITNESS.evaluate(creature), creature.getFitness(), 1e-12);
+                    assertNotNull(creature.getSpecies());
+                }
+            }
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("The carried over creature is only handed out for evaluation after breeding")
+    void carriesOverFittestAfterBreeding() {
+        NeatContext<TestCreature> ctx = createContext(40);
+        try (ParallelEvaluator<TestCreature> evaluator = new ParallelEvaluator<>(FITNESS, 2)) {
+            evaluator.evaluate(ctx.creatures);
+        }
+        List<TestCreature> previous = ctx.creatures;
+        TestCreature fittest = ctx.getFittestCreature();
+
+        List<TestCreature> created = new ArrayList<>();
+        NeatEvolution.nextGeneration(ctx, created::add);
+
+        assertEquals(40, created.size());
+        assertSame(fittest, created.getLast());
+        for (TestCreature creature : created.subList(0, created.size() - 1)) {
+            assertFalse(previous.contains(creature));
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Evaluation starts before reproduction has finished")
+    void overlapsReproductionAndEvaluation() {
+        NeatContext<TestCreature> ctx = createContext(40);
+        AtomicInteger evaluatedDuringBreeding = new AtomicInteger();
+        AtomicInteger created = new AtomicInteger();
+
+        try (ParallelEvaluator<TestCreature> evaluator = new ParallelEvaluator<>(FITNESS, 2)) {
+            evaluator.evaluate(ctx.creatures);
+        }
+
+        // Count the evaluations that happened before the last creature was created
+        FitnessFunction<TestCreature> slow = creature -> {
+            if (created.get() < 40) {
+                evaluatedDuringBreeding.incrementAndGet();
+            }
+            return FITNESS.evaluate(creature);
+        };
+
+        try (PipelinedEvolution<TestCreature> pipeline = new PipelinedEvolution<>(slow, 2, 4)) {
+            ctx.creatureFactory = genome -> {
+                created.incrementAndGet();
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new TestCreature(genome);
+            };
+            pipeline.nextGeneration(ctx);
+        }
+
+        assertTrue(evaluatedDuringBreeding.get() > 0, "evaluation waited for reproduction");
+    }
+}
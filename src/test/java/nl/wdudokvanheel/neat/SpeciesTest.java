@@ -0,0 +1,136 @@
+package nl.wdudokvanheel.neat;
+
+import nl.wdudokvanheel.neural.neat.CreatureInterface;
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpeciesTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(double fitness) {
+            super(new Genome());
+            setFitness(fitness);
+        }
+    }
+
+    // Doesn't report fitness changes to its species
+    private static class PlainCreature implements CreatureInterface<PlainCreature> {
+        private Species<PlainCreature> species;
+        private double fitness;
+
+        @Override
+        public Genome getGenome() {
+            return null;
+        }
+
+        @Override
+        public Species<PlainCreature> getSpecies() {
+            return species;
+        }
+
+        @Override
+        public void setSpecies(Species<PlainCreature> species) {
+            this.species = species;
+        }
+
+        @Override
+        public double getFitness() {
+            return fitness;
+        }
+
+        @Override
+        public void setFitness(double fitness) {
+            this.fitness = fitness;
+        }
+    }
+
+    @Test
+    @DisplayName("Cached fitness and champion match a scan of the creatures")
+    void cachedStatistics() {
+        Random random = new Random(5);
+        TestCreature rep = new TestCreature(2);
+        Species<TestCreature> species = new Species<>(rep);
+        assertStatistics(species);
+
+        for (int step = 0; step < 500; step++) {
+            List<TestCreature> creatures = species.getCreatures();
+            switch (random.nextInt(6)) {
+                case 0, 1 -> {
+                    TestCreature creature = new TestCreature(random.nextInt(5));
+                    creature.setSpecies(species);
+                    species.addCreature(creature);
+                }
+                case 2 -> creatures.get(random.nextInt(creatures.size())).setFitness(random.nextInt(5));
+                case 3 -> {
+                    if (creatures.size() > 1) {
+                        creatures.remove(random.nextInt(creatures.size()));
+                    }
+                }
+                case 4 -> creatures.sort(Comparator.comparingDouble(c -> -c.getFitness()));
+                default -> {
+                    if (creatures.size() > 3) {
+                        creatures.subList(1, 3).clear();
+                    }
+                }
+            }
+            assertStatistics(species);
+        }
+
+        species.getCreatures().clear();
+        assertNull(species.getChampion());
+        assertEquals(0, species.getFitness());
+        assertEquals(0, species.getMaxFitness());
+    }
+
+    @Test
+    @DisplayName("The first of equally fit creatures is the champion")
+    void championTies() {
+        TestCreature first = new TestCreature(3);
+        TestCreature second = new TestCreature(3);
+        Species<TestCreature> species = new Species<>(first);
+        species.getChampion();
+        species.addCreature(second);
+        assertSame(first, species.getChampion());
+
+        species.getCreatures().sort(Comparator.comparing(c -> c == first));
+        assertSame(second, species.getChampion());
+        assertEquals(3, species.getFitness());
+    }
+
+    @Test
+    @DisplayName("Fitness set without notification is picked up after fitnessChanged")
+    void unreportedFitness() {
+        PlainCreature creature = new PlainCreature();
+        creature.setFitness(1);
+        Species<PlainCreature> species = new Species<>(creature);
+        assertEquals(1, species.getFitness());
+
+        creature.setFitness(4);
+        species.fitnessChanged();
+        assertEquals(4, species.getFitness());
+        assertEquals(4, species.getMaxFitness());
+    }
+
+    private static void assertStatistics(Species<TestCreature> species) {
+        List<TestCreature> creatures = species.getCreatures();
+        TestCreature champion = null;
+        double total = 0;
+        for (TestCreature creature : creatures) {
+            total += creature.getFitness();
+            if (champion == null || creature.getFitness() > champion.getFitness()) {
+                champion = creature;
+            }
+        }
+        assertSame(champion, species.getChampion());
+        assertEquals(total == 0 ? 0 : total / creatures.size(), species.getFitness());
+        assertEquals(species.getChampion().getFitness(), species.getMaxFitness());
+    }
+}
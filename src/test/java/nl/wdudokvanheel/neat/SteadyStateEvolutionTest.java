@@ -0,0 +1,99 @@
+package nl.wdudokvanheel.neat;
+
+import nl.wdudokvanheel.neural.neat.*;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.network.Network;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SteadyStateEvolutionTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    private static NeatContext<TestCreature> createContext(int population) {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = population;
+        cfg.targetSpecies = 4;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(2);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.0);
+        b.addConnection(in[1], out, 0.0);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+        return ctx;
+    }
+
+    private static double fitness(TestCreature creature) {
+        Network network = new Network(creature.getGenome());
+        network.setInput(1, 1);
+        return network.getOutput();
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Population size stays constant while creatures are replaced one by one")
+    void replacesCreatures() {
+        NeatContext<TestCreature> ctx = createContext(40);
+        SteadyStateEvolution<TestCreature> evolution = new SteadyStateEvolution<>(ctx, SteadyStateEvolutionTest::fitness, 4);
+
+        evolution.run(400);
+
+        assertEquals(400, evolution.getEvaluations());
+        assertEquals(360, evolution.getReplacements());
+        assertEquals(40, ctx.creatures.size());
+        assertEquals(10, ctx.generation);
+
+        // Every creature is evaluated and part of exactly one living species
+        int speciated = 0;
+        for (Species<TestCreature> species : ctx.species) {
+            assertTrue(species.size() > 0, "empty species left behind");
+            speciated += species.size();
+        }
+        assertEquals(40, speciated);
+        for (TestCreature creature : ctx.creatures) {
+            assertEquals(fitness(creature), creature.getFitness(), 1e-12);
+            assertTrue(ctx.species.contains(creature.getSpecies()));
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Workers never run more creatures than threads and never evaluate a creature twice")
+    void boundedConcurrency() {
+        NeatContext<TestCreature> ctx = createContext(30);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Set<TestCreature> seen = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+        SteadyStateEvolution<TestCreature> evolution = new SteadyStateEvolution<>(ctx, creature -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            assertTrue(seen.add(creature), "creature evaluated twice");
+            double fitness = fitness(creature);
+            running.decrementAndGet();
+            return fitness;
+        }, 3);
+
+        evolution.run(30);
+        assertEquals(0, evolution.getReplacements());
+        evolution.run(600);
+
+        assertTrue(peak.get() <= 3);
+        assertEquals(630, evolution.getEvaluations());
+        assertEquals(630, seen.size());
+    }
+}
@@ -0,0 +1,223 @@
+package nl.wdudokvanheel.neat.distributed;
+
+import nl.wdudokvanheel.neural.neat.distributed.DistributedEvaluator;
+import nl.wdudokvanheel.neural.neat.distributed.EvaluationWorker;
+import nl.wdudokvanheel.neural.neat.distributed.NetworkFitnessFunction;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.InnovationService;
+import nl.wdudokvanheel.neural.network.Network;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a coordinator and its workers on localhost in the same JVM.
+ */
+class DistributedEvaluatorTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) {
+            super(g);
+        }
+    }
+
+    private static final NetworkFitnessFunction OUTPUT = network -> {
+        network.setInput(1, 0.5);
+        return network.getOutput();
+    };
+
+    private static List<TestCreature> population(int size) {
+        InnovationService innovation = new InnovationService();
+        List<TestCreature> creatures = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            GenomeBuilder builder = new GenomeBuilder(innovation);
+            InputNeuronGene[] inputs = builder.addInputNeurons(2);
+            OutputNeuronGene output = builder.addOutputNeuron(0);
+            builder.addConnection(inputs[0], output, i * 0.1 - 2);
+            builder.addConnection(inputs[1], output, 1 - i * 0.05);
+            creatures.add(new TestCreature(builder.getGenome()));
+        }
+        return creatures;
+    }
+
+    private static Thread start(EvaluationWorker worker) {
+        Thread thread = new Thread(worker);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Fitness computed by workers matches local evaluation")
+    void evaluatesOnWorkers() throws Exception {
+        try (DistributedEvaluator<TestCreature> evaluator = new DistributedEvaluator<>(0, "output");
+             EvaluationWorker a = new EvaluationWorker("localhost", evaluator.getPort(), 2).register("output", OUTPUT);
+             EvaluationWorker b = new EvaluationWorker("localhost", evaluator.getPort(), 3).register("output", OUTPUT)) {
+            start(a);
+            start(b);
+            assertTrue(evaluator.awaitWorkers(2, Duration.ofSeconds(10)));
+
+            for (int generation = 0; generation < 3; generation++) {
+                List<TestCreature> creatures = population(60);
+                evaluator.evaluate(creatures);
+
+                for (TestCreature creature : creatures) {
+                    double expected = OUTPUT.evaluate(new Network(creature.getGenome()));
+                    assertEquals(expected, creature.getFitness(), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Tasks of a worker that dies are reassigned")
+    void reassignsTasksOfDeadWorker() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch never = new CountDownLatch(1);
+        try (DistributedEvaluator<TestCreature> evaluator = new DistributedEvaluator<>(0, "output");
+             EvaluationWorker healthy = new EvaluationWorker("localhost", evaluator.getPort(), 1).register("output", OUTPUT)) {
+            EvaluationWorker[] dying = new EvaluationWorker[1];
+            dying[0] = new EvaluationWorker("localhost", evaluator.getPort(), 4).register("output", network -> {
+                // Hold every task without reporting it, disconnect once all slots are busy
+                if (started.incrementAndGet() == 4) {
+                    dying[0].close();
+                }
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 0;
+            });
+
+            // The dying worker connects first, so it is handed tasks first. Its oldest task is never stolen, so at
+            // least that one has to be reassigned.
+            start(dying[0]);
+            assertTrue(evaluator.awaitWorkers(1, Duration.ofSeconds(10)));
+            start(healthy);
+            assertTrue(evaluator.awaitWorkers(2, Duration.ofSeconds(10)));
+
+            List<TestCreature> creatures = population(40);
+            evaluator.evaluate(creatures);
+
+            for (TestCreature creature : creatures) {
+                double expected = OUTPUT.evaluate(new Network(creature.getGenome()));
+                assertEquals(expected, creature.getFitness(), 1e-12);
+            }
+            assertTrue(evaluator.getReassignedTasks() > 0);
+            assertEquals(1, evaluator.getWorkerCount());
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("A fitness function that fails on a worker fails the evaluation")
+    void failsWhenWorkerFails() throws Exception {
+        try (DistributedEvaluator<TestCreature> evaluator = new DistributedEvaluator<>(0, "output");
+             EvaluationWorker worker = new EvaluationWorker("localhost", evaluator.getPort(), 2).register("output", network -> {
+                 throw new IllegalArgumentException("Broken fitness function");
+             })) {
+            start(worker);
+            assertTrue(evaluator.awaitWorkers(1, Duration.ofSeconds(10)));
+
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> evaluator.evaluate(population(10)));
+            assertTrue(e.getCause().getMessage().contains("Broken fitness function"));
+            // Leftover tasks of the failed evaluation don't end up in the next one
+            assertThrows(IllegalStateException.class, () -> evaluator.evaluate(population(3)));
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Errors thrown by the fitness function are reported, however long their message")
+    void reportsErrors() throws Exception {
+        try (DistributedEvaluator<TestCreature> evaluator = new DistributedEvaluator<>(0, "output");
+             EvaluationWorker worker = new EvaluationWorker("localhost", evaluator.getPort(), 2).register("output", network -> {
+                 throw new AssertionError("x".repeat(100_000));
+             })) {
+            start(worker);
+            assertTrue(evaluator.awaitWorkers(1, Duration.ofSeconds(10)));
+
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> evaluator.evaluate(population(4)));
+            assertTrue(e.getCause().getMessage().contains("AssertionError"));
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("A worker that doesn't answer within the task timeout is disconnected")
+    void disconnectsHungWorker() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        try (DistributedEvaluator<TestCreature> evaluator = new DistributedEvaluator<>(0, "output");
+             EvaluationWorker hung = new EvaluationWorker("localhost", evaluator.getPort(), 2).register("output", network -> {
+                 try {
+                     never.await();
+                 } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                 }
+                 return 0;
+             });
+             EvaluationWorker healthy = new EvaluationWorker("localhost", evaluator.getPort(), 1).register("output", OUTPUT)) {
+            evaluator.setTaskTimeout(Duration.ofMillis(200));
+            start(hung);
+            assertTrue(evaluator.awaitWorkers(1, Duration.ofSeconds(10)));
+            start(healthy);
+            assertTrue(evaluator.awaitWorkers(2, Duration.ofSeconds(10)));
+
+            List<TestCreature> creatures = population(10);
+            evaluator.evaluate(creatures);
+
+            for (TestCreature creature : creatures) {
+                double expected = OUTPUT.evaluate(new Network(creature.getGenome()));
+                assertEquals(expected, creature.getFitness(), 1e-12);
+            }
+            assertTrue(evaluator.getReassignedTasks() > 0);
+            assertEquals(1, evaluator.getWorkerCount());
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Idle workers steal queued tasks from a slow worker")
+    void stealsFromSlowWorker() throws Exception {
+        NetworkFitnessFunction slow = network -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return OUTPUT.evaluate(network);
+        };
+
+        try (DistributedEvaluator<TestCreature> evaluator = new DistributedEvaluator<>(0, "output");
+             EvaluationWorker slowWorker = new EvaluationWorker("localhost", evaluator.getPort(), 4).register("output", slow);
+             EvaluationWorker fastWorker = new EvaluationWorker("localhost", evaluator.getPort(), 1).register("output", OUTPUT)) {
+            start(slowWorker);
+            assertTrue(evaluator.awaitWorkers(1, Duration.ofSeconds(10)));
+            start(fastWorker);
+            assertTrue(evaluator.awaitWorkers(2, Duration.ofSeconds(10)));
+
+            List<TestCreature> creatures = population(20);
+            evaluator.evaluate(creatures);
+
+            for (TestCreature creature : creatures) {
+                double expected = OUTPUT.evaluate(new Network(creature.getGenome()));
+                assertEquals(expected, creature.getFitness(), 1e-12);
+            }
+            assertTrue(evaluator.getStolenTasks() > 0);
+        }
+    }
+}
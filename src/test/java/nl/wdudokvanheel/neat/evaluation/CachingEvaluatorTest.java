@@ -0,0 +1,122 @@
+package nl.wdudokvanheel.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.evaluation.CachingEvaluator;
+import nl.wdudokvanheel.neural.neat.evaluation.Evaluator;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.GenomeFingerprint;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.InnovationService;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingEvaluatorTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    /**
+     * Evaluator that uses the weight of the first connection as fitness and records what it evaluated
+     */
+    private static class RecordingEvaluator implements Evaluator<TestCreature> {
+        final List<TestCreature> evaluated = new ArrayList<>();
+
+        @Override
+        public void evaluate(List<TestCreature> creatures) {
+            evaluated.addAll(creatures);
+            creatures.forEach(c -> c.setFitness(c.getGenome().getConnections().getFirst().getWeight()));
+        }
+    }
+
+    private final InnovationService innovation = new InnovationService();
+
+    private TestCreature creature(double weight) {
+        GenomeBuilder b = new GenomeBuilder(innovation);
+        InputNeuronGene in = b.addInputNeuron(0);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in, out, weight);
+        return new TestCreature(b.getGenome());
+    }
+
+    @Test
+    @DisplayName("Fingerprint changes with weights and enabled flags, not with gene order")
+    void fingerprint() {
+        Genome a = creature(1.0).getGenome();
+        Genome b = a.clone();
+        assertEquals(GenomeFingerprint.of(a), GenomeFingerprint.of(b));
+
+        b.getConnections().getFirst().setWeight(1.0000001);
+        assertNotEquals(GenomeFingerprint.of(a), GenomeFingerprint.of(b));
+
+        Genome c = a.clone();
+        c.getConnections().getFirst().setEnabled(false);
+        assertNotEquals(GenomeFingerprint.of(a), GenomeFingerprint.of(c));
+
+        Genome reversed = new Genome();
+        a.getNeurons().reversed().forEach(n -> reversed.addNeuron(n.clone()));
+        a.getConnections().forEach(cn -> reversed.addConnection(cn.clone()));
+        assertEquals(GenomeFingerprint.of(a), GenomeFingerprint.of(reversed));
+    }
+
+    @Test
+    @DisplayName("Genomes seen in an earlier generation are not evaluated again")
+    void crossGenerationHits() {
+        RecordingEvaluator inner = new RecordingEvaluator();
+        CachingEvaluator<TestCreature> cache = new CachingEvaluator<>(inner, 100);
+
+        TestCreature champion = creature(3.0);
+        cache.evaluate(List.of(champion, creature(1.0)));
+        assertEquals(2, inner.evaluated.size());
+
+        TestCreature clone = new TestCreature(champion.getGenome().clone());
+        cache.evaluate(List.of(clone, creature(2.0)));
+
+        assertEquals(3, inner.evaluated.size());
+        assertEquals(3.0, clone.getFitness());
+        assertEquals(1, cache.getLastStatistics().hits());
+        assertEquals(0.5, cache.getLastStatistics().getHitRate(), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Identical genomes within one generation are evaluated once")
+    void duplicatesWithinGeneration() {
+        RecordingEvaluator inner = new RecordingEvaluator();
+        CachingEvaluator<TestCreature> cache = new CachingEvaluator<>(inner, 100);
+
+        TestCreature a = creature(0.5);
+        TestCreature b = new TestCreature(a.getGenome().clone());
+        TestCreature c = new TestCreature(a.getGenome().clone());
+        cache.evaluate(List.of(a, b, c, creature(0.7)));
+
+        assertEquals(2, inner.evaluated.size());
+        assertEquals(0.5, b.getFitness());
+        assertEquals(0.5, c.getFitness());
+        assertEquals(2, cache.getLastStatistics().duplicates());
+    }
+
+    @Test
+    @DisplayName("Least recently used entries are evicted beyond the size limit")
+    void eviction() {
+        RecordingEvaluator inner = new RecordingEvaluator();
+        CachingEvaluator<TestCreature> cache = new CachingEvaluator<>(inner, 2);
+
+        TestCreature first = creature(1.0);
+        cache.evaluate(List.of(first));
+        cache.evaluate(List.of(creature(2.0)));
+        cache.evaluate(List.of(creature(3.0)));
+
+        assertEquals(1, cache.getLastStatistics().evictions());
+        assertEquals(2, cache.getLastStatistics().entries());
+
+        cache.evaluate(List.of(new TestCreature(first.getGenome().clone())));
+        assertEquals(0, cache.getLastStatistics().hits(), "evicted genome should be evaluated again");
+        assertEquals(4, inner.evaluated.size());
+    }
+}
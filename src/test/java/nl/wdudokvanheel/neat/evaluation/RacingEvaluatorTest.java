@@ -0,0 +1,129 @@
+package nl.wdudokvanheel.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.evaluation.RacingEvaluator;
+import nl.wdudokvanheel.neural.neat.evaluation.RacingFitnessFunction;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.service.SpeciationService;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RacingEvaluatorTest {
+    private static final int STEPS = 100;
+
+    /**
+     * Creature that earns a fixed reward for every simulation step
+     */
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        final double reward;
+
+        TestCreature(double reward) {
+            super(new Genome());
+            this.reward = reward;
+        }
+    }
+
+    private static RacingFitnessFunction<TestCreature> episode(AtomicInteger steps) {
+        return (creature, progress) -> {
+            double total = 0;
+            for (int step = 1; step <= STEPS; step++) {
+                steps.incrementAndGet();
+                total += creature.reward;
+                // Rewards are at most 1 per step
+                if (!progress.report(total, total + (STEPS - step))) {
+                    break;
+                }
+            }
+            return total;
+        };
+    }
+
+    private static List<TestCreature> species(double... rewards) {
+        List<TestCreature> creatures = new ArrayList<>();
+        Species<TestCreature> species = null;
+        for (double reward : rewards) {
+            TestCreature creature = new TestCreature(reward);
+            if (species == null) {
+                species = new Species<>(creature);
+            } else {
+                species.addCreature(creature);
+                creature.setSpecies(species);
+            }
+            creatures.add(creature);
+        }
+        return creatures;
+    }
+
+    @Test
+    @DisplayName("Hopeless creatures are stopped and still ranked below every survivor")
+    void stopsHopelessCreatures() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.bottomElimination = 0.5;
+
+        // Best creatures first, so the cutoff is known before the weak ones run
+        List<TestCreature> creatures = species(1.0, 0.9, 0.8, 0.1, 0.05, 0.0);
+        AtomicInteger steps = new AtomicInteger();
+
+        try (RacingEvaluator<TestCreature> evaluator = new RacingEvaluator<>(episode(steps), cfg, 1)) {
+            evaluator.evaluate(creatures);
+            assertEquals(3, evaluator.getLastStopped());
+        }
+
+        assertTrue(steps.get() < creatures.size() * STEPS, "no evaluation was stopped early");
+        assertEquals(100.0, creatures.get(0).getFitness(), 1e-9);
+        assertEquals(90.0, creatures.get(1).getFitness(), 1e-9);
+        assertEquals(80.0, creatures.get(2).getFitness(), 1e-9);
+
+        // Elimination removes the same creatures as with a full evaluation
+        Species<TestCreature> species = creatures.getFirst().getSpecies();
+        SpeciationService<TestCreature> speciation = new SpeciationService<>(cfg);
+        speciation.sortCreatures(List.of(species));
+        speciation.eliminateLeastFitCreatures(List.of(species));
+        assertEquals(creatures.subList(0, 3), species.getCreatures());
+    }
+
+    @Test
+    @DisplayName("Without elimination every creature is fully evaluated")
+    void noEliminationNoRacing() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.bottomElimination = 0.1;
+
+        // floor(5 * 0.1) = 0 creatures are eliminated
+        List<TestCreature> creatures = species(1.0, 0.8, 0.6, 0.4, 0.2);
+        AtomicInteger steps = new AtomicInteger();
+
+        try (RacingEvaluator<TestCreature> evaluator = new RacingEvaluator<>(episode(steps), cfg, 2)) {
+            evaluator.evaluate(creatures);
+            assertEquals(0, evaluator.getLastStopped());
+        }
+
+        assertEquals(creatures.size() * STEPS, steps.get());
+        assertEquals(20.0, creatures.getLast().getFitness(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Species that eliminate every creature are evaluated without racing")
+    void everythingEliminated() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.bottomElimination = 1.0;
+
+        List<TestCreature> creatures = species(1.0, 0.5, 0.0);
+        AtomicInteger steps = new AtomicInteger();
+
+        try (RacingEvaluator<TestCreature> evaluator = new RacingEvaluator<>(episode(steps), cfg, 2)) {
+            evaluator.evaluate(creatures);
+            assertEquals(0, evaluator.getLastStopped());
+        }
+
+        assertEquals(creatures.size() * STEPS, steps.get());
+        assertEquals(50.0, creatures.get(1).getFitness(), 1e-9);
+    }
+}
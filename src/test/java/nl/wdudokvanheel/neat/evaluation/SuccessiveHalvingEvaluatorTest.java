@@ -0,0 +1,126 @@
+package nl.wdudokvanheel.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.evaluation.MultiFidelityFitnessFunction;
+import nl.wdudokvanheel.neural.neat.evaluation.SuccessiveHalvingEvaluator;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuccessiveHalvingEvaluatorTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        final double quality;
+
+        TestCreature(double quality) {
+            super(new Genome());
+            this.quality = quality;
+        }
+    }
+
+    /**
+     * Each fidelity level scores on a different scale, the full evaluation is at level 2
+     */
+    private static MultiFidelityFitnessFunction<TestCreature> scaled(AtomicIntegerArray calls) {
+        return (creature, fidelity) -> {
+            calls.incrementAndGet(fidelity);
+            return creature.quality * (fidelity + 1) * 10;
+        };
+    }
+
+    private static List<TestCreature> species(List<TestCreature> all, double... qualities) {
+        Species<TestCreature> species = null;
+        for (double quality : qualities) {
+            TestCreature creature = new TestCreature(quality);
+            if (species == null) {
+                species = new Species<>(creature);
+            } else {
+                species.addCreature(creature);
+                creature.setSpecies(species);
+            }
+            all.add(creature);
+        }
+        return all;
+    }
+
+    @Test
+    @DisplayName("Only the best creatures reach the full evaluation and the ranking is preserved")
+    void promotesBestCreatures() {
+        List<TestCreature> creatures = new ArrayList<>();
+        species(creatures, 1.0, 0.9, 0.8, 0.7, 0.6, 0.5, 0.4, 0.3);
+        AtomicIntegerArray calls = new AtomicIntegerArray(3);
+
+        try (SuccessiveHalvingEvaluator<TestCreature> evaluator = new SuccessiveHalvingEvaluator<>(scaled(calls), 3, 0.5, 2)) {
+            evaluator.evaluate(creatures);
+            assertArrayEquals(new int[]{8, 4, 2}, evaluator.getLastEvaluations());
+        }
+
+        assertEquals(2, calls.get(2));
+        assertEquals(30.0, creatures.get(0).getFitness(), 1e-9);
+        assertEquals(27.0, creatures.get(1).getFitness(), 1e-9);
+
+        // Lower levels are projected onto the scale of the full evaluation
+        for (int i = 1; i < creatures.size(); i++) {
+            assertTrue(creatures.get(i).getFitness() < creatures.get(i - 1).getFitness(), "ranking changed at " + i);
+        }
+        assertEquals(24.0, creatures.get(2).getFitness(), 1e-6);
+        assertEquals(9.0, creatures.get(7).getFitness(), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Evaluating no creatures does nothing")
+    void noCreatures() {
+        AtomicIntegerArray calls = new AtomicIntegerArray(3);
+        try (SuccessiveHalvingEvaluator<TestCreature> evaluator = new SuccessiveHalvingEvaluator<>(scaled(calls), 3, 0.5, 2)) {
+            evaluator.evaluate(List.of());
+            assertArrayEquals(new int[]{0, 0, 0}, evaluator.getLastEvaluations());
+        }
+        assertEquals(0, calls.get(0));
+    }
+
+    @Test
+    @DisplayName("The best creature of every species gets a full evaluation")
+    void promotesSpeciesChampions() {
+        List<TestCreature> creatures = new ArrayList<>();
+        species(creatures, 1.0, 0.9, 0.8, 0.7);
+        species(creatures, 0.2, 0.1);
+        AtomicIntegerArray calls = new AtomicIntegerArray(3);
+
+        try (SuccessiveHalvingEvaluator<TestCreature> evaluator = new SuccessiveHalvingEvaluator<>(scaled(calls), 3, 0.25, 1)) {
+            evaluator.evaluate(creatures);
+            assertArrayEquals(new int[]{6, 3, 2}, evaluator.getLastEvaluations());
+        }
+
+        // The weak species is compared on the same scale as the strong one
+        assertEquals(30.0, creatures.get(0).getFitness(), 1e-9);
+        assertEquals(6.0, creatures.get(4).getFitness(), 1e-9);
+        assertTrue(creatures.get(5).getFitness() < creatures.get(4).getFitness());
+    }
+
+    @Test
+    @DisplayName("A weak species champion doesn't pull down the creatures that beat it")
+    void weakSpeciesChampion() {
+        List<TestCreature> creatures = new ArrayList<>();
+        species(creatures, 1.0, 0.9, 0.8, 0.7, 0.6);
+        species(creatures, 0.1);
+        AtomicIntegerArray calls = new AtomicIntegerArray(2);
+
+        try (SuccessiveHalvingEvaluator<TestCreature> evaluator = new SuccessiveHalvingEvaluator<>(scaled(calls), 2, 0.4, 1)) {
+            evaluator.evaluate(creatures);
+            assertArrayEquals(new int[]{6, 4}, evaluator.getLastEvaluations());
+        }
+
+        TestCreature weakChampion = creatures.getLast();
+        assertEquals(2.0, weakChampion.getFitness(), 1e-9);
+        assertEquals(14.0, creatures.get(3).getFitness(), 1e-9);
+        assertEquals(12.0, creatures.get(4).getFitness(), 1e-9);
+        assertTrue(creatures.get(4).getFitness() > weakChampion.getFitness());
+        assertTrue(creatures.get(3).getFitness() < creatures.get(2).getFitness());
+    }
+}
@@ -0,0 +1,107 @@
+package nl.wdudokvanheel.neat.evaluation;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.evaluation.SurrogateModel;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.InnovationService;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SurrogateModelTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    private final InnovationService innovation = new InnovationService();
+
+    private TestCreature creature(double weight) {
+        GenomeBuilder b = new GenomeBuilder(innovation);
+        InputNeuronGene in = b.addInputNeuron(0);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in, out, weight);
+        TestCreature creature = new TestCreature(b.getGenome());
+        creature.setFitness(weight);
+        return creature;
+    }
+
+    @Test
+    @DisplayName("Predictions follow the fitness of the most similar evaluated genomes")
+    void predictsFromNeighbours() {
+        SurrogateModel surrogate = new SurrogateModel(2, 100, 4);
+        assertFalse(surrogate.isReady());
+
+        List<TestCreature> archive = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            archive.add(creature(i));
+        }
+        surrogate.update(archive);
+        assertTrue(surrogate.isReady());
+
+        assertEquals(8.5, surrogate.predict(creature(8.5).getGenome()), 1e-6);
+        assertTrue(surrogate.predict(creature(2).getGenome()) < surrogate.predict(creature(7).getGenome()));
+    }
+
+    @Test
+    @DisplayName("Accuracy compares the predictions with the real fitness")
+    void measuresAccuracy() {
+        SurrogateModel surrogate = new SurrogateModel(1, 10, 1);
+
+        List<TestCreature> offspring = List.of(creature(1), creature(2), creature(3));
+        surrogate.recordPrediction(offspring.get(0).getGenome(), 2);
+        surrogate.recordPrediction(offspring.get(1).getGenome(), 3);
+        surrogate.recordPrediction(offspring.get(2).getGenome(), 4);
+        surrogate.update(offspring);
+
+        SurrogateModel.SurrogateAccuracy accuracy = surrogate.getLastAccuracy();
+        assertEquals(3, accuracy.samples());
+        assertEquals(1.0, accuracy.meanAbsoluteError(), 1e-12);
+        assertEquals(1.0, accuracy.rankCorrelation(), 1e-12);
+    }
+
+    @Test
+    @DisplayName("The archive drops the oldest genomes first")
+    void boundedArchive() {
+        SurrogateModel surrogate = new SurrogateModel(1, 2, 1);
+        surrogate.update(List.of(creature(0), creature(5), creature(10)));
+
+        // The genome with weight 0 is gone, so weight 5 is the nearest neighbour
+        assertEquals(5, surrogate.predict(creature(0).getGenome()), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Offspring are screened during evolution and the accuracy is reported")
+    void screensOffspring() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 30;
+        cfg.targetSpecies = 3;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene in = b.addInputNeuron(0);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in, out, 0.0);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+
+        ctx.surrogate = new SurrogateModel(3, 100, 3);
+        ctx.evaluator = creatures -> creatures.forEach(c -> c.setFitness(Math.abs(c.getGenome().getConnections().getFirst().getWeight())));
+
+        for (int generation = 0; generation < 3; generation++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+
+        assertEquals(30, ctx.creatures.size());
+        assertTrue(ctx.surrogate.getLastAccuracy().samples() > 0);
+    }
+}
@@ -0,0 +1,114 @@
+package nl.wdudokvanheel.neat.genome;
+
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.PackedGenome;
+import nl.wdudokvanheel.neural.neat.mutation.ShiftWeightMutation;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.GenomeComparison;
+import nl.wdudokvanheel.neural.neat.service.InnovationService;
+import nl.wdudokvanheel.neural.network.Network;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenomeCloneTest {
+    private static Genome genome() {
+        GenomeBuilder b = new GenomeBuilder(new InnovationService());
+        InputNeuronGene[] in = b.addInputNeurons(4);
+        OutputNeuronGene[] out = b.addOutputNeurons(3);
+        double weight = 0.1;
+        for (InputNeuronGene input : in) {
+            for (OutputNeuronGene output : out) {
+                b.addConnection(input, output, weight);
+                weight += 0.1;
+            }
+        }
+        return b.getGenome();
+    }
+
+    @Test
+    @DisplayName("Clone shares the connections until one is modified")
+    void sharesConnections() {
+        Genome parent = genome();
+        Genome clone = parent.clone();
+        int count = parent.getConnections().size();
+
+        assertEquals(count, clone.getSharedConnectionCount());
+        assertSame(parent.getConnectionView().get(3), clone.getConnectionView().get(3));
+        assertEquals(parent, clone);
+
+        // Reading does not copy
+        new Network(clone);
+        new GenomeComparison(parent, clone);
+        GenomeComparison.bitsets(parent, clone);
+        assertTrue(clone.hasConnection(parent.getConnectionView().get(5).getInnovationId()));
+        assertEquals(count, clone.getActiveConnections().size());
+        assertEquals(count, parent.getActiveConnections().size());
+        assertNotNull(clone.viewConnectionById(parent.getConnectionView().get(5).getInnovationId()));
+        assertEquals(count, clone.alignConnections(parent).length);
+        assertEquals(parent.getFingerprint(), clone.getFingerprint());
+        assertEquals(parent.hashCode(), clone.hashCode());
+        assertEquals(PackedGenome.of(parent), PackedGenome.of(clone));
+        assertEquals(count, clone.getSharedConnectionCount());
+        assertEquals(count, parent.getSharedConnectionCount());
+
+        ConnectionGene changed = clone.getConnections().get(3);
+        changed.setWeight(42);
+        assertEquals(count - 1, clone.getSharedConnectionCount());
+        assertNotSame(parent.getConnectionView().get(3), changed);
+        assertNotEquals(42, parent.getConnectionView().get(3).getWeight());
+        assertNotEquals(parent, clone);
+    }
+
+    @Test
+    @DisplayName("Modifying the parent after cloning does not change the clone")
+    void parentChangesStayInParent() {
+        Genome parent = genome();
+        Genome clone = parent.clone();
+
+        ConnectionGene first = parent.getConnectionById(clone.getConnectionView().getFirst().getInnovationId());
+        first.setEnabled(false);
+        parent.getConnections().getLast().setWeight(-5);
+
+        assertTrue(clone.getConnectionView().getFirst().isEnabled());
+        assertNotEquals(-5, clone.getConnectionView().getLast().getWeight());
+        assertSame(clone.getConnectionById(first.getInnovationId()), clone.getConnections().getFirst());
+    }
+
+    @Test
+    @DisplayName("Clones of clones stay independent")
+    void chainedClones() {
+        Genome a = genome();
+        Genome b = a.clone();
+        Genome c = b.clone();
+
+        for (ConnectionGene connection : c.getConnections()) {
+            connection.setWeight(1);
+        }
+        assertEquals(0, c.getSharedConnectionCount());
+        assertTrue(a.getConnectionView().stream().noneMatch(connection -> connection.getWeight() == 1));
+        assertEquals(a, b);
+    }
+
+    @Test
+    @DisplayName("Weight mutation only copies the connections it changes")
+    void mutationCopiesChangedConnections() {
+        Genome parent = genome();
+        int count = parent.getConnections().size();
+
+        Genome untouched = parent.clone();
+        new ShiftWeightMutation(1, 0).mutate(untouched);
+        assertEquals(count, untouched.getSharedConnectionCount());
+
+        Genome mutated = parent.clone();
+        new ShiftWeightMutation(1, 1).mutate(mutated);
+        assertEquals(0, mutated.getSharedConnectionCount());
+        for (int i = 0; i < count; i++) {
+            assertNotEquals(parent.getConnectionView().get(i).getWeight(), mutated.getConnectionView().get(i).getWeight());
+        }
+    }
+}
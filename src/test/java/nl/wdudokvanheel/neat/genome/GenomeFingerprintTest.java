@@ -0,0 +1,130 @@
+package nl.wdudokvanheel.neat.genome;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.GenomeFingerprint;
+import nl.wdudokvanheel.neural.neat.genome.HiddenNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.InnovationService;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenomeFingerprintTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    private static Genome genome() {
+        GenomeBuilder b = new GenomeBuilder(new InnovationService());
+        InputNeuronGene[] in = b.addInputNeurons(3);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        for (int i = 0; i < in.length; i++) {
+            b.addConnection(in[i], out, i * 0.25);
+        }
+        return b.getGenome();
+    }
+
+    private static void assertTracked(Genome genome) {
+        assertEquals(GenomeFingerprint.of(genome), genome.getFingerprint());
+        assertEquals(GenomeFingerprint.topology(genome), genome.getTopologyFingerprint());
+    }
+
+    @Test
+    @DisplayName("Fingerprints follow changes to the genome and its genes")
+    void followsChanges() {
+        Genome genome = genome();
+        assertTracked(genome);
+        long topology = genome.getTopologyFingerprint();
+
+        genome.getConnections().get(1).setWeight(3);
+        genome.getConnections().get(2).toggleEnabled();
+        assertTracked(genome);
+        assertEquals(topology, genome.getTopologyFingerprint());
+
+        genome.getNeurons().getLast().setLayer(4);
+        assertTracked(genome);
+        assertNotEquals(topology, genome.getTopologyFingerprint());
+
+        genome.addNeuron(new HiddenNeuronGene(1, 100, 1));
+        genome.addConnection(new ConnectionGene(200, 1, 100, 0.5));
+        assertTracked(genome);
+
+        ConnectionGene removed = genome.getConnections().removeFirst();
+        removed.setWeight(-1);
+        genome.getConnections().set(0, new ConnectionGene(300, 2, 100, 1.5));
+        genome.getConnections().add(0, new ConnectionGene(301, 3, 100, 2.5));
+        genome.getNeurons().remove(0);
+        assertTracked(genome);
+
+        genome.getConnections().clear();
+        assertTracked(genome);
+    }
+
+    @Test
+    @DisplayName("Genomes with the same genes share fingerprints regardless of gene order")
+    void sameGenesSameFingerprint() {
+        Genome a = genome();
+        Genome b = new Genome();
+        a.getNeurons().reversed().forEach(n -> b.addNeuron(n.clone()));
+        a.getConnectionView().reversed().forEach(c -> b.addConnection(c.clone()));
+        assertEquals(a.getFingerprint(), b.getFingerprint());
+
+        Genome c = a.clone();
+        assertEquals(a, c);
+        assertEquals(a.hashCode(), c.hashCode());
+
+        c.getConnections().getFirst().setWeight(7);
+        assertTracked(c);
+        assertTracked(a);
+        assertNotEquals(a.getFingerprint(), c.getFingerprint());
+        assertEquals(a.getTopologyFingerprint(), c.getTopologyFingerprint());
+    }
+
+    @Test
+    @DisplayName("Genes held by two genomes fall back to hashing")
+    void foreignGenes() {
+        Genome a = genome();
+        Genome b = new Genome();
+        a.getNeurons().forEach(b::addNeuron);
+        a.getConnectionView().forEach(b::addConnection);
+
+        a.getConnections().getFirst().setWeight(9);
+        assertTracked(a);
+        assertTracked(b);
+        assertEquals(a.getFingerprint(), b.getFingerprint());
+    }
+
+    @Test
+    @DisplayName("Fingerprints stay correct during an evolution")
+    void evolution() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 50;
+        cfg.mutateAddNeuronProbability = 0.3;
+        cfg.mutateAddConnectionProbability = 0.3;
+        cfg.mutateToggleConnectionProbability = 0.2;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(3);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+        ctx.evaluator = creatures -> creatures.forEach(c -> c.setFitness(c.getGenome().getConnectionView().size()));
+
+        for (int i = 0; i < 10; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+            for (TestCreature creature : ctx.creatures) {
+                assertTracked(creature.getGenome());
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package nl.wdudokvanheel.neat.genome;
+
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.HiddenNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.NeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.CrossoverService;
+import nl.wdudokvanheel.neural.neat.service.GenomeComparison;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenomeIndexTest {
+    private static final int INPUTS = 40;
+    private static final int HIDDEN = 200;
+    private static final int OUTPUTS = 10;
+
+    /**
+     * Genome with several thousand connection genes between its layers
+     */
+    private static Genome largeGenome(long seed, int connections) {
+        Random random = new Random(seed);
+        Genome genome = new Genome();
+        int id = 1;
+        for (int i = 0; i < INPUTS; i++) {
+            genome.addNeuron(new InputNeuronGene(id++, 0));
+        }
+        for (int i = 0; i < HIDDEN; i++) {
+            genome.addNeuron(new HiddenNeuronGene(i + 1, id++, 1));
+        }
+        for (int i = 0; i < OUTPUTS; i++) {
+            genome.addNeuron(new OutputNeuronGene(id++, 2));
+        }
+
+        int innovation = 1;
+        while (genome.getConnections().size() < connections) {
+            int source = 1 + random.nextInt(INPUTS + HIDDEN);
+            int target = INPUTS + 1 + random.nextInt(HIDDEN + OUTPUTS);
+            if (source < target && !genome.hasConnection(source, target)) {
+                genome.addConnection(new ConnectionGene(innovation, source, target, random.nextGaussian(), random.nextDouble() > 0.1));
+            }
+            innovation += 1 + random.nextInt(2);
+        }
+        return genome;
+    }
+
+    private static ConnectionGene scanById(Genome genome, int innovationId) {
+        return genome.getConnections().stream().filter(c -> c.getInnovationId() == innovationId).findFirst().orElse(null);
+    }
+
+    private static ConnectionGene scanByEndpoints(Genome genome, int source, int target) {
+        return genome.getConnections().stream().filter(c -> c.getSource() == source && c.getTarget() == target).findFirst().orElse(null);
+    }
+
+    private static void assertIndexesMatchScan(Genome genome, int maxInnovationId) {
+        for (int i = 0; i <= maxInnovationId; i++) {
+            assertSame(scanById(genome, i), genome.getConnectionById(i));
+        }
+        for (ConnectionGene connection : genome.getConnections()) {
+            assertSame(scanByEndpoints(genome, connection.getSource(), connection.getTarget()),
+                    genome.getConnection(connection.getSource(), connection.getTarget()));
+        }
+        for (NeuronGene neuron : genome.getNeurons()) {
+            assertSame(neuron, genome.getNeuronById(neuron.getInnovationId()));
+        }
+        assertEquals(genome.getNeurons().stream().filter(n -> n instanceof InputNeuronGene).toList(), genome.getInputNeurons());
+        assertEquals(genome.getNeurons().stream().filter(n -> n instanceof HiddenNeuronGene).toList(), genome.getHiddenNeurons());
+        assertEquals(genome.getNeurons().stream().filter(n -> n instanceof OutputNeuronGene).toList(), genome.getOutputNeurons());
+    }
+
+    @Test
+    @DisplayName("Indexes follow changes made through the gene lists")
+    void indexesFollowListChanges() {
+        Genome genome = largeGenome(1, 2000);
+        int maxId = genome.getConnections().getLast().getInnovationId();
+        assertIndexesMatchScan(genome, maxId);
+
+        // Appended after the indexes were built
+        genome.addConnection(new ConnectionGene(maxId + 1, 1, INPUTS + HIDDEN + 1, 1.0));
+        assertSame(genome.getConnections().getLast(), genome.getConnectionById(maxId + 1));
+
+        // Removals, replacements and insertions
+        genome.getConnections().removeFirst();
+        genome.getConnections().remove(500);
+        genome.getConnections().set(10, new ConnectionGene(maxId + 2, 2, INPUTS + HIDDEN + 2, 1.0));
+        genome.getConnections().add(20, new ConnectionGene(maxId + 3, 3, INPUTS + HIDDEN + 3, 1.0));
+        genome.getConnections().removeIf(c -> c.getInnovationId() % 7 == 0);
+        assertIndexesMatchScan(genome, maxId + 3);
+
+        genome.getNeurons().remove(INPUTS);
+        genome.getNeurons().add(0, new OutputNeuronGene(9999, 2));
+        assertIndexesMatchScan(genome, maxId + 3);
+        assertEquals(9999, genome.getOutputNeurons().getFirst().getInnovationId());
+
+        genome.getConnections().clear();
+        assertNull(genome.getConnectionById(maxId + 1));
+        assertFalse(genome.hasConnection(1, INPUTS + HIDDEN + 1));
+    }
+
+    @Test
+    @DisplayName("Typed neuron views are read only and stay up to date")
+    void typedViews() {
+        Genome genome = largeGenome(2, 10);
+        List<HiddenNeuronGene> hidden = genome.getHiddenNeurons();
+        assertEquals(HIDDEN, hidden.size());
+        assertThrows(UnsupportedOperationException.class, () -> hidden.add(new HiddenNeuronGene(1, 5000, 1)));
+
+        genome.addNeuron(new HiddenNeuronGene(1, 5000, 1));
+        assertEquals(HIDDEN + 1, genome.getHiddenNeurons().size());
+        assertEquals(5000, genome.getHiddenNeurons().getLast().getInnovationId());
+    }
+
+    @Test
+    @Timeout(10)
+    @DisplayName("Comparison and crossover of genomes with thousands of genes")
+    void largeGenomes() {
+        Genome a = largeGenome(3, 5000);
+        Genome b = largeGenome(4, 5000);
+        CrossoverService crossover = new CrossoverService();
+
+        double distance = 0;
+        for (int i = 0; i < 20; i++) {
+            distance = new GenomeComparison(a, b).getDistance();
+            Genome child = crossover.crossover(a, b);
+            assertEquals(a.getConnections().size(), child.getConnections().size());
+        }
+
+        assertTrue(distance > 0);
+        assertEquals(0, new GenomeComparison(a, a.clone()).getDistance());
+    }
+
+    @Test
+    @DisplayName("Aligned connections are the ones a lookup by innovation id finds")
+    void alignConnections() {
+        Genome a = largeGenome(5, 1500);
+        Genome b = largeGenome(6, 1500);
+        // Shuffled order and duplicate innovation ids
+        a.getConnections().add(0, new ConnectionGene(a.getConnections().get(700).getInnovationId(), 1, 2, 5.0));
+        a.getConnections().add(new ConnectionGene(a.getConnections().get(3).getInnovationId(), 1, 3, 6.0));
+        b.getConnections().add(0, b.getConnections().remove(900));
+        a.addConnection(new ConnectionGene(100_000, 4, 5, 1.0));
+
+        ConnectionGene[] aligned = a.alignConnections(b);
+        List<ConnectionGene> connections = a.getConnectionView();
+        assertEquals(connections.size(), aligned.length);
+        int matched = 0;
+        for (int i = 0; i < aligned.length; i++) {
+            assertSame(b.viewConnectionById(connections.get(i).getInnovationId()), aligned[i]);
+            if (aligned[i] != null) {
+                matched++;
+            }
+        }
+        assertTrue(matched > 0);
+        assertEquals(0, new Genome().alignConnections(b).length);
+        assertTrue(Arrays.stream(a.alignConnections(new Genome())).allMatch(c -> c == null));
+    }
+}
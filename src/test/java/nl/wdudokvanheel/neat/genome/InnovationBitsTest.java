@@ -0,0 +1,74 @@
+package nl.wdudokvanheel.neat.genome;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InnovationBits;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InnovationBitsTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    @Test
+    @DisplayName("Connections are found by innovation id, like a lookup in the genome")
+    void lookup() {
+        Genome genome = new Genome();
+        int[] ids = {200, 3, 64, 63, 0, 65, 3, 128};
+        for (int i = 0; i < ids.length; i++) {
+            genome.addConnection(new ConnectionGene(ids[i], 1, 2, i, i % 2 == 0));
+        }
+
+        InnovationBits bits = genome.getInnovationBits();
+        assertEquals(200, bits.getMaxId());
+        assertEquals(4, bits.getWordCount());
+        assertEquals(6, bits.size());
+        for (int id = -1; id <= 210; id++) {
+            assertSame(id < 1 ? null : genome.viewConnectionById(id), bits.get(id));
+        }
+        assertEquals(2, Long.bitCount(bits.getPresentWord(0)));
+        assertEquals(0, bits.getPresentWord(10));
+        assertSame(bits, genome.getInnovationBits());
+
+        genome.addConnection(new ConnectionGene(500, 1, 2, 1));
+        assertNotSame(bits, genome.getInnovationBits());
+        assertEquals(500, genome.getInnovationBits().getMaxId());
+        assertEquals(0, new Genome().getInnovationBits().getMaxId());
+    }
+
+    @Test
+    @DisplayName("Evolution with innovation bitsets")
+    void evolution() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 50;
+        cfg.mutateAddNeuronProbability = 0.3;
+        cfg.mutateAddConnectionProbability = 0.3;
+        cfg.mutateToggleConnectionProbability = 0.2;
+        cfg.innovationBitsets = true;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(3);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+        ctx.evaluator = creatures -> creatures.forEach(c -> c.setFitness(c.getGenome().getConnectionView().size()));
+
+        for (int i = 0; i < 10; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        assertEquals(50, ctx.creatures.size());
+        assertTrue(ctx.creatures.stream().anyMatch(c -> c.getGenome().getConnectionView().size() > 1));
+    }
+}
@@ -0,0 +1,127 @@
+package nl.wdudokvanheel.neat.genome;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.PackedGenome;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.GenomeComparison;
+import nl.wdudokvanheel.neural.network.Network;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedGenomeTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    /**
+     * Genomes of a population that evolved for a few generations, so they differ in topology and weights
+     */
+    private static List<Genome> evolvedGenomes() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 40;
+        cfg.mutateAddNeuronProbability = 0.3;
+        cfg.mutateAddConnectionProbability = 0.3;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(3);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        b.addConnection(in[1], out, -0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+
+        ctx.evaluator = creatures -> creatures.forEach(c -> c.setFitness(c.getGenome().getConnections().size()));
+        for (int i = 0; i < 8; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        return ctx.creatures.stream().map(TestCreature::getGenome).toList();
+    }
+
+    @Test
+    @DisplayName("Packing and unpacking keeps all genes")
+    void roundTrip() {
+        for (Genome genome : evolvedGenomes()) {
+            PackedGenome packed = PackedGenome.of(genome);
+            Genome unpacked = packed.toGenome();
+
+            assertEquals(genome.getNeurons(), unpacked.getNeurons());
+            assertEquals(genome.getConnections().size(), unpacked.getConnections().size());
+            for (ConnectionGene connection : genome.getConnections()) {
+                assertEquals(connection, unpacked.getConnectionById(connection.getInnovationId()));
+                assertTrue(packed.hasConnection(connection.getInnovationId()));
+            }
+            assertEquals(packed, PackedGenome.of(unpacked));
+        }
+    }
+
+    @Test
+    @DisplayName("Distance of packed genomes equals the distance of the genomes")
+    void distanceMatchesGenomeComparison() {
+        List<Genome> genomes = evolvedGenomes();
+        for (int i = 0; i < genomes.size(); i++) {
+            for (int j = 0; j < genomes.size(); j += 3) {
+                Genome a = genomes.get(i);
+                Genome b = genomes.get(j);
+                double expected = new GenomeComparison(a, b).getDistance();
+                double actual = new GenomeComparison(PackedGenome.of(a), PackedGenome.of(b)).getDistance();
+                assertEquals(expected, actual, 1e-12);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Network built from a packed genome gives the same output")
+    void networkFromPackedGenome() {
+        for (Genome genome : evolvedGenomes()) {
+            PackedGenome packed = PackedGenome.of(genome);
+            Network expected = new Network(packed.toGenome());
+            Network actual = new Network(packed);
+
+            expected.setInput(0.3, -0.7, 1);
+            actual.setInput(0.3, -0.7, 1);
+            assertArrayEquals(expected.getOutputs(), actual.getOutputs());
+        }
+    }
+
+    @Test
+    @DisplayName("Crossover inherits the topology of the fit parent and the weights of either parent")
+    void crossover() {
+        List<Genome> genomes = evolvedGenomes();
+        Random random = new Random(3);
+        for (int i = 0; i + 1 < genomes.size(); i++) {
+            PackedGenome fit = PackedGenome.of(genomes.get(i));
+            PackedGenome weak = PackedGenome.of(genomes.get(i + 1));
+            PackedGenome child = PackedGenome.crossover(fit, weak, random);
+
+            assertEquals(fit.getNeuronCount(), child.getNeuronCount());
+            assertEquals(fit.getConnectionCount(), child.getConnectionCount());
+            for (int c = 0; c < child.getConnectionCount(); c++) {
+                assertEquals(fit.getConnectionId(c), child.getConnectionId(c));
+                int other = weak.indexOfConnection(child.getConnectionId(c));
+                if (other < 0) {
+                    assertEquals(fit.getWeight(c), child.getWeight(c));
+                    assertEquals(fit.isEnabled(c), child.isEnabled(c));
+                } else {
+                    assertTrue(child.getWeight(c) == fit.getWeight(c) || child.getWeight(c) == weak.getWeight(other));
+                    if (fit.isEnabled(c) && weak.isEnabled(other)) {
+                        assertTrue(child.isEnabled(c));
+                    }
+                }
+            }
+            assertNotSame(fit, child);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package nl.wdudokvanheel.neat.genome;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.PackedGenome;
+import nl.wdudokvanheel.neural.neat.genome.TopologyTable;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.InnovationService;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopologyTableTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    /**
+     * Two inputs fully connected to two outputs
+     */
+    private static Genome genome() {
+        GenomeBuilder b = new GenomeBuilder(new InnovationService());
+        InputNeuronGene[] in = b.addInputNeurons(2);
+        OutputNeuronGene[] out = b.addOutputNeurons(2);
+        b.addConnection(in[0], out[0], 0.5);
+        b.addConnection(in[0], out[1], -0.5);
+        b.addConnection(in[1], out[0], 1.0);
+        b.addConnection(in[1], out[1], -1.0);
+        return b.getGenome();
+    }
+
+    @Test
+    @DisplayName("Genomes with the same structure share one topology")
+    void sharesTopology() {
+        Genome parent = genome();
+        List<Genome> genomes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Genome clone = parent.clone();
+            clone.getConnections().get(i % 3).setWeight(i);
+            genomes.add(clone);
+        }
+        // Without one of the connections the structure differs
+        Genome other = parent.clone();
+        other.getConnections().removeLast();
+        genomes.add(other);
+
+        TopologyTable table = new TopologyTable();
+        List<PackedGenome> packed = table.internGeneration(genomes);
+
+        assertEquals(2, table.size());
+        for (int i = 0; i < 10; i++) {
+            assertSame(packed.getFirst().getTopology(), packed.get(i).getTopology());
+            assertEquals(PackedGenome.of(genomes.get(i)), packed.get(i));
+        }
+        assertNotSame(packed.getFirst().getTopology(), packed.getLast().getTopology());
+
+        TopologyTable.InterningReport report = table.getLastReport();
+        assertEquals(11, report.genomes());
+        assertEquals(2, report.topologies());
+        assertEquals(2, report.newTopologies());
+        assertTrue(report.internedBytes() < report.packedBytes());
+        assertTrue(report.getPotentialSavings() > 0);
+
+        // A new generation reuses the known topology and drops the unused one
+        List<PackedGenome> next = table.internGeneration(List.of(parent));
+        assertSame(packed.getFirst().getTopology(), next.getFirst().getTopology());
+        assertEquals(0, table.getLastReport().newTopologies());
+        assertEquals(1, table.size());
+        assertSame(next.getFirst().getTopology(), table.intern(PackedGenome.of(genomes.get(5))).getTopology());
+    }
+
+    @Test
+    @DisplayName("Estimates the memory of the generations of an evolution")
+    void evolution() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 50;
+        cfg.mutateAddNeuronProbability = 0.2;
+        cfg.mutateAddConnectionProbability = 0.2;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(3);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+        ctx.evaluator = creatures -> creatures.forEach(c -> c.setFitness(c.getGenome().getConnectionView().size()));
+
+        TopologyTable table = new TopologyTable();
+        for (int i = 0; i < 5; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+
+            List<PackedGenome> generation = table.internGeneration(ctx.creatures.stream().map(TestCreature::getGenome).toList());
+            assertSame(generation, table.getGeneration());
+            assertEquals(ctx.creatures.size(), generation.size());
+            for (int c = 0; c < generation.size(); c++) {
+                assertEquals(PackedGenome.of(ctx.creatures.get(c).getGenome()), generation.get(c));
+            }
+            TopologyTable.InterningReport report = table.getLastReport();
+            assertTrue(report.topologies() < report.genomes());
+            assertTrue(report.getSharedBytes() > 0);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package nl.wdudokvanheel.neat.selection;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.selection.FitnessProportionateSelection;
+import nl.wdudokvanheel.neural.neat.selection.Selection;
+import nl.wdudokvanheel.neural.neat.selection.SelectionStrategy;
+import nl.wdudokvanheel.neural.neat.selection.TournamentSelection;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectionTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    private static int[] counts(SelectionStrategy.Selector selector, int size, int exclude, int draws) {
+        Random random = new Random(1);
+        int[] counts = new int[size];
+        for (int i = 0; i < draws; i++) {
+            counts[selector.select(random, exclude)]++;
+        }
+        return counts;
+    }
+
+    @Test
+    @DisplayName("Fitness proportionate picks follow the weights, also with one index excluded")
+    void fitnessProportionate() {
+        double[] weights = {1, 0, 3, -2, 4, 2};
+        SelectionStrategy.Selector selector = new FitnessProportionateSelection().prepare(weights);
+
+        int[] counts = counts(selector, weights.length, -1, 100_000);
+        assertEquals(0, counts[1]);
+        assertEquals(0, counts[3]);
+        assertEquals(0.1, counts[0] / 100_000.0, 0.01);
+        assertEquals(0.4, counts[4] / 100_000.0, 0.01);
+
+        counts = counts(selector, weights.length, 4, 100_000);
+        assertEquals(0, counts[4]);
+        assertEquals(0.5, counts[2] / 100_000.0, 0.01);
+        assertEquals(1.0 / 3, counts[5] / 100_000.0, 0.01);
+
+        // Nothing to weigh
+        SelectionStrategy.Selector zero = new FitnessProportionateSelection().prepare(new double[]{0, 0});
+        assertEquals(0, zero.select(new Random()));
+        assertEquals(1, zero.select(new Random(), 0));
+        assertEquals(-1, new FitnessProportionateSelection().prepare(new double[]{5}).select(new Random(), 0));
+        assertEquals(-1, new FitnessProportionateSelection().prepare(new double[0]).select(new Random()));
+    }
+
+    @Test
+    @DisplayName("Tournaments favor the fittest contestant and never pick the excluded one")
+    void tournament() {
+        double[] weights = {1, 2, 3, 4, 5};
+        int[] counts = counts(new TournamentSelection(1).prepare(weights), weights.length, 4, 50_000);
+        assertEquals(0, counts[4]);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0.25, counts[i] / 50_000.0, 0.02);
+        }
+
+        counts = counts(new TournamentSelection(3).prepare(weights), weights.length, -1, 50_000);
+        assertTrue(counts[4] > counts[3] && counts[3] > counts[2] && counts[2] > counts[0]);
+
+        assertEquals(-1, new TournamentSelection(2).prepare(new double[]{1}).select(new Random(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new TournamentSelection(0));
+    }
+
+    @Test
+    @Timeout(5)
+    @DisplayName("Picks from a prepared selection don't depend on the size of the group")
+    void preparedOnce() {
+        List<Double> items = new ArrayList<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 200_000; i++) {
+            items.add(random.nextDouble());
+        }
+        // A scan per pick would take 200000 * 200000 steps
+        Selection<Double> selection = Selection.of(new FitnessProportionateSelection(), items, Double::doubleValue);
+        for (int i = 0; i < 200_000; i++) {
+            Double exclude = items.get(i);
+            assertNotSame(exclude, selection.select(random, exclude));
+        }
+        assertNull(Selection.of(new FitnessProportionateSelection(), List.<Double>of(), Double::doubleValue).select(random));
+    }
+
+    @Test
+    @DisplayName("Evolution with tournament selection")
+    void evolution() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 50;
+        cfg.mutateAddConnectionProbability = 0.3;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        ctx.selection = new TournamentSelection(3);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(3);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+        ctx.evaluator = creatures -> creatures.forEach(c -> c.setFitness(c.getGenome().getConnectionView().size()));
+
+        for (int i = 0; i < 5; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        assertEquals(50, ctx.creatures.size());
+    }
+}
@@ -0,0 +1,127 @@
+package nl.wdudokvanheel.neat.service;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.CheckpointService;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.InnovationService;
+import nl.wdudokvanheel.neural.network.Network;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointServiceTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    @TempDir
+    Path directory;
+
+    private final CheckpointService<TestCreature> checkpoints = new CheckpointService<>();
+
+    private static NeatContext<TestCreature> evolve(int generations) {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 60;
+        cfg.targetSpecies = 5;
+        cfg.mutateAddNeuronProbability = 0.3;
+        cfg.mutateAddConnectionProbability = 0.3;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(2);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        b.addConnection(in[1], out, -0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+
+        ctx.evaluator = creatures -> creatures.forEach(c -> {
+            Network network = new Network(c.getGenome());
+            network.setInput(1, 0.5);
+            c.setFitness(network.getOutput());
+        });
+        for (int i = 0; i < generations; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        NeatEvolution.evaluate(ctx);
+        return ctx;
+    }
+
+    @Test
+    @DisplayName("A restored context has the same population, species and innovations")
+    void roundTrip() throws IOException {
+        NeatContext<TestCreature> original = evolve(5);
+        Path file = directory.resolve("run.ckpt");
+        checkpoints.write(original, file);
+        assertFalse(Files.exists(directory.resolve("run.ckpt.tmp")));
+
+        NeatContext<TestCreature> restored = checkpoints.read(file, TestCreature::new);
+
+        assertEquals(original.generation, restored.generation);
+        assertEquals(original.configuration.speciesThreshold, restored.configuration.speciesThreshold);
+        assertEquals(original.configuration.populationSize, restored.configuration.populationSize);
+        assertEquals(original.blueprint.getGenome(), restored.blueprint.getGenome());
+
+        assertEquals(original.creatures.size(), restored.creatures.size());
+        for (int i = 0; i < original.creatures.size(); i++) {
+            TestCreature a = original.creatures.get(i);
+            TestCreature b = restored.creatures.get(i);
+            assertEquals(a.getGenome(), b.getGenome());
+            assertEquals(a.getFitness(), b.getFitness());
+            assertEquals(a.getSpecies().id, b.getSpecies().id);
+        }
+
+        assertEquals(original.species.size(), restored.species.size());
+        for (int i = 0; i < original.species.size(); i++) {
+            Species<TestCreature> a = original.species.get(i);
+            Species<TestCreature> b = restored.species.get(i);
+            assertEquals(a.id, b.id);
+            assertEquals(a.lastFitness, b.lastFitness);
+            assertEquals(a.lastImprovement, b.lastImprovement);
+            assertEquals(a.getFitness(), b.getFitness());
+            assertEquals(a.getRepresentative().getGenome(), b.getRepresentative().getGenome());
+            assertEquals(a.size(), b.size());
+        }
+
+        // New innovations continue where the original run left off
+        InnovationService.State state = original.innovationService.exportState();
+        assertEquals(state, restored.innovationService.exportState());
+        assertEquals(original.innovationService.getConnectionInnovationId(1000, 1001), restored.innovationService.getConnectionInnovationId(1000, 1001));
+        assertEquals(original.innovationService.getHiddenNeuronInnovationId(1000), restored.innovationService.getHiddenNeuronInnovationId(1000));
+
+        // And the evolution simply continues
+        restored.evaluator = original.evaluator;
+        NeatEvolution.nextGeneration(restored);
+        NeatEvolution.evaluate(restored);
+        assertEquals(original.configuration.populationSize, restored.creatures.size());
+    }
+
+    @Test
+    @DisplayName("Files that are not a checkpoint or are truncated are rejected")
+    void rejectsInvalidFiles() throws IOException {
+        Path file = directory.resolve("invalid.ckpt");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5});
+        assertThrows(IOException.class, () -> checkpoints.read(file, TestCreature::new));
+
+        Path valid = directory.resolve("valid.ckpt");
+        checkpoints.write(evolve(1), valid);
+        byte[] data = Files.readAllBytes(valid);
+        Path truncated = directory.resolve("truncated.ckpt");
+        Files.write(truncated, Arrays.copyOf(data, data.length / 2));
+        assertThrows(IOException.class, () -> checkpoints.read(truncated, TestCreature::new));
+    }
+}
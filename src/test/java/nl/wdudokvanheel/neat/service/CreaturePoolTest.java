@@ -0,0 +1,142 @@
+package nl.wdudokvanheel.neat.service;
+
+import nl.wdudokvanheel.neural.neat.CreatureFactory;
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.GenomeFingerprint;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.CreaturePool;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreaturePoolTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        boolean released = false;
+
+        TestCreature(Genome g) { super(g); }
+    }
+
+    private static class RecyclingFactory implements CreatureFactory<TestCreature> {
+        int releaseCalls = 0;
+
+        @Override
+        public TestCreature createNewCreature(Genome genome) {
+            return new TestCreature(genome);
+        }
+
+        @Override
+        public void releaseCreatures(List<TestCreature> creatures) {
+            releaseCalls++;
+            creatures.forEach(creature -> creature.released = true);
+        }
+
+        @Override
+        public TestCreature reuseCreature(TestCreature creature, Genome genome) {
+            creature.reset(genome);
+            creature.released = false;
+            return creature;
+        }
+    }
+
+    private static NeatContext<TestCreature> context(CreatureFactory<TestCreature> factory, boolean recycle) {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 60;
+        cfg.mutateAddNeuronProbability = 0.2;
+        cfg.mutateAddConnectionProbability = 0.2;
+        cfg.recycleCreatures = recycle;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(factory, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(3);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        b.addConnection(in[1], out, -0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+        ctx.evaluator = creatures -> creatures.forEach(c -> c.setFitness(1 + c.getGenome().getConnectionView().size()));
+        return ctx;
+    }
+
+    @Test
+    @DisplayName("Eliminated creatures and genomes are reused by the next generation")
+    void reusesCreatures() {
+        RecyclingFactory factory = new RecyclingFactory();
+        NeatContext<TestCreature> ctx = context(factory, true);
+
+        for (int i = 0; i < 8; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+
+            Set<TestCreature> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<Genome> genomes = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (TestCreature creature : ctx.creatures) {
+                assertFalse(creature.released);
+                assertTrue(seen.add(creature));
+                assertTrue(genomes.add(creature.getGenome()));
+                assertEquals(GenomeFingerprint.of(creature.getGenome()), creature.getGenome().getFingerprint());
+            }
+            for (Species<TestCreature> species : ctx.species) {
+                species.getCreatures().forEach(creature -> assertFalse(creature.released));
+            }
+        }
+
+        assertEquals(8, factory.releaseCalls);
+        CreaturePool.RecyclingStatistics statistics = ctx.creaturePool.getLastStatistics();
+        assertTrue(statistics.released() > 0);
+        assertTrue(statistics.creaturesReused() > 0);
+        assertTrue(statistics.genomesReused() > 0);
+        assertTrue(statistics.getCreatureReuseRate() > 0.5);
+    }
+
+    @Test
+    @DisplayName("Without recycling or factory support nothing is reused")
+    void disabled() {
+        NeatContext<TestCreature> ctx = context(TestCreature::new, false);
+        for (int i = 0; i < 3; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        assertEquals(0, ctx.creaturePool.getLastStatistics().released());
+
+        // The default factory does not reuse creatures, but the genomes are still recycled
+        ctx = context(TestCreature::new, true);
+        for (int i = 0; i < 3; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        CreaturePool.RecyclingStatistics statistics = ctx.creaturePool.getLastStatistics();
+        assertEquals(0, statistics.creaturesReused());
+        assertTrue(statistics.genomesReused() > 0);
+    }
+
+    @Test
+    @DisplayName("A reused genome is an independent copy")
+    void copyInto() {
+        NeatContext<TestCreature> ctx = context(TestCreature::new, false);
+        Genome source = ctx.creatures.getFirst().getGenome();
+        Genome target = ctx.creatures.get(1).getGenome().clone();
+        long id = target.getId();
+
+        assertSame(target, source.copyInto(target));
+        assertEquals(source, target);
+        assertNotEquals(id, target.getId());
+        assertEquals(source.getId(), target.getParentId());
+        assertEquals(source.getFingerprint(), target.getFingerprint());
+
+        target.getConnections().getFirst().setWeight(42);
+        assertNotEquals(42, source.getConnectionView().getFirst().getWeight());
+        assertThrows(IllegalArgumentException.class, () -> source.copyInto(source));
+    }
+}
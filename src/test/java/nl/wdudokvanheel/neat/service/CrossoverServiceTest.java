@@ -7,6 +7,7 @@ import nl.wdudokvanheel.neural.neat.service.InnovationService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -165,4 +166,41 @@ class CrossoverServiceTest {
             assertEquals(c.isEnabled(), c2.isEnabled(), "Enabled flag differs");
         }
     }
+
+    @Test
+    @DisplayName("Child follows the fit parent's genes in order with the inheritance rules")
+    void inheritanceRules() {
+        Genome fit = buildFitParent();
+        Genome weak = buildWeakParent();
+        // Disabled in the fit parent, and disabled in only the weak parent
+        fit.getConnections().get(1).setEnabled(false);
+        weak.getConnections().get(0).setEnabled(false);
+
+        int firstEnabled = 0;
+        int weakWeight = 0;
+        for (int i = 0; i < 400; i++) {
+            Genome child = xsv.crossover(fit, weak);
+            assertEquals(fit.getId(), child.getParentId());
+            assertEquals(fit.getNeuronView(), child.getNeuronView());
+            assertNotSame(fit.getNeuronView().getFirst(), child.getNeuronView().getFirst());
+
+            List<ConnectionGene> connections = child.getConnectionView();
+            assertEquals(fit.getConnectionView().stream().map(ConnectionGene::getInnovationId).toList(),
+                    connections.stream().map(ConnectionGene::getInnovationId).toList());
+            // Disabled in the fit parent stays disabled
+            assertFalse(connections.get(1).isEnabled());
+            // Only in the fit parent, copied as is
+            assertEquals(fit.getConnectionView().get(2), connections.get(2));
+
+            if (connections.get(0).isEnabled()) {
+                firstEnabled++;
+            }
+            if (connections.get(0).getWeight() == 0.9) {
+                weakWeight++;
+            }
+        }
+        // Re-enabled 25% of the time, the weight of the weak parent 50% of the time
+        assertTrue(firstEnabled > 50 && firstEnabled < 150, "enabled " + firstEnabled);
+        assertTrue(weakWeight > 140 && weakWeight < 260, "weak weight " + weakWeight);
+    }
 }
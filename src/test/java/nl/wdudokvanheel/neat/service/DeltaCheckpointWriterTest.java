@@ -0,0 +1,145 @@
+package nl.wdudokvanheel.neat.service;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.Species;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.DeltaCheckpointWriter;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.network.Network;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaCheckpointWriterTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    @TempDir
+    Path directory;
+
+    private static NeatContext<TestCreature> createContext() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 60;
+        cfg.targetSpecies = 5;
+        cfg.mutateAddNeuronProbability = 0.3;
+        cfg.mutateAddConnectionProbability = 0.3;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(2);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        b.addConnection(in[1], out, -0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+
+        ctx.evaluator = creatures -> creatures.forEach(c -> {
+            Network network = new Network(c.getGenome());
+            network.setInput(1, 0.5);
+            c.setFitness(network.getOutput());
+        });
+        return ctx;
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.sorted().toList();
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Full checkpoint plus deltas restore the last snapshot")
+    void restoresFromDeltas() throws Exception {
+        NeatContext<TestCreature> ctx = createContext();
+        try (DeltaCheckpointWriter<TestCreature> writer = new DeltaCheckpointWriter<>(directory, 3)) {
+            ctx.checkpointWriter = writer;
+            for (int i = 0; i < 6; i++) {
+                NeatEvolution.evaluate(ctx);
+                NeatEvolution.nextGeneration(ctx);
+            }
+            NeatEvolution.evaluate(ctx);
+            writer.snapshot(ctx);
+            writer.flush();
+
+            DeltaCheckpointWriter.CheckpointStatistics statistics = writer.getStatistics();
+            assertEquals(7, statistics.snapshots());
+            assertEquals(7, statistics.fullCheckpoints() + statistics.deltaCheckpoints() + statistics.coalesced());
+            assertEquals(0, statistics.failures());
+            assertTrue(statistics.deltaCheckpoints() > 0);
+        }
+
+        // Files before the latest full checkpoint are cleaned up
+        List<Path> files = files();
+        assertTrue(files.getFirst().getFileName().toString().endsWith(".full"), files.toString());
+        assertEquals(1, files.stream().filter(p -> p.toString().endsWith(".full")).count());
+
+        NeatContext<TestCreature> restored = DeltaCheckpointWriter.restore(directory, TestCreature::new);
+        assertEquals(ctx.generation, restored.generation);
+        assertEquals(ctx.configuration.speciesThreshold, restored.configuration.speciesThreshold);
+        assertEquals(ctx.innovationService.exportState(), restored.innovationService.exportState());
+
+        assertEquals(ctx.creatures.size(), restored.creatures.size());
+        for (int i = 0; i < ctx.creatures.size(); i++) {
+            assertEquals(ctx.creatures.get(i).getGenome(), restored.creatures.get(i).getGenome());
+            assertEquals(ctx.creatures.get(i).getFitness(), restored.creatures.get(i).getFitness());
+        }
+        assertEquals(ctx.species.size(), restored.species.size());
+        for (int i = 0; i < ctx.species.size(); i++) {
+            Species<TestCreature> a = ctx.species.get(i);
+            Species<TestCreature> b = restored.species.get(i);
+            assertEquals(a.id, b.id);
+            assertEquals(a.lastImprovement, b.lastImprovement);
+            assertEquals(a.getRepresentative().getGenome(), b.getRepresentative().getGenome());
+        }
+
+        // The restored run simply continues
+        restored.evaluator = ctx.evaluator;
+        NeatEvolution.nextGeneration(restored);
+        NeatEvolution.evaluate(restored);
+        assertEquals(ctx.configuration.populationSize, restored.creatures.size());
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Deltas store offspring as differences and are smaller than full checkpoints")
+    void deltasAreSmaller() throws Exception {
+        NeatContext<TestCreature> ctx = createContext();
+        try (DeltaCheckpointWriter<TestCreature> writer = new DeltaCheckpointWriter<>(directory, 100)) {
+            for (int i = 0; i < 4; i++) {
+                NeatEvolution.evaluate(ctx);
+                writer.snapshot(ctx);
+                // Wait for every snapshot, so none of them are coalesced
+                writer.flush();
+                NeatEvolution.nextGeneration(ctx);
+            }
+        }
+
+        List<Path> files = files();
+        assertEquals(4, files.size());
+        long full = Files.size(files.getFirst());
+        for (Path delta : files.subList(1, files.size())) {
+            assertTrue(Files.size(delta) < full, delta + " is not smaller than the full checkpoint");
+        }
+    }
+
+    @Test
+    @DisplayName("Restoring without a full checkpoint fails")
+    void noFullCheckpoint() {
+        assertThrows(IOException.class, () -> DeltaCheckpointWriter.restore(directory, TestCreature::new));
+    }
+}
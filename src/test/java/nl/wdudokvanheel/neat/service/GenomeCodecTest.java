@@ -0,0 +1,82 @@
+package nl.wdudokvanheel.neat.service;
+
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.mutation.AddNeuronMutation;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.GenomeCodec;
+import nl.wdudokvanheel.neural.neat.service.InnovationService;
+import nl.wdudokvanheel.neural.neat.service.SerializationService;
+import nl.wdudokvanheel.neural.network.Network;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenomeCodecTest {
+    private Genome getTestGenome(InnovationService innovation) {
+        GenomeBuilder builder = new GenomeBuilder(innovation);
+        InputNeuronGene[] inputs = builder.addInputNeurons(3);
+        builder.addHiddenNeuron(0);
+        OutputNeuronGene[] outputs = builder.addOutputNeurons(2);
+
+        builder.addConnection(inputs[0], outputs[0], 1.5);
+        builder.addConnection(inputs[1], outputs[0], -3.25);
+        builder.addConnection(inputs[2], outputs[1], 0.125);
+        builder.addConnection(inputs[0], outputs[1], 2.0);
+
+        Genome genome = builder.getGenome();
+        new AddNeuronMutation(innovation).mutate(genome);
+        new AddNeuronMutation(innovation).mutate(genome);
+        genome.getConnections().get(2).setEnabled(false);
+        return genome;
+    }
+
+    @Test
+    @DisplayName("Encoding and decoding should create the same genome")
+    void roundTrip() {
+        Genome genome = getTestGenome(new InnovationService());
+        GenomeCodec codec = new GenomeCodec();
+
+        Genome decoded = codec.decode(codec.encode(genome));
+
+        assertEquals(genome, decoded);
+    }
+
+    @Test
+    @DisplayName("Active-only encoding builds the same network without the disabled connections")
+    void activeOnly() {
+        Genome genome = getTestGenome(new InnovationService());
+        GenomeCodec codec = new GenomeCodec(true);
+
+        Genome decoded = codec.decode(codec.encode(genome));
+        assertEquals(genome.getActiveConnections(), decoded.getConnections());
+
+        Network original = new Network(genome);
+        Network rebuilt = new Network(decoded);
+        original.setInput(0.3, -0.7, 1);
+        rebuilt.setInput(0.3, -0.7, 1);
+        assertArrayEquals(original.getOutputs(), rebuilt.getOutputs());
+    }
+
+    @Test
+    @DisplayName("Binary encoding should be much smaller than JSON")
+    void compact() {
+        Genome genome = getTestGenome(new InnovationService());
+        int binary = new GenomeCodec().encode(genome).length;
+        int json = new SerializationService().serialize(genome).length();
+
+        assertTrue(binary * 5 < json, "binary " + binary + " bytes vs json " + json + " bytes");
+        assertTrue(binary <= new GenomeCodec().getMaxEncodedSize(genome));
+    }
+
+    @Test
+    @DisplayName("Truncated data is rejected")
+    void truncated() {
+        byte[] data = new GenomeCodec().encode(getTestGenome(new InnovationService()));
+        byte[] truncated = java.util.Arrays.copyOf(data, data.length / 2);
+
+        assertThrows(IllegalArgumentException.class, () -> new GenomeCodec().decode(truncated));
+    }
+}
@@ -1,5 +1,6 @@
 package nl.wdudokvanheel.neat.service;
 
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
 import nl.wdudokvanheel.neural.neat.genome.Genome;
 import nl.wdudokvanheel.neural.neat.genome.HiddenNeuronGene;
 import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
@@ -9,8 +10,15 @@ import nl.wdudokvanheel.neural.neat.service.GenomeComparison;
 import nl.wdudokvanheel.neural.neat.service.InnovationService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Regression-suite for GenomeComparison.
@@ -128,4 +136,125 @@ class GenomeComparisonTest {
         assertEquals(expected, d, 1e-12,
                 "wrong disjoint contribution");
     }
+
+    /**
+     * Genome with connections in random order, picked from the innovation ids up to maxId
+     */
+    private static Genome randomGenome(Random random, int connections, int maxId) {
+        List<ConnectionGene> genes = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            int id = 1 + random.nextInt(maxId);
+            genes.add(new ConnectionGene(id, id, id + 1, random.nextGaussian(), random.nextDouble() > 0.2));
+        }
+        Collections.shuffle(genes, random);
+        Genome genome = new Genome();
+        genes.forEach(genome::addConnection);
+        return genome;
+    }
+
+    /**
+     * Distance as calculated by looking up every innovation id in both genomes
+     */
+    private static double scanDistance(Genome fit, Genome weak) {
+        int maxFit = fit.getConnections().stream().mapToInt(ConnectionGene::getInnovationId).max().orElse(0);
+        int maxWeak = weak.getConnections().stream().mapToInt(ConnectionGene::getInnovationId).max().orElse(0);
+        int excess = 0;
+        int disjoint = 0;
+        int matching = 0;
+        double weightDifference = 0;
+        for (int i = 1; i <= Math.max(maxFit, maxWeak); i++) {
+            ConnectionGene a = fit.getConnectionById(i);
+            ConnectionGene b = weak.getConnectionById(i);
+            if (a != null && b != null) {
+                if (a.isEnabled() != b.isEnabled()) {
+                    disjoint++;
+                } else {
+                    matching++;
+                    weightDifference += Math.abs(a.getWeight() - b.getWeight());
+                }
+            } else if (a != null) {
+                if (i > maxWeak) excess++; else disjoint++;
+            } else if (b != null) {
+                if (i > maxFit) excess++; else disjoint++;
+            }
+        }
+        int n = Math.max(1, Math.max(fit.getConnections().size(), weak.getConnections().size()));
+        return (double) excess / n + (double) disjoint / n + 0.5 * (matching == 0 ? 0 : weightDifference / matching);
+    }
+
+    @Test
+    @DisplayName("Merged distance equals a lookup of every innovation id")
+    void matchesInnovationScan() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            // Small id ranges give duplicate ids, which count once like a lookup by id
+            int maxId = 5 + random.nextInt(i < 100 ? 30 : 500);
+            Genome a = randomGenome(random, random.nextInt(40), maxId);
+            Genome b = randomGenome(random, random.nextInt(40), maxId);
+            assertEquals(scanDistance(a, b), new GenomeComparison(a, b).getDistance(), 1e-12);
+            assertEquals(scanDistance(b, a), new GenomeComparison(b, a).getDistance(), 1e-12);
+        }
+    }
+
+    @Test
+    @Timeout(5)
+    @DisplayName("Cost depends on the genome size, not on the highest innovation id")
+    void scalesWithGenomeSize() {
+        // A scan over all innovation ids would take 20000 * 50 million steps
+        Random random = new Random(8);
+        Genome a = randomGenome(random, 100, 50_000_000);
+        Genome b = randomGenome(random, 100, 50_000_000);
+        double distance = 0;
+        for (int i = 0; i < 20_000; i++) {
+            distance = new GenomeComparison(a, b).getDistance();
+        }
+        assertTrue(distance > 0);
+    }
+
+    @Test
+    @DisplayName("Bounded comparison agrees on the threshold and is exact when it does not stop")
+    void boundedComparison() {
+        Random random = new Random(9);
+        int stopped = 0;
+        for (int i = 0; i < 500; i++) {
+            Genome a = randomGenome(random, random.nextInt(40), 60);
+            Genome b = randomGenome(random, random.nextInt(40), 60);
+            double bound = random.nextDouble() * 2;
+
+            double distance = new GenomeComparison(a, b).getDistance();
+            GenomeComparison bounded = GenomeComparison.bounded(a, b, bound);
+            assertEquals(distance < bound, bounded.getDistance() < bound);
+            if (bounded.isStoppedEarly()) {
+                stopped++;
+                assertTrue(bounded.getDistance() >= bound);
+                assertTrue(bounded.getDistance() <= distance + 1e-12);
+            } else {
+                assertEquals(distance, bounded.getDistance());
+            }
+        }
+        assertTrue(stopped > 0);
+    }
+
+    @Test
+    @DisplayName("Bitset comparison gives exactly the merged distance")
+    void bitsetComparison() {
+        Random random = new Random(10);
+        for (int i = 0; i < 300; i++) {
+            // Ids on both sides of word boundaries, and duplicate ids for the small ranges
+            int maxId = 5 + random.nextInt(i < 100 ? 30 : 500);
+            Genome a = randomGenome(random, random.nextInt(60), maxId);
+            Genome b = randomGenome(random, random.nextInt(60), maxId);
+            assertEquals(new GenomeComparison(a, b).getDistance(), GenomeComparison.bitsets(a, b).getDistance());
+            assertEquals(new GenomeComparison(b, a).getDistance(), GenomeComparison.bitsets(b, a).getDistance());
+        }
+
+        // Cached bitsets follow changes to the genes
+        Genome a = randomGenome(random, 30, 100);
+        Genome b = a.clone();
+        assertEquals(0, GenomeComparison.bitsets(a, b).getDistance());
+        b.getConnections().getFirst().toggleEnabled();
+        b.getConnections().getLast().setWeight(10);
+        assertEquals(new GenomeComparison(a, b).getDistance(), GenomeComparison.bitsets(a, b).getDistance());
+        assertTrue(GenomeComparison.bitsets(a, b).getDistance() > 0);
+    }
 }
@@ -0,0 +1,39 @@
+package nl.wdudokvanheel.neat.service;
+
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.service.MinHashIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHashIndexTest {
+    private static Genome genome(int firstId, int count, int skip) {
+        Genome genome = new Genome();
+        for (int id = firstId; id < firstId + count; id++) {
+            if (id != skip) {
+                genome.addConnection(new ConnectionGene(id, 1, 2, 0.5));
+            }
+        }
+        return genome;
+    }
+
+    @Test
+    @DisplayName("Genomes with mostly the same innovations share buckets, unrelated ones don't")
+    void candidates() {
+        MinHashIndex index = new MinHashIndex(16, 4);
+        assertEquals(0, index.add(genome(1, 20, -1)));
+        assertEquals(1, index.add(genome(101, 20, -1)));
+        assertEquals(2, index.add(genome(201, 20, -1)));
+
+        assertArrayEquals(new int[]{1}, index.candidates(genome(101, 20, 110)));
+        assertArrayEquals(new int[]{0}, index.candidates(genome(1, 20, -1)));
+        assertArrayEquals(new int[0], index.candidates(genome(1001, 20, -1)));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertArrayEquals(new int[0], index.candidates(genome(1, 20, -1)));
+        assertThrows(IllegalArgumentException.class, () -> new MinHashIndex(0, 4));
+    }
+}
@@ -0,0 +1,119 @@
+package nl.wdudokvanheel.neat.service;
+
+import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
+import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
+import nl.wdudokvanheel.neural.neat.genome.Genome;
+import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
+import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
+import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.GenomeComparison;
+import nl.wdudokvanheel.neural.neat.service.RepresentativeTable;
+import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepresentativeTableTest {
+    private static class TestCreature extends AbstractCreatureInterface<TestCreature> {
+        TestCreature(Genome g) { super(g); }
+    }
+
+    private static List<Genome> evolvedGenomes() {
+        NeatConfiguration cfg = new NeatConfiguration();
+        cfg.populationSize = 60;
+        cfg.mutateAddNeuronProbability = 0.3;
+        cfg.mutateAddConnectionProbability = 0.3;
+        cfg.mutateToggleConnectionProbability = 0.2;
+
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(TestCreature::new, cfg);
+        GenomeBuilder b = new GenomeBuilder(ctx.innovationService);
+        InputNeuronGene[] in = b.addInputNeurons(3);
+        OutputNeuronGene out = b.addOutputNeuron(0);
+        b.addConnection(in[0], out, 0.5);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(b.getGenome()));
+        ctx.evaluator = creatures -> creatures.forEach(c -> c.setFitness(c.getGenome().getConnectionView().size()));
+        for (int i = 0; i < 8; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        return ctx.creatures.stream().map(TestCreature::getGenome).toList();
+    }
+
+    @Test
+    @DisplayName("Distances equal a comparison with every representative")
+    void matchesGenomeComparison() {
+        List<Genome> genomes = evolvedGenomes();
+        RepresentativeTable table = new RepresentativeTable();
+
+        // Representatives are added between lookups, with and without new innovation ids
+        for (int r = 0; r < 12; r++) {
+            assertEquals(r, table.add(genomes.get(r * 5)));
+            assertEquals(r + 1, table.size());
+            for (Genome genome : genomes) {
+                double[] distances = table.distances(genome);
+                assertEquals(r + 1, distances.length);
+                for (int i = 0; i <= r; i++) {
+                    assertEquals(new GenomeComparison(genomes.get(i * 5), genome).getDistance(), distances[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Empty genomes, unknown innovation ids and custom coefficients")
+    void edgeCases() {
+        Genome empty = new Genome();
+        Genome a = new Genome();
+        a.addConnection(new ConnectionGene(2, 1, 2, 0.5));
+        a.addConnection(new ConnectionGene(5, 1, 3, -1.0, false));
+        Genome b = new Genome();
+        b.addConnection(new ConnectionGene(9, 1, 2, 0.25));
+        b.addConnection(new ConnectionGene(2, 1, 3, 1.5));
+        b.addConnection(new ConnectionGene(1, 2, 3, 1.0));
+
+        RepresentativeTable table = new RepresentativeTable(2.0, 0.5, 3.0);
+        assertEquals(0, table.distances(a).length);
+        table.add(empty);
+        table.add(a);
+        for (Genome genome : List.of(empty, a, b)) {
+            double[] distances = table.distances(genome);
+            assertEquals(new GenomeComparison(empty, genome, 2.0, 0.5, 3.0).getDistance(), distances[0]);
+            assertEquals(new GenomeComparison(a, genome, 2.0, 0.5, 3.0).getDistance(), distances[1]);
+        }
+
+        table.clear();
+        assertEquals(0, table.size());
+        table.add(b);
+        assertEquals(new GenomeComparison(b, a, 2.0, 0.5, 3.0).getDistance(), table.distances(a)[0]);
+    }
+
+    @Test
+    @DisplayName("Bounded distances stop early but agree on the bound")
+    void boundedDistances() {
+        List<Genome> genomes = evolvedGenomes();
+        RepresentativeTable table = new RepresentativeTable();
+        for (int r = 0; r < 10; r++) {
+            table.add(genomes.get(r * 6));
+        }
+
+        for (double bound : new double[]{0.1, 0.5, 1.0, 3.0}) {
+            for (Genome genome : genomes) {
+                double[] exact = table.distances(genome);
+                double[] bounded = table.distances(genome, bound);
+                for (int r = 0; r < exact.length; r++) {
+                    assertEquals(exact[r] < bound, bounded[r] < bound);
+                    if (bounded[r] < bound) {
+                        assertEquals(exact[r], bounded[r]);
+                    }
+                }
+            }
+        }
+        assertTrue(table.getStoppedEarlyCount() > 0);
+        assertEquals(2 * 4 * genomes.size() * 10, table.getComparisonCount());
+    }
+}
@@ -1,12 +1,15 @@
 package nl.wdudokvanheel.neat.service;
 
 import nl.wdudokvanheel.neural.neat.NeatConfiguration;
+import nl.wdudokvanheel.neural.neat.NeatContext;
+import nl.wdudokvanheel.neural.neat.NeatEvolution;
 import nl.wdudokvanheel.neural.neat.Species;
 import nl.wdudokvanheel.neural.neat.genome.ConnectionGene;
 import nl.wdudokvanheel.neural.neat.genome.Genome;
 import nl.wdudokvanheel.neural.neat.genome.InputNeuronGene;
 import nl.wdudokvanheel.neural.neat.genome.OutputNeuronGene;
 import nl.wdudokvanheel.neural.neat.service.GenomeBuilder;
+import nl.wdudokvanheel.neural.neat.service.GenomeComparison;
 import nl.wdudokvanheel.neural.neat.service.InnovationService;
 import nl.wdudokvanheel.neural.neat.service.SpeciationService;
 import nl.wdudokvanheel.neural.util.AbstractCreatureInterface;
@@ -16,6 +19,7 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -71,6 +75,156 @@ class SpeciationServiceTest {
         assertNotSame(sAB, C.getSpecies(), "C should be separate");
     }
 
+    @Test
+    @DisplayName("Comparisons with species that clearly don't fit stop early")
+    void comparisonsStopEarly() {
+        SpeciationService svc = new SpeciationService(cfg(0.2));
+
+        Genome large = baseGenome(0.5, 0.1);
+        for (int i = 0; i < 10; i++) {
+            large.addConnection(new ConnectionGene(10 + i, 1, 20 + i, 0.3, true));
+        }
+        List<TestCreature> creatures = List.of(new TestCreature(baseGenome(0.5, 0.1), 1), new TestCreature(large, 1),
+                new TestCreature(baseGenome(0.45, 0.1), 1), new TestCreature(large.clone(), 1));
+
+        List<Species> out = svc.speciate(creatures, new ArrayList<>());
+        assertEquals(2, out.size());
+        assertSame(creatures.get(0).getSpecies(), creatures.get(2).getSpecies());
+        assertSame(creatures.get(1).getSpecies(), creatures.get(3).getSpecies());
+        assertTrue(svc.getStoppedEarlyCount() > 0);
+        assertTrue(svc.getComparisonCount() >= svc.getStoppedEarlyCount());
+
+        long before = svc.getStoppedEarlyCount();
+        svc.addCreatureToSpecies(out, new TestCreature(baseGenome(0.5, 0.1), 1));
+        assertEquals(2, out.size());
+        assertTrue(svc.getStoppedEarlyCount() >= before);
+    }
+
+    @Test
+    @DisplayName("Representatives with the same genes as an earlier representative reuse its profile")
+    void reusesRepresentativeProfiles() {
+        NeatConfiguration c = new NeatConfiguration();
+        c.populationSize = 60;
+        c.mutateAddNeuronProbability = 0.2;
+        c.mutateAddConnectionProbability = 0.2;
+        c.minimumSpeciesSizeForChampionCopy = 1;
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(g -> new TestCreature(g, 0), c);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(baseGenome(0.5, 0.1), 0));
+        ctx.evaluator = creatures -> creatures.forEach(cr -> cr.setFitness(1 + cr.getGenome().getConnectionView().size()));
+
+        for (int i = 0; i < 6; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        assertTrue(ctx.speciationService.getProfileMissCount() > 0);
+        assertTrue(ctx.speciationService.getProfileHitCount() > 0);
+    }
+
+    @Test
+    @DisplayName("Hashed speciation still puts every creature in a compatible species and reports its recall")
+    void hashedSpeciation() {
+        NeatConfiguration c = cfg(1.0);
+        c.speciationHashing = true;
+        SpeciationService svc = new SpeciationService(c);
+
+        // Families of genomes with their own innovations, each member misses one of the family's connections
+        Random random = new Random(1);
+        List<TestCreature> creatures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int family = i % 20;
+            Genome genome = new Genome();
+            int skip = random.nextInt(10);
+            for (int k = 0; k < 10; k++) {
+                if (k != skip) {
+                    genome.addConnection(new ConnectionGene(family * 100 + k + 1, 1, 2, random.nextDouble()));
+                }
+            }
+            creatures.add(new TestCreature(genome, 1));
+        }
+
+        List<Species> out = svc.speciate(creatures, new ArrayList<>());
+        for (TestCreature creature : creatures) {
+            Genome representative = creature.getSpecies().getRepresentative().getGenome();
+            assertTrue(new GenomeComparison(representative, creature.getGenome()).getDistance() < c.speciesThreshold);
+        }
+        assertEquals(20, out.size());
+
+        SpeciationService.HashingReport report = svc.getLastHashingReport();
+        assertEquals(200, report.creatures());
+        assertEquals(180, report.candidateMatches() + report.fallbackMatches());
+        assertTrue(report.getRecall() > 0.9);
+        assertTrue(report.getAverageCandidates() < 5);
+        // Most creatures are only compared with a few candidates instead of up to 20 representatives
+        assertTrue(svc.getComparisonCount() < 200 * 5);
+    }
+
+    @Test
+    @DisplayName("Offspring are added to the successor of their parent species when they still fit it")
+    void warmStart() {
+        NeatConfiguration c = cfg(1.0);
+        c.speciationWarmStart = true;
+        SpeciationService svc = new SpeciationService(c);
+
+        // Both species fit every creature, without the hint the species would be picked at random
+        List<Species> species = new ArrayList<>();
+        species.add(new Species(1000, new TestCreature(baseGenome(0.5, 0.1), 1)));
+        species.add(new Species(1001, new TestCreature(baseGenome(0.6, 0.1), 1)));
+        List<TestCreature> creatures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Genome genome = baseGenome(0.55, 0.1);
+            genome.setParentSpeciesId(1001);
+            creatures.add(new TestCreature(genome, 1));
+        }
+        creatures.add(new TestCreature(baseGenome(0.55, 0.1), 1));
+
+        svc.speciate(creatures, species);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1001, creatures.get(i).getSpecies().id);
+        }
+        SpeciationService.WarmStartReport report = svc.getLastWarmStartReport();
+        assertEquals(21, report.creatures());
+        assertEquals(20, report.hinted());
+        assertEquals(20, report.warmStarts());
+        assertEquals(1.0, report.getHitRate());
+
+        // Offspring that no longer fit their parent species are compared with the others
+        Genome large = baseGenome(0.5, 0.1);
+        for (int i = 0; i < 10; i++) {
+            large.addConnection(new ConnectionGene(10 + i, 1, 20 + i, 0.3, true));
+        }
+        large.setParentSpeciesId(1000);
+        c.speciesThreshold = 0.5;
+        TestCreature outgrown = new TestCreature(large, 1);
+        svc.addCreatureToSpecies(species, outgrown);
+        assertEquals(3, species.size());
+        assertNotEquals(1000, outgrown.getSpecies().id);
+    }
+
+    @Test
+    @DisplayName("Warm start during an evolution")
+    void warmStartEvolution() {
+        NeatConfiguration c = new NeatConfiguration();
+        c.populationSize = 60;
+        c.mutateAddNeuronProbability = 0.2;
+        c.mutateAddConnectionProbability = 0.2;
+        c.speciationWarmStart = true;
+        NeatContext<TestCreature> ctx = NeatEvolution.createContext(g -> new TestCreature(g, 0), c);
+        NeatEvolution.generateInitialPopulation(ctx, new TestCreature(baseGenome(0.5, 0.1), 0));
+        ctx.evaluator = creatures -> creatures.forEach(cr -> cr.setFitness(1 + cr.getGenome().getConnectionView().size()));
+
+        for (int i = 0; i < 5; i++) {
+            NeatEvolution.evaluate(ctx);
+            NeatEvolution.nextGeneration(ctx);
+        }
+        SpeciationService.WarmStartReport report = ctx.speciationService.getLastWarmStartReport();
+        assertEquals(60, report.creatures());
+        assertTrue(report.hinted() > 0);
+        assertTrue(report.getHitRate() > 0);
+        for (TestCreature creature : ctx.creatures) {
+            assertTrue(creature.getSpecies().getCreatures().contains(creature));
+        }
+    }
+
     @Test
     @DisplayName("sortSpeciesByScore orders by descending fitness")
     void sortSpeciesByFitness() {